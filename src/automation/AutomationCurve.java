@@ -0,0 +1,18 @@
+package automation;
+
+/**
+ * A curve that gives the value of a simulation parameter as a function of the simulation time.<br>
+ * Curves are sampled once per physics step, so implementations must be cheap and must not allocate.
+ *
+ * @see KeyframeCurve
+ * @see LfoCurve
+ * */
+public interface AutomationCurve {
+
+    /**
+     * @param timeSecs elapsed simulation time, in seconds
+     * @return value of the parameter at the given time
+     * */
+    float valueAt(double timeSecs);
+
+}
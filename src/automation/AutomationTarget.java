@@ -0,0 +1,137 @@
+package automation;
+
+import org.jetbrains.annotations.NotNull;
+import pendulum.PendulumWave;
+
+/**
+ * Parameters of a {@link PendulumWave} that can be driven by an {@link AutomationCurve}.<br>
+ * All values are in SI units, same as the corresponding {@link PendulumWave} setters.
+ * */
+public enum AutomationTarget {
+
+    /**
+     * Magnitude of the speed. The direction is left to {@link PendulumWave#setReversed(boolean)}, so reversing works while automated
+     * */
+    SPEED("Speed", false, false) {
+        @Override
+        public float get(@NotNull PendulumWave wave) {
+            return Math.abs(wave.getSpeed());
+        }
+
+        @Override
+        void set(@NotNull PendulumWave wave, float value) {
+            wave.setSpeed(Math.copySign(value, wave.getSpeed()));
+        }
+    },
+
+    GRAVITY("Gravity", true, true) {
+        @Override
+        public float get(@NotNull PendulumWave wave) {
+            return wave.gravity();
+        }
+
+        @Override
+        void set(@NotNull PendulumWave wave, float value) {
+            wave.setGravity(value, false);
+        }
+    },
+
+    DRAG("Drag", false, false) {
+        @Override
+        public float get(@NotNull PendulumWave wave) {
+            return wave.drag();
+        }
+
+        @Override
+        void set(@NotNull PendulumWave wave, float value) {
+            wave.setDrag(value, false);
+        }
+    },
+
+    MASS("Mass", true, false) {
+        @Override
+        public float get(@NotNull PendulumWave wave) {
+            return wave.getPendulumMass();
+        }
+
+        @Override
+        void set(@NotNull PendulumWave wave, float value) {
+            wave.setPendulumMass(value, false);
+        }
+    },
+
+    WAVE_PERIOD("Wave Period", true, true) {
+        @Override
+        public float get(@NotNull PendulumWave wave) {
+            return wave.getEffectiveWavePeriod();
+        }
+
+        @Override
+        void set(@NotNull PendulumWave wave, float value) {
+            wave.setEffectiveWavePeriod(value, false);
+        }
+    },
+
+    MIN_OSCILLATIONS("Min Osc", true, true) {
+        @Override
+        public float get(@NotNull PendulumWave wave) {
+            return wave.getMinOscillationsInWavePeriod();
+        }
+
+        @Override
+        void set(@NotNull PendulumWave wave, float value) {
+            wave.setMinOscillationsInWavePeriod(value, false);
+        }
+    },
+
+    OSCILLATION_STEP("Osc Step", true, true) {
+        @Override
+        public float get(@NotNull PendulumWave wave) {
+            return wave.getOscillationsStepPerPendulum();
+        }
+
+        @Override
+        void set(@NotNull PendulumWave wave, float value) {
+            wave.setOscillationsStepPerPendulum(value, false);
+        }
+    };
+
+    @NotNull
+    public final String label;
+
+    /**
+     * Whether the parameter must be > 0
+     * */
+    public final boolean positiveOnly;
+
+    /**
+     * Whether a change in this parameter recomputes the lengths of all the pendulums. Such changes are rate-limited
+     * */
+    public final boolean recomputesLengths;
+
+    AutomationTarget(@NotNull String label, boolean positiveOnly, boolean recomputesLengths) {
+        this.label = label;
+        this.positiveOnly = positiveOnly;
+        this.recomputesLengths = recomputesLengths;
+    }
+
+    /**
+     * @return current value of this parameter
+     * */
+    public abstract float get(@NotNull PendulumWave wave);
+
+    abstract void set(@NotNull PendulumWave wave, float value);
+
+    /**
+     * Sets the given value, if it is valid for this parameter
+     *
+     * @return whether the value was applied
+     * */
+    boolean apply(@NotNull PendulumWave wave, float value) {
+        if (Float.isNaN(value) || (positiveOnly && value <= 0))
+            return false;
+
+        set(wave, value);
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package automation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A piecewise curve through a series of keyframes (time, value).<br>
+ * <br>
+ * Polynomial coefficients of every segment are computed once at construction, and the segment of the last lookup is cached,
+ * so sampling at monotonically changing times (forward or backward) is O(1) and never allocates.<br>
+ * Before the first keyframe the curve holds the first value, and after the last keyframe it holds the last value, unless it {@link #isLooping() loops}.
+ * */
+public class KeyframeCurve implements AutomationCurve {
+
+    public enum Interpolation {
+        /**
+         * Holds the value of a keyframe until the next keyframe
+         * */
+        STEP,
+
+        /**
+         * Straight lines between keyframes
+         * */
+        LINEAR,
+
+        /**
+         * Cubic Hermite spline with Catmull-Rom tangents, which passes through every keyframe with a continuous slope
+         * */
+        SMOOTH
+    }
+
+    private final double[] times;
+    private final float[] values;
+    @NotNull
+    private final Interpolation interpolation;
+    private final boolean looping;
+
+    // Segment i: value = c0 + u * (c1 + u * (c2 + u * c3)), where u = (t - times[i]) * invDurations[i] in range [0, 1]
+    private final float[] c0, c1, c2, c3;
+    private final double[] invDurations;
+
+    // Segment of the last lookup
+    private int mSegment;
+
+    /**
+     * @param times keyframe times (in s) of simulation time, in strictly increasing order
+     * @param values keyframe values
+     * @param interpolation interpolation between keyframes
+     * @param looping whether the curve repeats itself with the period {@code last time - first time}
+     * */
+    public KeyframeCurve(double @NotNull[] times, float @NotNull[] values, @NotNull Interpolation interpolation, boolean looping) {
+        if (times.length == 0 || times.length != values.length) {
+            throw new IllegalArgumentException("Keyframe times and values must be non-empty and of equal length, given: " + times.length + " times and " + values.length + " values");
+        }
+
+        for (int i=1; i < times.length; i++) {
+            if (times[i] <= times[i - 1]) {
+                throw new IllegalArgumentException("Keyframe times must be strictly increasing, given: " + Arrays.toString(times));
+            }
+        }
+
+        this.times = times.clone();
+        this.values = values.clone();
+        this.interpolation = interpolation;
+        this.looping = looping && times.length > 1;
+
+        final int segments = Math.max(times.length - 1, 0);
+        c0 = new float[segments];
+        c1 = new float[segments];
+        c2 = new float[segments];
+        c3 = new float[segments];
+        invDurations = new double[segments];
+
+        for (int i=0; i < segments; i++) {
+            final float v0 = values[i], v1 = values[i + 1];
+            invDurations[i] = 1 / (times[i + 1] - times[i]);
+
+            switch (interpolation) {
+                case STEP -> c0[i] = v0;
+                case LINEAR -> {
+                    c0[i] = v0;
+                    c1[i] = v1 - v0;
+                }
+                case SMOOTH -> {
+                    // Catmull-Rom tangents, scaled to the unit segment
+                    final float m0 = tangent(i) * (float) (times[i + 1] - times[i]);
+                    final float m1 = tangent(i + 1) * (float) (times[i + 1] - times[i]);
+
+                    c0[i] = v0;
+                    c1[i] = m0;
+                    c2[i] = (3 * (v1 - v0)) - (2 * m0) - m1;
+                    c3[i] = (2 * (v0 - v1)) + m0 + m1;
+                }
+            }
+        }
+    }
+
+    public KeyframeCurve(double @NotNull[] times, float @NotNull[] values, @NotNull Interpolation interpolation) {
+        this(times, values, interpolation, false);
+    }
+
+    /**
+     * A linear ramp from one value to another
+     * */
+    @NotNull
+    public static KeyframeCurve ramp(double startSecs, float startValue, double endSecs, float endValue) {
+        return new KeyframeCurve(new double[] { startSecs, endSecs }, new float[] { startValue, endValue }, Interpolation.LINEAR);
+    }
+
+    // Slope (per second) at the given keyframe
+    private float tangent(int i) {
+        final int prev = Math.max(i - 1, 0), next = Math.min(i + 1, times.length - 1);
+        return (float) ((values[next] - values[prev]) / (times[next] - times[prev]));
+    }
+
+    public int keyframeCount() {
+        return times.length;
+    }
+
+    @NotNull
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    public boolean isLooping() {
+        return looping;
+    }
+
+    public double getStartSecs() {
+        return times[0];
+    }
+
+    public double getEndSecs() {
+        return times[times.length - 1];
+    }
+
+    @Override
+    public float valueAt(double timeSecs) {
+        final int last = times.length - 1;
+
+        if (looping) {
+            final double period = times[last] - times[0];
+            timeSecs = times[0] + ((((timeSecs - times[0]) % period) + period) % period);
+        } else if (timeSecs <= times[0]) {
+            return values[0];
+        } else if (timeSecs >= times[last]) {
+            return values[last];
+        }
+
+        final int i = findSegment(timeSecs);
+        final float u = (float) ((timeSecs - times[i]) * invDurations[i]);
+        return c0[i] + u * (c1[i] + u * (c2[i] + u * c3[i]));
+    }
+
+    private int findSegment(double timeSecs) {
+        int i = mSegment;
+
+        // Fast path: same or adjacent segment
+        if (timeSecs >= times[i] && timeSecs < times[i + 1])
+            return i;
+
+        if (i + 2 < times.length && timeSecs >= times[i + 1] && timeSecs < times[i + 2]) {
+            mSegment = i + 1;
+            return i + 1;
+        }
+
+        if (i > 0 && timeSecs >= times[i - 1] && timeSecs < times[i]) {
+            mSegment = i - 1;
+            return i - 1;
+        }
+
+        // Binary search over segment start times
+        int lo = 0, hi = times.length - 2;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (times[mid] <= timeSecs) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        mSegment = lo;
+        return lo;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyframeCurve[keyframes=" + times.length + ", " + interpolation + (looping? ", looping": "") + ", " + times[0] + "s -> " + times[times.length - 1] + "s]";
+    }
+}
@@ -0,0 +1,59 @@
+package automation;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A Low Frequency Oscillator: a periodic curve oscillating about an offset.
+ * <br><br>
+ * <strong>
+ *     value(t) = offset + amplitude * waveform((t / period) + phase)
+ * </strong>
+ *
+ * @param waveform shape of one cycle
+ * @param offset value about which the curve oscillates
+ * @param amplitude maximum deviation from the offset
+ * @param periodSecs time (in s) of one cycle. Must be > 0
+ * @param phase phase offset, as a fraction of a cycle
+ * */
+public record LfoCurve(@NotNull Waveform waveform,
+                       float offset,
+                       float amplitude,
+                       float periodSecs,
+                       float phase) implements AutomationCurve {
+
+    public enum Waveform {
+        SINE,
+        TRIANGLE,
+        SQUARE,
+        SAW;
+
+        /**
+         * @param cycleFraction position in the cycle, in range [0, 1)
+         * @return value of the waveform, in range [-1, 1]
+         * */
+        public float valueAt(double cycleFraction) {
+            return switch (this) {
+                case SINE -> (float) Math.sin(cycleFraction * 2 * Math.PI);
+                case TRIANGLE -> (float) (cycleFraction < 0.5? (4 * cycleFraction) - 1: 3 - (4 * cycleFraction));
+                case SQUARE -> cycleFraction < 0.5? 1: -1;
+                case SAW -> (float) ((2 * cycleFraction) - 1);
+            };
+        }
+    }
+
+    public LfoCurve {
+        if (periodSecs <= 0) {
+            throw new IllegalArgumentException("LFO period must be > 0, given: " + periodSecs);
+        }
+    }
+
+    public LfoCurve(@NotNull Waveform waveform, float offset, float amplitude, float periodSecs) {
+        this(waveform, offset, amplitude, periodSecs, 0);
+    }
+
+    @Override
+    public float valueAt(double timeSecs) {
+        final double cycles = (timeSecs / periodSecs) + phase;
+        return offset + (amplitude * waveform.valueAt(cycles - Math.floor(cycles)));
+    }
+}
@@ -0,0 +1,113 @@
+package automation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import pendulum.PendulumWave;
+
+/**
+ * A set of automation lanes, each driving one {@link AutomationTarget parameter} of a {@link PendulumWave} with an {@link AutomationCurve}.<br>
+ * <br>
+ * Lanes are sampled once per physics step at the elapsed simulation time, so automations play back identically when the simulation is sped up, rewound or replayed.
+ * Parameters that recompute pendulum lengths are applied at most once per {@link #getLengthRecomputeIntervalSecs() length recompute interval} of simulation time.
+ *
+ * @see PendulumWave#setAutomation(PendulumWaveAutomation)
+ * */
+public class PendulumWaveAutomation {
+
+    public static final double DEFAULT_LENGTH_RECOMPUTE_INTERVAL_SECS = 0.1;
+
+    private static final AutomationTarget[] TARGETS = AutomationTarget.values();
+
+    // Indexed by target ordinal
+    private final AutomationCurve[] lanes = new AutomationCurve[TARGETS.length];
+    private int mLaneCount;
+
+    private double lengthRecomputeIntervalSecs = DEFAULT_LENGTH_RECOMPUTE_INTERVAL_SECS;
+    private double mLastLengthRecomputeSecs = Double.NaN;
+
+    public double getLengthRecomputeIntervalSecs() {
+        return lengthRecomputeIntervalSecs;
+    }
+
+    /**
+     * @param intervalSecs minimum simulation time (in s) between two changes that recompute pendulum lengths. 0 to apply them on every step
+     * */
+    public PendulumWaveAutomation setLengthRecomputeIntervalSecs(double intervalSecs) {
+        if (intervalSecs < 0) {
+            throw new IllegalArgumentException("Length recompute interval must be >= 0, given: " + intervalSecs);
+        }
+
+        lengthRecomputeIntervalSecs = intervalSecs;
+        return this;
+    }
+
+    @Nullable
+    public AutomationCurve getLane(@NotNull AutomationTarget target) {
+        return lanes[target.ordinal()];
+    }
+
+    /**
+     * @param curve curve to drive the given target, or {@code null} to remove its lane
+     * */
+    public PendulumWaveAutomation setLane(@NotNull AutomationTarget target, @Nullable AutomationCurve curve) {
+        final AutomationCurve prev = lanes[target.ordinal()];
+        if (prev == curve)
+            return this;
+
+        lanes[target.ordinal()] = curve;
+        mLaneCount += (curve != null? 1: 0) - (prev != null? 1: 0);
+        return this;
+    }
+
+    public PendulumWaveAutomation clear() {
+        for (AutomationTarget target: TARGETS) {
+            setLane(target, null);
+        }
+
+        return this;
+    }
+
+    public int laneCount() {
+        return mLaneCount;
+    }
+
+    public boolean isEmpty() {
+        return mLaneCount == 0;
+    }
+
+    /**
+     * Samples all lanes at the given simulation time and applies them to the wave. Called by the wave once per physics step
+     * */
+    public void apply(@NotNull PendulumWave wave, double timeSecs) {
+        if (mLaneCount == 0)
+            return;
+
+        final boolean lengthsDue = Double.isNaN(mLastLengthRecomputeSecs) || Math.abs(timeSecs - mLastLengthRecomputeSecs) >= lengthRecomputeIntervalSecs;
+        boolean lengthsApplied = false;
+
+        for (int i=0; i < lanes.length; i++) {
+            final AutomationCurve curve = lanes[i];
+            if (curve == null)
+                continue;
+
+            final AutomationTarget target = TARGETS[i];
+            if (target.recomputesLengths && !lengthsDue)
+                continue;
+
+            if (target.apply(wave, curve.valueAt(timeSecs)) && target.recomputesLengths) {
+                lengthsApplied = true;
+            }
+        }
+
+        if (lengthsApplied) {
+            mLastLengthRecomputeSecs = timeSecs;
+        }
+    }
+
+    /**
+     * Forgets the rate-limit state, so that the next {@link #apply(PendulumWave, double)} applies all lanes
+     * */
+    public void invalidate() {
+        mLastLengthRecomputeSecs = Double.NaN;
+    }
+}
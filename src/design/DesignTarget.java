@@ -0,0 +1,129 @@
+package design;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A target pattern for a {@link PendulumWaveDesigner}, specified as the desired phase of every pendulum at a set of times.<br>
+ * <br>
+ * Phase is measured in cycles (mod 1) since the release of the pendulum, so phase 0 means the pendulum is back at its start angle.
+ * */
+public interface DesignTarget {
+
+    /**
+     * @return times (in s) of simulation time at which the pattern is specified. Must be non-empty and > 0
+     * */
+    double @NotNull[] times();
+
+    /**
+     * @param pendulumIndex index of the pendulum, in range [0, pendulumCount)
+     * @param timeIndex index into {@link #times()}
+     * @return desired phase (in cycles) of the given pendulum at the given time
+     * */
+    double phaseAt(int pendulumIndex, int pendulumCount, int timeIndex);
+
+
+    /**
+     * All pendulums back at their start angle at each of the given times, i.e. the wave re-aligns
+     * */
+    @NotNull
+    static DesignTarget alignAt(double @NotNull... times) {
+        final double[] t = validateTimes(times);
+
+        return new DesignTarget() {
+            @Override
+            public double @NotNull[] times() {
+                return t;
+            }
+
+            @Override
+            public double phaseAt(int pendulumIndex, int pendulumCount, int timeIndex) {
+                return 0;
+            }
+
+            @Override
+            public String toString() {
+                return "Align at " + Arrays.toString(t) + " s";
+            }
+        };
+    }
+
+    /**
+     * A travelling wave at the given time: the phase increases linearly across the pendulums, spanning the given number of wavelengths
+     * */
+    @NotNull
+    static DesignTarget travellingWaveAt(double timeSecs, double wavelengths) {
+        final double[] t = validateTimes(new double[] { timeSecs });
+
+        return new DesignTarget() {
+            @Override
+            public double @NotNull[] times() {
+                return t;
+            }
+
+            @Override
+            public double phaseAt(int pendulumIndex, int pendulumCount, int timeIndex) {
+                return pendulumCount < 2? 0: wavelengths * pendulumIndex / (pendulumCount - 1);
+            }
+
+            @Override
+            public String toString() {
+                return "Travelling wave of " + wavelengths + " wavelengths at " + timeSecs + " s";
+            }
+        };
+    }
+
+    /**
+     * A free phase profile: {@code phases[k][i]} is the desired phase (in cycles) of pendulum i at {@code times[k]}.
+     * Pendulums beyond a profile hold the last phase of that profile
+     * */
+    @NotNull
+    static DesignTarget phaseProfile(double @NotNull[] times, double @NotNull[] @NotNull[] phases) {
+        final double[] t = validateTimes(times);
+        if (phases.length != t.length) {
+            throw new IllegalArgumentException("Phase profiles must be given for each time, given: " + t.length + " times and " + phases.length + " profiles");
+        }
+
+        final double[][] p = new double[phases.length][];
+        for (int k=0; k < phases.length; k++) {
+            if (phases[k].length == 0) {
+                throw new IllegalArgumentException("Phase profile must be non-empty, at time " + t[k] + " s");
+            }
+
+            p[k] = phases[k].clone();
+        }
+
+        return new DesignTarget() {
+            @Override
+            public double @NotNull[] times() {
+                return t;
+            }
+
+            @Override
+            public double phaseAt(int pendulumIndex, int pendulumCount, int timeIndex) {
+                final double[] profile = p[timeIndex];
+                return profile[Math.min(pendulumIndex, profile.length - 1)];
+            }
+
+            @Override
+            public String toString() {
+                return "Phase profile at " + Arrays.toString(t) + " s";
+            }
+        };
+    }
+
+    private static double @NotNull[] validateTimes(double @NotNull[] times) {
+        if (times.length == 0) {
+            throw new IllegalArgumentException("Design target must have at least one time");
+        }
+
+        for (double t: times) {
+            if (!(t > 0)) {
+                throw new IllegalArgumentException("Design target times must be > 0, given: " + t);
+            }
+        }
+
+        return times.clone();
+    }
+}
@@ -0,0 +1,325 @@
+package design;
+
+import org.apache.commons.math3.optim.MaxEval;
+import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
+import org.apache.commons.math3.optim.univariate.BrentOptimizer;
+import org.apache.commons.math3.optim.univariate.SearchInterval;
+import org.apache.commons.math3.optim.univariate.UnivariateObjectiveFunction;
+import org.apache.commons.math3.optim.univariate.UnivariatePointValuePair;
+import org.jetbrains.annotations.NotNull;
+import pendulum.Pendulum;
+import pendulum.PendulumEnvironmentProvider;
+import pendulum.PendulumWave;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Inverse design of a {@link PendulumWave}: finds the pendulum lengths that best produce a {@link DesignTarget target pattern}.<br>
+ * <br>
+ * Pendulums do not interact, so each length is optimized independently (and in parallel). For pendulum i, the cost of an oscillation frequency f is
+ * <strong>sum_k (1 - cos(2 pi (f t_k - phase_ik)))</strong>, which is 0 when the pendulum is exactly at its target phase at every target time.
+ * The cost is scanned on a grid around the frequency of the template wave, and the best grid point is refined with a {@link BrentOptimizer}.<br>
+ * <br>
+ * Frequencies are converted to lengths using the period of a pendulum released at the start angle, measured by simulating a headless {@link Pendulum},
+ * so the lengths also correct the small angle approximation of {@link PendulumWave}. The result is verified by stepping a headless {@link PendulumWave} to each target time.
+ * Drag is not accounted for while optimizing, but is applied during verification.
+ * */
+public class PendulumWaveDesigner {
+
+    public static final int DEFAULT_GRID_POINTS = 256;
+    public static final int MAX_GRID_POINTS = 1 << 16;
+
+    // Grid points per oscillation of the cost function in frequency, which has a period of 1 / t_max
+    private static final int GRID_POINTS_PER_COST_PERIOD = 8;
+
+    public static final float DEFAULT_SEARCH_WIDTH_OSCILLATIONS = 0.5f;
+
+    private static final double BRENT_REL_TOLERANCE = 1e-10;
+    private static final double BRENT_ABS_TOLERANCE = 1e-12;
+    private static final int BRENT_MAX_EVALUATIONS = 200;
+
+
+    public record Result(@NotNull DesignTarget target,
+                         float @NotNull[] lengths,
+                         double @NotNull[] frequencies,
+                         double periodFactor,
+                         double rmsPhaseError,
+                         double maxPhaseError,
+                         long durationMs) {
+
+        /**
+         * @return RMS of the phase errors (in degrees) measured by the headless verification run
+         * */
+        public double rmsPhaseErrorDegrees() {
+            return rmsPhaseError * 360;
+        }
+
+        /**
+         * @return maximum phase error (in degrees) measured by the headless verification run
+         * */
+        public double maxPhaseErrorDegrees() {
+            return maxPhaseError * 360;
+        }
+    }
+
+
+    private final int pendulumCount;
+    private final float gravity;
+    private final float drag;
+    private final float pendulumMass;
+    private final float startAngle;
+    private final float internalWavePeriod;
+    private final float minOscillations;
+    private final float oscillationsStep;
+
+    private int gridPoints = DEFAULT_GRID_POINTS;
+    private float searchWidthOscillations = DEFAULT_SEARCH_WIDTH_OSCILLATIONS;
+    private boolean parallel = true;
+
+    /**
+     * @param template wave whose pendulum count, environment and parameters are used. Lengths are searched around the lengths of this wave
+     * */
+    public PendulumWaveDesigner(@NotNull PendulumWave template) {
+        pendulumCount = template.pendulumCount();
+        gravity = template.gravity();
+        drag = template.drag();
+        pendulumMass = template.getPendulumMass();
+        startAngle = template.getPendulumStartAngle();
+        internalWavePeriod = template.getInternalWavePeriod();
+        minOscillations = template.getMinOscillationsInWavePeriod();
+        oscillationsStep = template.getOscillationsStepPerPendulum();
+    }
+
+    public int getGridPoints() {
+        return gridPoints;
+    }
+
+    /**
+     * @param gridPoints minimum number of grid points scanned per pendulum. Raised automatically for long target times
+     * */
+    public PendulumWaveDesigner setGridPoints(int gridPoints) {
+        if (gridPoints < 3) {
+            throw new IllegalArgumentException("Grid points must be >= 3, given: " + gridPoints);
+        }
+
+        this.gridPoints = gridPoints;
+        return this;
+    }
+
+    public float getSearchWidthOscillations() {
+        return searchWidthOscillations;
+    }
+
+    /**
+     * @param searchWidthOscillations half-width of the search around the template, in oscillations per wave period
+     * */
+    public PendulumWaveDesigner setSearchWidthOscillations(float searchWidthOscillations) {
+        if (searchWidthOscillations <= 0) {
+            throw new IllegalArgumentException("Search width must be > 0, given: " + searchWidthOscillations);
+        }
+
+        this.searchWidthOscillations = searchWidthOscillations;
+        return this;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public PendulumWaveDesigner setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    public int pendulumCount() {
+        return pendulumCount;
+    }
+
+    /**
+     * @return oscillation frequency (in Hz) of the given pendulum in the template wave
+     * */
+    private double templateFrequency(int i) {
+        return (minOscillations + (i * oscillationsStep)) / internalWavePeriod;
+    }
+
+    private static double cost(@NotNull DesignTarget target, double @NotNull[] times, int pendulumIndex, int pendulumCount, double frequency) {
+        double sum = 0;
+        for (int k=0; k < times.length; k++) {
+            sum += 1 - Math.cos(2 * Math.PI * ((frequency * times[k]) - target.phaseAt(pendulumIndex, pendulumCount, k)));
+        }
+
+        return sum;
+    }
+
+    private double optimizeFrequency(@NotNull DesignTarget target, double @NotNull[] times, double maxTime, int i) {
+        final double f0 = templateFrequency(i);
+        final double halfWidth = searchWidthOscillations / internalWavePeriod;
+        final double lo = Math.max(f0 - halfWidth, f0 * 0.05), hi = f0 + halfWidth;
+
+        // Coarse scan: the cost oscillates with a period of 1 / maxTime in frequency
+        final int points = (int) Math.min(MAX_GRID_POINTS, Math.max(gridPoints, Math.ceil((hi - lo) * maxTime * GRID_POINTS_PER_COST_PERIOD)));
+        final double spacing = (hi - lo) / (points - 1);
+
+        double bestF = f0, bestCost = cost(target, times, i, pendulumCount, f0);
+        for (int j=0; j < points; j++) {
+            final double f = lo + (j * spacing);
+            final double c = cost(target, times, i, pendulumCount, f);
+            if (c < bestCost) {
+                bestCost = c;
+                bestF = f;
+            }
+        }
+
+        // Refine around the best grid point
+        final double min = Math.max(bestF - spacing, lo), max = Math.min(bestF + spacing, hi);
+        if (!(max > min))
+            return bestF;
+
+        final UnivariatePointValuePair opt = new BrentOptimizer(BRENT_REL_TOLERANCE, BRENT_ABS_TOLERANCE).optimize(
+                new MaxEval(BRENT_MAX_EVALUATIONS),
+                new UnivariateObjectiveFunction(f -> cost(target, times, i, pendulumCount, f)),
+                GoalType.MINIMIZE,
+                new SearchInterval(min, max, bestF)
+        );
+
+        return opt.getValue() <= bestCost? opt.getPoint(): bestF;
+    }
+
+    /**
+     * Ratio of the period of a pendulum released at the start angle to its small angle period, as produced by the simulation.
+     * Independent of the length and gravity
+     * */
+    public static double measurePeriodFactor(float gravity, float startAngle) {
+        if (startAngle == 0)
+            return 1;
+
+        final PendulumEnvironmentProvider env = new PendulumEnvironmentProvider() {
+            @Override
+            public float gravity() {
+                return gravity;
+            }
+
+            @Override
+            public float drag() {
+                return 0;
+            }
+        };
+
+        final Pendulum p = new Pendulum(0, 1, 1, startAngle);
+        final float dt = PendulumWave.SEEK_STEP_SECS;
+        final double smallAnglePeriod = 2 * Math.PI * Math.sqrt(1 / gravity);
+        final long maxSteps = (long) Math.ceil(100 * smallAnglePeriod / dt);
+
+        // The angular velocity changes sign at every half period
+        double t = 0;
+        float prevVel = 0;
+        int signChanges = 0;
+
+        for (long step=0; step < maxSteps; step++) {
+            p.update(env, dt);
+            t += dt;
+
+            final float vel = p.getAngularVelocity();
+            if (prevVel != 0 && vel != 0 && (prevVel > 0) != (vel > 0)) {
+                if (++signChanges == 2) {
+                    // interpolate the zero crossing
+                    final double period = t - dt + (dt * prevVel / (prevVel - vel));
+                    return period / smallAnglePeriod;
+                }
+            }
+
+            if (vel != 0) {
+                prevVel = vel;
+            }
+        }
+
+        return 1;       // Did not oscillate (ex. released upside down)
+    }
+
+    /**
+     * Solves for the pendulum lengths that best produce the given target. Thread-safe, does not touch the template wave
+     * */
+    @NotNull
+    public Result design(@NotNull DesignTarget target) {
+        final long startMs = System.currentTimeMillis();
+        final double[] times = target.times();
+
+        double maxTime = 0;
+        for (double t: times) {
+            maxTime = Math.max(maxTime, t);
+        }
+
+        final double periodFactor = measurePeriodFactor(gravity, startAngle);
+        final double[] frequencies = new double[pendulumCount];
+        final float[] lengths = new float[pendulumCount];
+        final double _maxTime = maxTime;
+
+        IntStream indices = IntStream.range(0, pendulumCount);
+        if (parallel) {
+            indices = indices.parallel();
+        }
+
+        indices.forEach(i -> {
+            final double f = optimizeFrequency(target, times, _maxTime, i);
+            frequencies[i] = f;
+
+            // f = sqrt(g / l) / (2 pi * periodFactor)
+            final double omega = 2 * Math.PI * f * periodFactor;
+            lengths[i] = (float) (gravity / (omega * omega));
+        });
+
+        // Verify with a headless wave
+        final double[] errors = measurePhaseErrors(target, times, lengths, frequencies);
+        double sumSq = 0, max = 0;
+        for (double e: errors) {
+            sumSq += e * e;
+            max = Math.max(max, Math.abs(e));
+        }
+
+        return new Result(target, lengths, frequencies, periodFactor, Math.sqrt(sumSq / errors.length), max, System.currentTimeMillis() - startMs);
+    }
+
+    /**
+     * Builds a headless wave with the template environment and the given lengths
+     * */
+    @NotNull
+    public PendulumWave createWave(float @NotNull[] lengths) {
+        final PendulumWave wave = new PendulumWave(pendulumCount);
+        wave.setGravity(gravity, false)
+                .setDrag(drag, false)
+                .setPendulumMass(pendulumMass, false)
+                .setPendulumStartAngle(startAngle, false)
+                .setCustomPendulumLengths(lengths, true);
+
+        return wave;
+    }
+
+    /**
+     * @return phase errors (in cycles, wrapped to [-0.5, 0.5]) of every pendulum at every target time, from stepping a headless wave
+     * */
+    private double @NotNull[] measurePhaseErrors(@NotNull DesignTarget target, double @NotNull[] times, float @NotNull[] lengths, double @NotNull[] frequencies) {
+        final PendulumWave wave = createWave(lengths);
+        final double[] errors = new double[times.length * pendulumCount];
+
+        final Integer[] order = IntStream.range(0, times.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) -> Double.compare(times[a], times[b]));
+
+        for (int k: order) {
+            wave.seekTo(times[k]);
+
+            for (int i=0; i < pendulumCount; i++) {
+                final Pendulum p = wave.pendulumAt(i);
+                final double omega = 2 * Math.PI * frequencies[i];
+
+                // angle ~ A cos(phase), angular velocity ~ -A omega sin(phase)
+                final double phase = Math.atan2(-p.getAngularVelocity() / omega, startAngle < 0? -p.getAngle(): p.getAngle()) / (2 * Math.PI);
+                final double diff = phase - target.phaseAt(i, pendulumCount, k);
+                errors[(k * pendulumCount) + i] = diff - Math.rint(diff);
+            }
+        }
+
+        return errors;
+    }
+
+}
@@ -0,0 +1,326 @@
+package design;
+
+import org.apache.commons.math3.optim.MaxEval;
+import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
+import org.apache.commons.math3.optim.univariate.BrentOptimizer;
+import org.apache.commons.math3.optim.univariate.SearchInterval;
+import org.apache.commons.math3.optim.univariate.UnivariateObjectiveFunction;
+import org.apache.commons.math3.optim.univariate.UnivariatePointValuePair;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import pendulum.PendulumPeriod;
+import pendulum.PendulumWave;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Predicts the "interesting moments" of a {@link PendulumWave}: the times at which the pendulums form full alignment, a half-period split or
+ * other k-group patterns.<br>
+ * <br>
+ * Pendulum i oscillates at frequency f<sub>i</sub> = sqrt(g / l<sub>i</sub>) / (2 pi x period factor at the start angle), so its phase is
+ * <strong>phi_i(t) = 2 pi f<sub>i</sub> t</strong>. The pendulums split into q groups (equally spaced in phase) when
+ * <strong>R_q(t) = |mean_i exp(i q phi_i(t))|</strong> is 1. For a regular wave with f<sub>i</sub> = f<sub>0</sub> + i df, this happens exactly at
+ * <strong>t = (k + p/q) / df</strong> for p coprime to q: alignment at whole effective wave periods, two groups (even and odd pendulums
+ * on opposite sides) at half periods, and so on.<br>
+ * <br>
+ * Candidate times are taken from a least squares fit of df to the actual frequencies, and each candidate is refined by maximizing R_q with a
+ * {@link BrentOptimizer}, so irregular (ex. {@link PendulumWaveDesigner designed}) lengths are handled as well. The result is cached until the
+ * wave configuration changes or the queried time leaves the cached window.
+ * */
+public class PendulumWaveMoments {
+
+    public static final int DEFAULT_WAVE_PERIODS = 2;
+    public static final int DEFAULT_MAX_GROUPS = 6;
+
+    /**
+     * Moments with a lower {@link Moment#score() score} are discarded
+     * */
+    public static final double DEFAULT_MIN_SCORE = 0.8;
+
+    private static final double BRENT_REL_TOLERANCE = 1e-10;
+    private static final double BRENT_ABS_TOLERANCE = 1e-9;
+    private static final int BRENT_MAX_EVALUATIONS = 100;
+
+    public enum Type {
+        ALIGNMENT("Alignment"),
+        HALF_SPLIT("Half split"),
+        GROUPS("Groups");
+
+        @NotNull
+        public final String label;
+
+        Type(@NotNull String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * @param time elapsed simulation time (in s) of the moment
+     * @param groups number of groups the pendulums form, 1 for alignment
+     * @param score how exactly the pattern forms, in range [0, 1]. 1 -> every pendulum exactly at its group's phase
+     * */
+    public record Moment(@NotNull Type type, double time, int groups, double score) {
+
+        @Override
+        public String toString() {
+            return type == Type.GROUPS? groups + " " + type.label.toLowerCase(): type.label;
+        }
+    }
+
+
+    private int wavePeriods = DEFAULT_WAVE_PERIODS;
+    private int maxGroups = DEFAULT_MAX_GROUPS;
+    private double minScore = DEFAULT_MIN_SCORE;
+
+    // Cache key: wave configuration
+    private long mLengthsVersion = -1;
+    private float mGravity = Float.NaN;
+    private float mStartAngle = Float.NaN;
+
+    // Cached frequencies (in Hz), effective wave period (in s), and moments within [mWindowStart, mWindowEnd)
+    private double[] mFrequencies;
+    private double mWavePeriod;
+    private double mWindowStart, mWindowEnd;
+    @Nullable
+    private List<Moment> mMoments;
+
+    public int getWavePeriods() {
+        return wavePeriods;
+    }
+
+    /**
+     * @param wavePeriods number of effective wave periods to compute moments for, ahead of the queried time
+     * */
+    public PendulumWaveMoments setWavePeriods(int wavePeriods) {
+        if (wavePeriods < 1) {
+            throw new IllegalArgumentException("Wave periods must be >= 1, given: " + wavePeriods);
+        }
+
+        if (this.wavePeriods != wavePeriods) {
+            this.wavePeriods = wavePeriods;
+            mMoments = null;
+        }
+
+        return this;
+    }
+
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    /**
+     * @param maxGroups largest number of groups to look for. 1 -> alignments only
+     * */
+    public PendulumWaveMoments setMaxGroups(int maxGroups) {
+        if (maxGroups < 1) {
+            throw new IllegalArgumentException("Max groups must be >= 1, given: " + maxGroups);
+        }
+
+        if (this.maxGroups != maxGroups) {
+            this.maxGroups = maxGroups;
+            mMoments = null;
+        }
+
+        return this;
+    }
+
+    public double getMinScore() {
+        return minScore;
+    }
+
+    public PendulumWaveMoments setMinScore(double minScore) {
+        if (!(minScore >= 0 && minScore <= 1)) {
+            throw new IllegalArgumentException("Min score must be in range [0, 1], given: " + minScore);
+        }
+
+        if (this.minScore != minScore) {
+            this.minScore = minScore;
+            mMoments = null;
+        }
+
+        return this;
+    }
+
+    /**
+     * @return effective wave period (in s) of the last analyzed configuration, as fitted to the pendulum frequencies
+     * */
+    public double getWavePeriod() {
+        return mWavePeriod;
+    }
+
+    private boolean isConfigChanged(@NotNull PendulumWave wave) {
+        return mFrequencies == null
+                || mLengthsVersion != wave.lengthsVersion()
+                || mGravity != wave.gravity()
+                || mStartAngle != wave.getPendulumStartAngle();
+    }
+
+    private void analyzeConfig(@NotNull PendulumWave wave) {
+        final int count = wave.pendulumCount();
+        final float[] lengths = wave.copyLengths(null, 0, count);
+        final double periodFactor = PendulumPeriod.periodFactor(wave.getPendulumStartAngle());
+
+        final double[] freqs = new double[count];
+        for (int i=0; i < count; i++) {
+            freqs[i] = Math.sqrt(wave.gravity() / lengths[i]) / (2 * Math.PI * periodFactor);
+        }
+
+        // Least squares slope of frequency over index
+        double slope = 0;
+        if (count > 1) {
+            final double meanI = (count - 1) / 2.0;
+            double meanF = 0;
+            for (double f: freqs) {
+                meanF += f;
+            }
+
+            meanF /= count;
+
+            double cov = 0, var = 0;
+            for (int i=0; i < count; i++) {
+                cov += (i - meanI) * (freqs[i] - meanF);
+                var += (i - meanI) * (i - meanI);
+            }
+
+            slope = cov / var;
+        }
+
+        mFrequencies = freqs;
+        mWavePeriod = slope != 0? 1 / Math.abs(slope): Double.POSITIVE_INFINITY;
+        mLengthsVersion = wave.lengthsVersion();
+        mGravity = wave.gravity();
+        mStartAngle = wave.getPendulumStartAngle();
+        mMoments = null;
+    }
+
+    /**
+     * @return R_q at the given time: magnitude of the mean of exp(i q phi) over all pendulums
+     * */
+    private double orderParameter(double time, int q) {
+        final double[] freqs = mFrequencies;
+        double re = 0, im = 0;
+        for (double f: freqs) {
+            final double phase = 2 * Math.PI * q * ((f * time) % 1);
+            re += Math.cos(phase);
+            im += Math.sin(phase);
+        }
+
+        return Math.hypot(re, im) / freqs.length;
+    }
+
+    @NotNull
+    private List<Moment> computeMoments(double from, double to) {
+        final List<Moment> moments = new ArrayList<>();
+        final int count = mFrequencies.length;
+        final double period = mWavePeriod;
+        if (count < 2 || !Double.isFinite(period))
+            return moments;
+
+        final BrentOptimizer optimizer = new BrentOptimizer(BRENT_REL_TOLERANCE, BRENT_ABS_TOLERANCE);
+        final int maxQ = Math.min(maxGroups, count);
+
+        for (int q=1; q <= maxQ; q++) {
+            final int groups = q;
+
+            // The peak of R_q narrows with q and the number of pendulums
+            final double halfWidth = period / (2.0 * q * count);
+
+            for (int p=0; p < q; p++) {
+                if (gcd(p, q) != 1)
+                    continue;       // a pattern with fewer groups
+
+                final long kStart = (long) Math.floor((from / period) - ((double) p / q));
+                for (long k=Math.max(kStart, 0); ; k++) {
+                    final double candidate = (k + ((double) p / q)) * period;
+                    if (candidate >= to)
+                        break;
+
+                    if (candidate <= 0 || candidate < from - halfWidth)
+                        continue;       // t = 0 is the start state
+
+                    final UnivariatePointValuePair best = optimizer.optimize(
+                            new MaxEval(BRENT_MAX_EVALUATIONS),
+                            new UnivariateObjectiveFunction(t -> orderParameter(t, groups)),
+                            GoalType.MAXIMIZE,
+                            new SearchInterval(Math.max(candidate - halfWidth, 0), candidate + halfWidth, candidate));
+
+                    final double time = best.getPoint();
+                    if (time < from || time >= to || best.getValue() < minScore)
+                        continue;
+
+                    final Type type = q == 1? Type.ALIGNMENT: q == 2? Type.HALF_SPLIT: Type.GROUPS;
+                    moments.add(new Moment(type, time, q, best.getValue()));
+                }
+            }
+        }
+
+        moments.sort(Comparator.comparingDouble(Moment::time));
+        return moments;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            final int t = a % b;
+            a = b;
+            b = t;
+        }
+
+        return a;
+    }
+
+    /**
+     * @return the moments of the given wave within the next {@link #getWavePeriods() wave periods} from the given time, sorted by time.
+     * Cached until the wave configuration changes or the time leaves the cached window
+     * */
+    @NotNull
+    public List<Moment> moments(@NotNull PendulumWave wave, double fromSecs) {
+        if (isConfigChanged(wave)) {
+            analyzeConfig(wave);
+        }
+
+        final double period = mWavePeriod;
+        final double span = Double.isFinite(period)? wavePeriods * period: 0;
+        if (mMoments == null || fromSecs < mWindowStart || fromSecs + span > mWindowEnd) {
+            // Window aligned to whole wave periods, one period longer so that it need not move for a while
+            mWindowStart = Double.isFinite(period)? Math.floor(fromSecs / period) * period: fromSecs;
+            mWindowEnd = mWindowStart + span + (Double.isFinite(period)? period: 0);
+            mMoments = Collections.unmodifiableList(computeMoments(mWindowStart, mWindowEnd));
+        }
+
+        final List<Moment> result = new ArrayList<>();
+        for (Moment m: mMoments) {
+            if (m.time >= fromSecs && m.time < fromSecs + span) {
+                result.add(m);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the moments of the given wave within the next {@link #getWavePeriods() wave periods} from its current time
+     * */
+    @NotNull
+    public List<Moment> moments(@NotNull PendulumWave wave) {
+        return moments(wave, wave.getElapsedSeconds());
+    }
+
+    /**
+     * @param type type of moment to look for, or {@code null} for any
+     * @return the first moment of the given type after the given time, or {@code null} if none within the next {@link #getWavePeriods() wave periods}
+     * */
+    @Nullable
+    public Moment next(@NotNull PendulumWave wave, double afterSecs, @Nullable Type type) {
+        for (Moment m: moments(wave, afterSecs)) {
+            if (m.time > afterSecs && (type == null || m.type == type)) {
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+}
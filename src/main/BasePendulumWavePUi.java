@@ -1,5 +1,9 @@
 package main;
 
+import automation.*;
+import design.DesignTarget;
+import design.PendulumWaveDesigner;
+import design.PendulumWaveMoments;
 import org.apache.commons.math3.exception.OutOfRangeException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -13,12 +17,16 @@ import processing.opengl.PJOGL;
 import sound.MidiNotePlayer;
 import util.Config;
 import util.Format;
+import util.Point3DF;
 import util.U;
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -50,12 +58,18 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
     @NotNull
     protected final PendulumWave pendulumWave;
 
+    // Render vertices, written by the same sweep that steps the pendulums
+    @NotNull
+    protected final PendulumVertexBuffer pendulumVertices = new PendulumVertexBuffer();
+
     /* Draw Styles */
     private boolean mDrawOnlyBob = GLConfig.DEFAULT_DRAW_ONLY_BOB;
     private final List<PendulumDrawStylesHolder> drawStyles = Collections.synchronizedList(new ArrayList<>());
+    private int mDrawStylesVersion;
 
     /* Sound */
     private boolean mSoundEnabled = GLConfig.DEFAULT_SOUND_ENABLED;
+    private boolean mPendulumWaveListenerAttached;
     private boolean mPolyRhythmEnabled = GLConfig.DEFAULT_POLY_RHYTHM_ENABLED;
     @Nullable
     private volatile MidiNotePlayer mSoundPlayer;
@@ -64,7 +78,41 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
     private boolean mHudEnabled = GLConfig.DEFAULT_HUD_ENABLED;
     private boolean mShowKeyBindings = GLConfig.DEFAULT_SHOW_KEY_BINDINGS;
 
-    private int mPausedDrawTrigger;
+    // HUD text, rebuilt only when a value changes
+    private final HudStatusLine mStatusLine1 = new HudStatusLine(), mStatusLine2 = new HudStatusLine();
+    private final StringBuilder mHudTimeBuilder = new StringBuilder();
+    private char[] mHudTimeChars = new char[64];
+    private int mHudTimeLength = -1;
+    private long mHudTimeSecs = -1;
+    private int mHudTimeFlags = -1;
+
+    private float @Nullable[] mCameraRotations;
+    private int mCameraRotationsFrame = -1;
+
+    // Chord origins by pendulum index, invalidated on resize or count change
+    private Point3DF[] mLineDrawOrigins = new Point3DF[0];
+    private int mLineDrawOriginsWidth = -1, mLineDrawOriginsHeight = -1;
+
+    private long mPausedDrawTrigger;
+
+    /* Autosave */
+    @Nullable
+    private PendulumWaveAutosave mAutosave;
+
+    // System time a fast-forward started from the command line, to report when it completes. -1 if none
+    private long mFastForwardStartNs = -1;
+
+    /* Spatial spectrum analytics, null until enabled. Created on the UI thread, read by the command line thread too */
+    @Nullable
+    private volatile PendulumWaveSpectrum mSpectrum;
+
+    /* Moments, cached across commands. Only used on the UI thread */
+    @NotNull
+    private final PendulumWaveMoments mMoments = new PendulumWaveMoments();
+
+    // Whether to resume the last autosave on startup. null -> ask on the command line
+    @Nullable
+    private Boolean mAutosaveResume;
 
     public BasePendulumWavePUi(@NotNull PendulumWave pendulumWave) {
         this.pendulumWave = pendulumWave;
@@ -79,14 +127,23 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         this(new PendulumWave());
     }
 
+    /**
+     * @return event types this UI subscribes to on the {@link PendulumWave#events() event bus} of the wave. Per-pendulum angle and length
+     * events are left out, so the wave does not dispatch them at all
+     * */
+    protected int pendulumWaveEventMask() {
+        // Highlights only play sound. Without interest, the wave can evaluate off-screen pendulums lazily
+        return PendulumWaveEvents.COUNT | (isSoundEnabled()? PendulumWaveEvents.HIGHLIGHT: 0);
+    }
+
     public final void attachPendulumWaveListener() {
-        pendulumWave.setListener(this);
+        mPendulumWaveListenerAttached = true;
+        pendulumWave.events().subscribe(this, pendulumWaveEventMask());
     }
 
     public final void detachPendulumWaveListener() {
-        if (pendulumWave.getListener() == this) {
-            pendulumWave.setListener(null);
-        }
+        mPendulumWaveListenerAttached = false;
+        pendulumWave.events().unsubscribe(this);
     }
 
 
@@ -110,10 +167,38 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         return getCamera() != null;
     }
 
+    /**
+     * @return rotations of the camera about X, Y and Z (in radians), or null if there is no camera. Read once per frame, since every read allocates
+     * */
+    public final float @Nullable[] getCameraRotations() {
+        final PeasyCam cam = getCamera();
+        if (cam == null)
+            return null;
+
+        if (mCameraRotations == null || mCameraRotationsFrame != frameCount) {
+            mCameraRotations = cam.getRotations();
+            mCameraRotationsFrame = frameCount;
+        }
+
+        return mCameraRotations;
+    }
+
     public boolean shouldDrawAxesInHUD() {
         return isRendered3D();
     }
 
+    /**
+     * @return whether something in this UI reads the state of every pendulum regularly: the spectrum analysis, autosave, or the rewind history,
+     * which is only needed with drag or collisions. Off-screen pendulums must then be stepped as usual, since catching them up so often would cost more.<br>
+     * Sound is not counted here: it subscribes to highlights, which by itself keeps the wave from evaluating lazily
+     * */
+    protected boolean observesAllPendulums() {
+        final PendulumWaveAutosave autosave = mAutosave;
+        return mSpectrum != null
+                || (autosave != null && autosave.isEnabled())
+                || !pendulumWave.isTimeReversible();
+    }
+
     public boolean supportsSurfaceLocationSetter() {
         return true;
     }
@@ -214,6 +299,112 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         final float wp = config.getValueFloat(R.CONFIG_KEY_WAVE_PERIOD, -1f);
         if (wp > 0)
             pendulumWave.setEffectiveWavePeriod(wp, false);     // should be last
+
+        // Autosave, OFF unless an interval is configured
+        final float autosaveInterval = config.getValueFloat(R.CONFIG_KEY_AUTOSAVE_INTERVAL, 0);
+        if (autosaveInterval > 0) {
+            obtainAutosave().setIntervalSecs(Math.max(autosaveInterval, PendulumWaveAutosave.MIN_INTERVAL_SECS)).setEnabled(true);
+        } else if (mAutosave != null) {
+            mAutosave.setEnabled(false);
+        }
+
+        final int autosaveResume = config.getValueInt(R.CONFIG_KEY_AUTOSAVE_RESUME, -1);
+        mAutosaveResume = autosaveResume < 0? null: autosaveResume > 0;
+    }
+
+    @NotNull
+    public final Path getAutosaveFile() {
+        return isRendered3D()? R.FILE_AUTOSAVE_3D: R.FILE_AUTOSAVE_2D;
+    }
+
+    @NotNull
+    private PendulumWaveAutosave obtainAutosave() {
+        PendulumWaveAutosave autosave = mAutosave;
+        if (autosave == null) {
+            autosave = new PendulumWaveAutosave(getAutosaveFile(), PendulumWaveAutosave.DEFAULT_INTERVAL_SECS).start();
+            mAutosave = autosave;
+        }
+
+        return autosave;
+    }
+
+    /**
+     * Restores the last autosave, if any. Must be called on the UI thread
+     * */
+    public final boolean resumeFromAutosave() {
+        final Path file = getAutosaveFile();
+        if (!Files.isRegularFile(file)) {
+            printErrln("\n" + R.SHELL_AUTOSAVE + "No autosave found: " + file);
+            return false;
+        }
+
+        try {
+            PendulumWaveCheckpoint.load(pendulumWave, file);
+            println("\n" + R.SHELL_AUTOSAVE + String.format("Resumed %d pendulums at %s s from autosave: %s", pendulumWave.pendulumCount(), Format.nf002((float) pendulumWave.getElapsedSeconds()), file));
+            return true;
+        } catch (IOException | IllegalArgumentException exc) {
+            printErrln("\n" + R.SHELL_AUTOSAVE + "Failed to resume from autosave: " + file + ". " + exc.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Runs the given double pendulum ensemble for the given time (in s), reporting the chaos estimates as they converge. Blocks until done
+     * */
+    private void runChaosEnsemble(@NotNull DoublePendulumEnsemble ensemble, double secs) {
+        println("\n" + R.SHELL_CHAOS + String.format("Running %d double pendulums for %s s...", ensemble.size(), Format.nf002((float) secs)));
+        final long startNs = System.nanoTime();
+        final int reports = 4;
+        for (int r=1; r <= reports; r++) {
+            ensemble.advance(secs / reports);
+
+            final double divergence = ensemble.divergenceTime();
+            println(R.SHELL_CHAOS + String.format("t = %s s  |  Lyapunov exponent: %.4f ± %.4f s-1  |  Diverged: %.1f%%  |  Divergence time: %s (predicted %s)",
+                    Format.nf002((float) ensemble.getElapsedSeconds()),
+                    ensemble.lyapunovExponent(),
+                    ensemble.lyapunovExponentStdDev(),
+                    ensemble.divergedFraction() * 100,
+                    Double.isNaN(divergence)? "-": Format.nf002((float) divergence) + " s",
+                    Format.nf002((float) ensemble.predictedDivergenceTime()) + " s"));
+        }
+
+        println(R.SHELL_CHAOS + String.format("Done in %d ms", (System.nanoTime() - startNs) / 1_000_000));
+    }
+
+    private void applyDesign(@NotNull PendulumWaveDesigner designer, @NotNull PendulumWaveDesigner.Result result) {
+        if (pendulumWave.pendulumCount() != designer.pendulumCount()) {
+            printErrln("\n" + R.SHELL_DESIGN + String.format("Lengths discarded: solved for %d pendulums, but the wave now has %d", designer.pendulumCount(), pendulumWave.pendulumCount()));
+            return;
+        }
+
+        pendulumWave.setCustomPendulumLengths(result.lengths(), true);
+        println("\n" + R.SHELL_DESIGN + String.format("Lengths applied (%d ms). Phase error RMS: %s deg  |  Max: %s deg  |  Shortest: %s m  |  Longest: %s m",
+                result.durationMs(),
+                Format.nf002((float) result.rmsPhaseErrorDegrees()),
+                Format.nf002((float) result.maxPhaseErrorDegrees()),
+                Format.nf002(pendulumWave.getShortestPendulum().getLength()),
+                Format.nf002(pendulumWave.getLongestPendulum().getLength())));
+    }
+
+    /**
+     * Offers to resume the last autosave on startup, or resumes it directly as per the configuration
+     * */
+    protected void offerResumeFromAutosave() {
+        final Path file = getAutosaveFile();
+        if (Boolean.FALSE.equals(mAutosaveResume) || !Files.isRegularFile(file))
+            return;
+
+        if (Boolean.TRUE.equals(mAutosaveResume)) {
+            enqueueTask(this::resumeFromAutosave);
+            return;
+        }
+
+        try {
+            final PendulumWaveCheckpoint.Info info = PendulumWaveCheckpoint.readInfo(file);
+            println(R.SHELL_AUTOSAVE + String.format("Found an autosave of %d pendulums at %s s. Enter 'resume' to continue from it\n", info.pendulumCount(), Format.nf002((float) info.elapsedSeconds())));
+        } catch (IOException exc) {
+            printErrln(R.SHELL_AUTOSAVE + "Ignoring unreadable autosave: " + file + ". " + exc.getMessage());
+        }
     }
 
     public final boolean setSurfaceLocation(int x, int y, boolean verbose) {
@@ -310,8 +501,46 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
     protected void drawMain() {
         background(GLConfig.BG.getRGB());
 
-        pendulumWave.updatePendulums();
-        pendulumWave.drawPendulums(this, this);
+        updatePendulumsAndDraw();
+    }
+
+    /**
+     * Lays out the {@link #pendulumVertices render vertices}, and the bobs of {@link PendulumWave#getCollisions() collisions} if any, along the
+     * chord origins of the first two pendulums. Chord origins must be linear in the index
+     * */
+    protected void updatePendulumLayout() {
+        final int count = pendulumWave.pendulumCount();
+        final Pendulum longest = pendulumWave.getLongestPendulum();
+        if (count == 0 || longest == null)
+            return;
+
+        final Pendulum first = pendulumWave.pendulumAt(0);
+        final Point3DF o0 = lineDrawOrigin(first);
+        final Point3DF o1 = count > 1? lineDrawOrigin(pendulumWave.pendulumAt(1)): o0;
+        final float scale = lengthScale(longest);
+        pendulumVertices.setLayout(o0.x, o0.y, o0.z, o1.x - o0.x, o1.y - o0.y, o1.z - o0.z, scale);
+
+        final PendulumCollisions collisions = pendulumWave.getCollisions();
+        if (collisions != null && scale > 0) {
+            // pixels -> m
+            collisions.setLayout((o1.x - o0.x) / scale, (o1.y - o0.y) / scale, (o1.z - o0.z) / scale, bobRadius(first) / scale);
+        }
+    }
+
+    /**
+     * Steps the pendulums, projecting them into the {@link #pendulumVertices render vertices} on the way, and draws them from those
+     * */
+    protected final void updatePendulumsAndDraw() {
+        updatePendulumLayout();
+        pendulumWave.updatePendulums(pendulumVertices);
+        drawPendulums();
+    }
+
+    /**
+     * Draws the pendulums, after they are stepped and projected into the {@link #pendulumVertices render vertices}
+     * */
+    protected void drawPendulums() {
+        pendulumWave.drawPendulums(this, this, pendulumVertices);
     }
 
 
@@ -325,7 +554,11 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
     /**
      * @return bottomY of the bounding box
      * */
-    private float drawMainControlsAlignRight(@NotNull Control[] controls, float topy, float padx, float hgap, float vgap, @NotNull Predicate<Control> showKeyBindingsFilter) {
+    private static boolean shouldShowKeyBinding(@NotNull Control control, boolean showKeyBindings) {
+        return showKeyBindings || control.alwaysShowKeyBinding;
+    }
+
+    private float drawMainControlsAlignRight(@NotNull Control[] controls, float topy, float padx, float hgap, float vgap, boolean showKeyBindings) {
         final String label_value_delimiter = "      ";
         final String label_key_label_delimiter = "   ";
 
@@ -333,12 +566,8 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         final float entry_height = textAscent() + textDescent();
         float max_val_width = 0;
 
-        final String[] values = new String[controls.length];
-        for (int i=0; i < controls.length; i++) {
-            final String val = controls[i].getFormattedValue(this);
-            values[i] = val;
-
-            max_val_width = max(max_val_width, textWidth(val));
+        for (Control c: controls) {
+            max_val_width = max(max_val_width, textWidth(c.getFormattedValue(this)));
         }
 
         max_val_width += textWidth(label_value_delimiter);
@@ -349,25 +578,24 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         for (int i=0; i < controls.length; i++) {
             final Control control = controls[i];
             final String label = control.label;
-            final String keyLabel = label_key_label_delimiter + control.keyBindingLabel;
-            final String val = values[i];
+            final String val = control.getFormattedValue(this);       // cached, not formatted again
 
             final float y1 = topy + (i * (entry_height + vgap));
 
-            // Value
+            // Value. Leading delimiter is blank when right aligned
             textSize(getTextSize(GLConfig.TEXT_SIZE_MAIN_CONTROLS_VALUE));
             fill(GLConfig.FG_MAIN_CONTROLS_VALUE.getRGB());
             textAlign(RIGHT, TOP);
-            text(label_value_delimiter + val, x1, y1);
+            text(val, x1, y1);
 
             // Key Label
             final float keyLabelW;
-            if (showKeyBindingsFilter.test(control)) {
+            if (shouldShowKeyBinding(control, showKeyBindings)) {
                 textSize(getTextSize(GLConfig.TEXT_SIZE_MAIN_CONTROLS_KEY_LABEL));
                 fill(GLConfig.FG_MAIN_CONTROLS_KEY_LABEL.getRGB());
                 textAlign(RIGHT, BOTTOM);
-                text(keyLabel, x2, y1 + entry_height);
-                keyLabelW = textWidth(keyLabel);
+                text(control.keyBindingLabel, x2, y1 + entry_height);
+                keyLabelW = textWidth(label_key_label_delimiter) + textWidth(control.keyBindingLabel);
             } else {
                 keyLabelW = 0;
             }
@@ -382,7 +610,7 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         return topy + ((controls.length - 1) * (entry_height + vgap)) + entry_height;
     }
 
-    private float drawMainControlsAlignLeft(@NotNull Control[] controls, float topy, float padx, float hgap, float vgap, @NotNull Predicate<Control> showKeyBindingsFilter) {
+    private float drawMainControlsAlignLeft(@NotNull Control[] controls, float topy, float padx, float hgap, float vgap, boolean showKeyBindings) {
         final String label_value_delimiter = "      ";
         final String label_key_label_delimiter = "   ";
 
@@ -392,9 +620,12 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         textSize(getTextSize(max(GLConfig.TEXT_SIZE_MAIN_CONTROLS_LABEL, GLConfig.TEXT_SIZE_MAIN_CONTROLS_KEY_LABEL)));
         float max_label_width = 0;
         for (Control c: controls) {
-            final String label = c.label + (showKeyBindingsFilter.test(c)? label_key_label_delimiter + c.keyBindingLabel : "");
+            float label_width = textWidth(c.label);
+            if (shouldShowKeyBinding(c, showKeyBindings)) {
+                label_width += textWidth(label_key_label_delimiter) + textWidth(c.keyBindingLabel);
+            }
 
-            max_label_width = max(max_label_width, textWidth(label));
+            max_label_width = max(max_label_width, label_width);
         }
 
         final float x2 = padx + max_label_width + hgap;
@@ -402,7 +633,6 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         for (int i=0; i < controls.length; i++) {
             final Control control = controls[i];
             final String label = control.label;
-            final String keyLabel = label_key_label_delimiter + control.keyBindingLabel;
             final String val = control.getFormattedValue(this);
 
             final float y1 = topy + (i * (entry_height + vgap));
@@ -415,18 +645,18 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
             final float labelW = textWidth(label);
 
             // Key Label
-            if (showKeyBindingsFilter.test(control)) {
+            if (shouldShowKeyBinding(control, showKeyBindings)) {
                 textSize(getTextSize(GLConfig.TEXT_SIZE_MAIN_CONTROLS_KEY_LABEL));
                 fill(GLConfig.FG_MAIN_CONTROLS_KEY_LABEL.getRGB());
                 textAlign(LEFT, BOTTOM);
-                text(keyLabel, padx + labelW, y1 + entry_height);
+                text(control.keyBindingLabel, padx + labelW + textWidth(label_key_label_delimiter), y1 + entry_height);
             }
 
             // Value
             textSize(getTextSize(GLConfig.TEXT_SIZE_MAIN_CONTROLS_VALUE));
             fill(GLConfig.FG_MAIN_CONTROLS_VALUE.getRGB());
             textAlign(LEFT, TOP);
-            text(label_value_delimiter + val, x2, y1);
+            text(val, x2 + textWidth(label_value_delimiter), y1);
         }
 
         return topy + ((controls.length - 1) * (entry_height + vgap)) + entry_height;
@@ -436,21 +666,12 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
      * @return top y coordinate of the bounding rectangle
      * */
     private float drawStatusControls(@NotNull Control[] controls1, @NotNull Control[] controls2, @NotNull String delimiter, float padx, float pady, float vgap, boolean showKeyBindings) {
-        final String[] values1 = new String[controls1.length];
-        final String[] values2 = new String[controls2.length];
-
-        for (int i=0; i < controls1.length; i++) {
-            Control c = controls1[i];
-            values1[i] = c.label + " : " + c.getFormattedValue(this);
-        }
-
-        for (int i=0; i < controls2.length; i++) {
-            Control c = controls2[i];
-            values2[i] = c.label + " : " + c.getFormattedValue(this);
-        }
-
-        final String status1 = join(values1, delimiter);
-        final String status2 = join(values2, delimiter);
+        final HudStatusLine line1 = mStatusLine1.update(this, controls1, delimiter);
+        final HudStatusLine line2 = mStatusLine2.update(this, controls2, delimiter);
+        final String[] values1 = line1.entries;
+        final String[] values2 = line2.entries;
+        final String status1 = line1.text;
+        final String status2 = line2.text;
 
         final float statusBottomY = height - pady;
 
@@ -474,8 +695,8 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
             final float bottomY = statusTopY - vgap;
 
             final float delW = textWidth(delimiter);
-            final float[] center1Pos = new float[values1.length];
-            final float[] center2Pos = new float[values2.length];
+            final float[] center1Pos = line1.centers;
+            final float[] center2Pos = line2.centers;
 
             float xs1 = padx;
             for (int i=0; i < values1.length; i++) {
@@ -525,8 +746,8 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         pushStyle();
 
         translate(topX + lenAxis, topY + lenAxis, 0);       // go to center
-        if (cam != null) {
-            float[] r = cam.getRotations();
+        final float[] r = cam != null? getCameraRotations(): null;
+        if (r != null) {
             rotateX(r[0]);
             rotateY(r[1]);
             rotateZ(r[2]);
@@ -562,7 +783,6 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
 
         final boolean hudEnabled = isHudEnabled();
         final boolean showKeyBindings = areKeyBindingsShown();
-        final Predicate<Control> keyBindingsFilter = c -> showKeyBindings || c.alwaysShowKeyBinding;
 
         final float padx = 20;
         final float pady = 20;
@@ -582,12 +802,12 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
 
         if (hudEnabled) {
             if (cam != null) {
-                y_1 = drawMainControlsAlignLeft(Control.CONTROLS_CAMERA, y_1, padx, 0, vgap_main, keyBindingsFilter);
+                y_1 = drawMainControlsAlignLeft(Control.CONTROLS_CAMERA, y_1, padx, 0, vgap_main, showKeyBindings);
                 y_1 += (pady * 1.5f);   // vgap
             }
 
             if (isFullscreen()) {
-                drawMainControlsAlignLeft(Control.CONTROLS_FULLSCREEN_WINDOW, y_1, padx, 0, vgap_main, keyBindingsFilter);
+                drawMainControlsAlignLeft(Control.CONTROLS_FULLSCREEN_WINDOW, y_1, padx, 0, vgap_main, showKeyBindings);
             }
         }
 
@@ -595,20 +815,20 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         final float statusTopY;
         if (hudEnabled) {
             // TOP-RIGHT: Main Controls 1
-            final float bottomYMain1 = drawMainControlsAlignRight(Control.CONTROLS_MAIN1, pady, padx, 0, vgap_main, keyBindingsFilter);
+            final float bottomYMain1 = drawMainControlsAlignRight(Control.CONTROLS_MAIN1, pady, padx, 0, vgap_main, showKeyBindings);
 
             // TOP-RIGHT: Main Controls 2
-            final float bottomYMain2 = drawMainControlsAlignRight(Control.CONTROLS_MAIN2, bottomYMain1 + (pady * 1.5f), padx, 0, vgap_main, keyBindingsFilter);
+            final float bottomYMain2 = drawMainControlsAlignRight(Control.CONTROLS_MAIN2, bottomYMain1 + (pady * 1.5f), padx, 0, vgap_main, showKeyBindings);
 
             // TOP-RIGHT: Main Controls 3
-            final float bottomYMain3 = drawMainControlsAlignRight(Control.CONTROLS_MAIN3, bottomYMain2 + (pady * 1.5f), padx, 0, vgap_main, keyBindingsFilter);
+            final float bottomYMain3 = drawMainControlsAlignRight(Control.CONTROLS_MAIN3, bottomYMain2 + (pady * 1.5f), padx, 0, vgap_main, showKeyBindings);
 
             // BOTTOM-LEFT and BOTTOM-RIGHT: status 1 and status 2
             final String delimiter = "   |   ";
             statusTopY = drawStatusControls(Control.CONTROLS_STATUS1, Control.CONTROLS_STATUS2, delimiter, padx, pady, vgap_status, showKeyBindings);
         } else {
             // TOP-RIGHT: Controls to show even when HUD is disabled
-            drawMainControlsAlignRight(Control.CONTROLS_HUD_DISABLED, pady, padx, 0, vgap_main, keyBindingsFilter);
+            drawMainControlsAlignRight(Control.CONTROLS_HUD_DISABLED, pady, padx, 0, vgap_main, showKeyBindings);
 
             statusTopY = height;
         }
@@ -616,17 +836,15 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
 
         /* BOTTOM-LEFT SIDE: Pause State ......................................................*/
         final boolean paused = pendulumWave.isPaused();
-        final int mills = millis();
+        final long mills = millis();        // wall time: the simulation clock may be virtual or stopped
 
         final long pauseDelta = mills - mPausedDrawTrigger;
         final boolean draw = !paused || (pauseDelta > 0 && pauseDelta < 500 /* ms to draw */);
         if (draw) {
             // Draw things which depends on Play/Pause state
 
-            final String elapsedFormatted = String.valueOf((long) Math.floor(pendulumWave.getElapsedSeconds()));
-            String text = "Time : " + elapsedFormatted + " s";
+            final int textLength = updateHudTimeText(paused);
             if (paused) {
-                text += "   |   PAUSED";
                 fill(GLConfig.ACCENT_HIGHLIGHT.getRGB());
             } else {
                 fill(GLConfig.ACCENT.getRGB());
@@ -634,7 +852,7 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
 
             textSize(getTextSize(GLConfig.TEXT_SIZE_NORMAL));
             textAlign(LEFT, BOTTOM);
-            text(text, padx, statusTopY - pady);
+            text(mHudTimeChars, 0, textLength, padx, statusTopY - pady);
         } else if (pauseDelta > 0) {
             mPausedDrawTrigger = mills + 400 /* ms to hide */;
         }
@@ -642,6 +860,102 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         popStyle();
     }
 
+    /**
+     * Writes the time and state line of the HUD into a reused char buffer. Rebuilt only when the elapsed whole seconds or a state flag changes,
+     * unless the spectrum or stats are shown, which change every frame
+     *
+     * @return length of the line
+     * */
+    private int updateHudTimeText(boolean paused) {
+        final long secs = (long) Math.floor(pendulumWave.getElapsedSeconds());
+        final PendulumWaveSpectrum spectrum = mSpectrum;
+        final boolean showSpectrum = spectrum != null && spectrum.isEnabled();
+        final PendulumWaveStats stats = pendulumWave.getStats();
+
+        final int flags = (pendulumWave.isReversed()? 1: 0)
+                | (pendulumWave.isAutomationActive()? 1 << 1: 0)
+                | (paused? 1 << 2: 0);
+
+        if (mHudTimeLength != -1 && secs == mHudTimeSecs && flags == mHudTimeFlags && !showSpectrum && stats == null)
+            return mHudTimeLength;
+
+        final StringBuilder sb = mHudTimeBuilder;
+        sb.setLength(0);
+        sb.append("Time : ").append(secs).append(" s");
+        if ((flags & 1) != 0) {
+            sb.append("   |   REWIND");
+        }
+
+        if ((flags & (1 << 1)) != 0) {
+            sb.append("   |   AUTO");
+        }
+
+        if (showSpectrum) {
+            sb.append("   |   ").append(spectrum.latestSummary());
+        }
+
+        if (stats != null) {
+            sb.append(String.format("   |   Damping ratio: %.5f (drag %.5f)", stats.averageMeasuredDampingRatio(), PendulumWaveStats.averageExpectedDampingRatio(pendulumWave)));
+        }
+
+        if (paused) {
+            sb.append("   |   PAUSED");
+        }
+
+        final int length = sb.length();
+        if (mHudTimeChars.length < length) {
+            mHudTimeChars = new char[length + (length >> 1)];
+        }
+
+        sb.getChars(0, length, mHudTimeChars, 0);
+        mHudTimeSecs = secs;
+        mHudTimeFlags = flags;
+        return mHudTimeLength = length;
+    }
+
+    /**
+     * A status line of the HUD, rejoined only when a formatted value changes. {@link Control#getFormattedValue(BasePendulumWavePUi)} returns the
+     * same instance for an unchanged value, so values are compared by identity
+     * */
+    private static final class HudStatusLine {
+
+        private String[] values = new String[0];
+        private String[] entries = new String[0];
+        private float[] centers = new float[0];
+        @NotNull
+        private String text = "";
+        @Nullable
+        private String delimiter;
+
+        @NotNull
+        private HudStatusLine update(@NotNull BasePendulumWavePUi ui, @NotNull Control[] controls, @NotNull String delimiter) {
+            boolean changed = !delimiter.equals(this.delimiter);
+            this.delimiter = delimiter;
+            if (values.length != controls.length) {
+                values = new String[controls.length];
+                entries = new String[controls.length];
+                centers = new float[controls.length];
+                changed = true;
+            }
+
+            for (int i=0; i < controls.length; i++) {
+                final Control c = controls[i];
+                final String val = c.getFormattedValue(ui);
+                if (val != values[i]) {
+                    values[i] = val;
+                    entries[i] = c.label + " : " + val;
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                text = join(entries, delimiter);
+            }
+
+            return this;
+        }
+    }
+
     public final void draw() {
         preDrawInternal();
 
@@ -654,6 +968,36 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         endHUD();
 
         postDrawInternal();
+
+        // Autosave copies the state here, and writes it in the background
+        if (mAutosave != null) {
+            mAutosave.onFrame(pendulumWave);
+        }
+
+        // Likewise, the spectrum is analyzed in the background
+        final PendulumWaveSpectrum spectrum = mSpectrum;
+        if (spectrum != null) {
+            spectrum.onFrame(pendulumWave);
+        }
+
+        if (mFastForwardStartNs != -1 && !pendulumWave.isFastForwardPending()) {
+            println("\n" + R.SHELL_FAST_FORWARD + String.format("Fast-forwarded to %s s in %d ms", Format.nf001((float) pendulumWave.getElapsedSeconds()), (System.nanoTime() - mFastForwardStartNs) / 1_000_000));
+            mFastForwardStartNs = -1;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (mAutosave != null) {
+            mAutosave.shutdown();
+        }
+
+        final PendulumWaveSpectrum spectrum = mSpectrum;
+        if (spectrum != null) {
+            spectrum.shutdown();
+        }
+
+        super.dispose();
     }
 
 
@@ -820,6 +1164,10 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
             return;
 
         mSoundEnabled = soundEnabled;
+        if (mPendulumWaveListenerAttached) {
+            attachPendulumWaveListener();       // update interest in highlights
+        }
+
         onSoundEnabledChanged(soundEnabled);
     }
 
@@ -898,10 +1246,41 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         return isRendered3D();
     }
 
-//    @Override
-//    public @NotNull Point3DF chordDrawOrigin(@NotNull Pendulum p) {
-//        return pendulumChordDrawOrigin(width, height, p.id);
-//    }
+    /**
+     * @return chord origin of the pendulum at the given index, in pixels. Called once per index, until the window is resized or the pendulum
+     * count changes
+     * */
+    @NotNull
+    protected abstract Point3DF createLineDrawOrigin(int index);
+
+    /**
+     * @return cached chord origin of the pendulum at the given index, in range [0, max(1, pendulum count))
+     * */
+    @NotNull
+    protected final Point3DF lineDrawOrigin(int index) {
+        final int count = Math.max(pendulumWave.pendulumCount(), 1);
+        if (mLineDrawOrigins.length != count || mLineDrawOriginsWidth != width || mLineDrawOriginsHeight != height) {
+            mLineDrawOrigins = new Point3DF[count];
+            mLineDrawOriginsWidth = width;
+            mLineDrawOriginsHeight = height;
+        }
+
+        if (index >= count)
+            return createLineDrawOrigin(index);     // count is changing
+
+        Point3DF origin = mLineDrawOrigins[index];
+        if (origin == null) {
+            origin = createLineDrawOrigin(index);
+            mLineDrawOrigins[index] = origin;
+        }
+
+        return origin;
+    }
+
+    @Override
+    public final @NotNull Point3DF lineDrawOrigin(@NotNull Pendulum p) {
+        return lineDrawOrigin(p.id);
+    }
 
     @Override
     public float lengthScale(@NotNull Pendulum p) {
@@ -973,6 +1352,15 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         for (int i=0; i < n; i++) {
             drawStyles.add(createPendulumDrawStyle(n, i));
         }
+
+        mDrawStylesVersion++;
+    }
+
+    /**
+     * @return a counter that changes whenever the draw styles are recreated
+     * */
+    protected final int drawStylesVersion() {
+        return mDrawStylesVersion;
     }
 
     @Override
@@ -1142,6 +1530,41 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
     }
 
 
+    @Nullable
+    private static AutomationTarget parseAutomationTarget(@NotNull String name) {
+        return switch (name) {
+            case "speed" -> AutomationTarget.SPEED;
+            case "gravity", "g" -> AutomationTarget.GRAVITY;
+            case "drag" -> AutomationTarget.DRAG;
+            case "mass" -> AutomationTarget.MASS;
+            case "period", "waveperiod", "wp" -> AutomationTarget.WAVE_PERIOD;
+            case "minosc", "min-osc", "osc", "mosc" -> AutomationTarget.MIN_OSCILLATIONS;
+            case "oscstep", "osc-step", "ostep", "step" -> AutomationTarget.OSCILLATION_STEP;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return factor to convert a value of the given target from CLI units to SI units
+     * */
+    private static float automationUnitScale(@NotNull AutomationTarget target) {
+        return switch (target) {
+            case DRAG, MASS -> 1 / 1000f;       // g/s and g
+            default -> 1;
+        };
+    }
+
+    @NotNull
+    private PendulumWaveAutomation obtainAutomation() {
+        PendulumWaveAutomation automation = pendulumWave.getAutomation();
+        if (automation == null) {
+            automation = new PendulumWaveAutomation();
+            pendulumWave.setAutomation(automation);
+        }
+
+        return automation;
+    }
+
     protected void main_init(String[] args) {
         if (CREATE_README) {
             R.createFullDescriptionReadme(true);
@@ -1152,6 +1575,7 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
         main_init(args);
 
         println(R.DESCRIPTION_GENERAL_WITH_HELP);
+        offerResumeFromAutosave();
 //        println("-> Command Line Thread: " + Thread.currentThread().getName() + "\n");
         boolean running = true;
         Scanner sc;
@@ -1386,7 +1810,7 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
                                 } else {
                                     mode = 0;
 
-                                    if (val < PendulumWave.SPEED_MIN || val > PendulumWave.SPEED_MAX) {
+                                    if (Math.abs(val) < PendulumWave.SPEED_MIN || Math.abs(val) > PendulumWave.SPEED_MAX) {
                                         throw new OutOfRangeException(val, PendulumWave.SPEED_MIN, PendulumWave.SPEED_MAX);
                                     }
 
@@ -1394,7 +1818,7 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
                                     done = true;
                                 }
                             } catch (OutOfRangeException oor) {
-                                printErrln(R.SHELL_SPEED + String.format("Speed %s must be within range [%s, %s], given: %s%s", mode == 0 ? "multiple" : "percent", Format.nf001(oor.getLo().floatValue()), Format.nf001(oor.getHi().floatValue()), Format.nf000(oor.getArgument().floatValue()), mode == 0 ? "x" : "%"));
+                                printErrln(R.SHELL_SPEED + String.format("Speed %s magnitude must be within range [%s, %s], given: %s%s", mode == 0 ? "multiple" : "percent", Format.nf001(oor.getLo().floatValue()), Format.nf001(oor.getHi().floatValue()), Format.nf000(oor.getArgument().floatValue()), mode == 0 ? "x" : "%"));
                                 usage_pr.run();
                             } catch (NumberFormatException ignored) {
                                 printErrln(R.SHELL_SPEED + "Speed must be an integer or a floating point number, given: " + val_str);
@@ -1406,6 +1830,732 @@ public abstract class BasePendulumWavePUi extends PApplet implements PendulumSty
                             }
                         }
 
+                        case "ff", "fast-forward" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_FAST_FORWARD + "Usage: ff [-on | -off] [secs | speed]. Fast-forwards by the given seconds, or plays at the given speed multiplier\nExample: ff 2400  |  ff -on 1000  |  ff -off\n");
+
+                            if (ops.contains("-off")) {
+                                tasks.add(() -> {
+                                    pendulumWave.setFastForwardSpeed(0);
+                                    println("\n" + R.SHELL_FAST_FORWARD + "Fast-forward OFF");
+                                });
+
+                                continue;
+                            }
+
+                            final String val_str = main_cmds.size() > 1 ? main_cmds.get(1) : "";
+                            if (val_str.isEmpty()) {
+                                println(R.SHELL_FAST_FORWARD + "Fast-forward: " + (pendulumWave.isFastForwarding()? Format.nf001(pendulumWave.getFastForwardSpeed()) + "x": "OFF"));
+                                usage_pr.run();
+                                continue;
+                            }
+
+                            try {
+                                final float val = Float.parseFloat(val_str);
+                                if (ops.contains("-on")) {
+                                    if (!(val >= PendulumWave.FAST_FORWARD_SPEED_MIN && val <= PendulumWave.FAST_FORWARD_SPEED_MAX)) {
+                                        throw new OutOfRangeException(val, PendulumWave.FAST_FORWARD_SPEED_MIN, PendulumWave.FAST_FORWARD_SPEED_MAX);
+                                    }
+
+                                    tasks.add(() -> {
+                                        pendulumWave.setFastForwardSpeed(val);
+                                        println("\n" + R.SHELL_FAST_FORWARD + "Fast-forward ON at " + Format.nf001(val) + "x");
+                                    });
+                                } else {
+                                    if (!(val >= 0 && Float.isFinite(val))) {
+                                        throw new IllegalArgumentException("Fast-forward time must be finite and >= 0, given: " + val_str);
+                                    }
+
+                                    // Spread over the next frames, reported when done
+                                    tasks.add(() -> {
+                                        pendulumWave.startFastForward(val);
+                                        mFastForwardStartNs = System.nanoTime();
+                                    });
+                                }
+                            } catch (NumberFormatException exc) {
+                                printErrln(R.SHELL_FAST_FORWARD + "Fast-forward time and speed must be integers or floating point numbers, given: " + val_str);
+                                usage_pr.run();
+                            } catch (OutOfRangeException exc) {
+                                printErrln(R.SHELL_FAST_FORWARD + "Fast-forward speed must be in range [" + PendulumWave.FAST_FORWARD_SPEED_MIN + ", " + PendulumWave.FAST_FORWARD_SPEED_MAX + "], given: " + val_str);
+                                usage_pr.run();
+                            } catch (IllegalArgumentException arg_exc) {
+                                printErrln(R.SHELL_FAST_FORWARD + arg_exc.getMessage());
+                                usage_pr.run();
+                            }
+                        }
+
+                        case "rewind", "reverse" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_REWIND + "Usage: rewind [-on | -off] [secs]. Toggles reverse playback, or rewinds the simulation by the given seconds\nExample: rewind  |  rewind -on  |  rewind 10\n");
+
+                            final String val_str = main_cmds.size() > 1 ? main_cmds.get(1) : "";
+                            if (val_str.isEmpty()) {
+                                if (ops.contains("-on")) {
+                                    tasks.add(() -> pendulumWave.setReversed(true));
+                                } else if (ops.contains("-off")) {
+                                    tasks.add(() -> pendulumWave.setReversed(false));
+                                } else {
+                                    tasks.add(pendulumWave::toggleReversed);
+                                }
+
+                                tasks.add(() -> println("\n" + R.SHELL_REWIND + "Rewind " + Control.REWIND.getFormattedValue(this)));
+                                continue;
+                            }
+
+                            try {
+                                final float secs = Float.parseFloat(val_str);
+                                if (secs < 0) {
+                                    throw new IllegalArgumentException("Rewind time must be >= 0, given: " + val_str);
+                                }
+
+                                tasks.add(() -> {
+                                    final double rewindable = pendulumWave.getRewindableSeconds();
+                                    if (secs > 0 && rewindable == 0 && !pendulumWave.isTimeReversible()) {
+                                        printErrln(R.SHELL_REWIND + "Nothing to rewind: no history has been recorded with drag or collisions since the last parameter change");
+                                        return;
+                                    }
+
+                                    if (secs > rewindable && rewindable < pendulumWave.getElapsedSeconds()) {
+                                        printErrln(R.SHELL_REWIND + "Only the last " + Format.nf001((float) rewindable) + " s can be rewound with drag or collisions. Rewinding to the oldest checkpoint");
+                                    }
+
+                                    pendulumWave.seekBy(-secs);
+                                    println("\n" + R.SHELL_REWIND + "Rewound to " + Format.nf001((float) pendulumWave.getElapsedSeconds()) + " s");
+                                });
+                            } catch (NumberFormatException exc) {
+                                printErrln(R.SHELL_REWIND + "Rewind time must be an integer or a floating point number, given: " + val_str);
+                                usage_pr.run();
+                            } catch (IllegalArgumentException arg_exc) {
+                                printErrln(R.SHELL_REWIND + arg_exc.getMessage());
+                                usage_pr.run();
+                            }
+                        }
+
+                        case "auto", "automation", "automate" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_AUTOMATION + "Usage: auto [-clear] [param] [ramp <to> <secs> | lfo <offset> <amplitude> <period> [waveform] | keys <t:v>... [-smooth | -step] [-loop]]\nParams: speed, g, drag (g/s), mass (g), wp (s), minosc, oscstep\nExample: auto g ramp 20 60  |  auto speed lfo 1 0.5 30  |  auto wp keys 0:30 60:45 -smooth  |  auto -clear\n");
+
+                            if (main_cmds.size() < 2) {
+                                if (ops.contains("-clear")) {
+                                    tasks.add(() -> {
+                                        obtainAutomation().clear();
+                                        println("\n" + R.SHELL_AUTOMATION + "All automation lanes cleared");
+                                    });
+                                } else {
+                                    tasks.add(() -> {
+                                        final PendulumWaveAutomation automation = pendulumWave.getAutomation();
+                                        if (automation == null || automation.isEmpty()) {
+                                            println("\n" + R.SHELL_AUTOMATION + "No automation lanes (values in SI units)");
+                                            return;
+                                        }
+
+                                        final StringBuilder sb = new StringBuilder("\n" + R.SHELL_AUTOMATION + "Automation lanes (values in SI units)");
+                                        for (AutomationTarget target: AutomationTarget.values()) {
+                                            final AutomationCurve curve = automation.getLane(target);
+                                            if (curve != null) {
+                                                sb.append("\n\t").append(target.label).append(" : ").append(curve);
+                                            }
+                                        }
+
+                                        println(sb);
+                                    });
+
+                                    usage_pr.run();
+                                }
+
+                                continue;
+                            }
+
+                            final AutomationTarget target = parseAutomationTarget(main_cmds.get(1));
+                            if (target == null) {
+                                printErrln(R.SHELL_AUTOMATION + "Unknown automation parameter: " + main_cmds.get(1));
+                                usage_pr.run();
+                                continue;
+                            }
+
+                            if (ops.contains("-clear")) {
+                                tasks.add(() -> {
+                                    obtainAutomation().setLane(target, null);
+                                    println("\n" + R.SHELL_AUTOMATION + target.label + " automation cleared");
+                                });
+
+                                continue;
+                            }
+
+                            final String mode = main_cmds.size() > 2? main_cmds.get(2): "";
+                            final float scale = automationUnitScale(target);
+
+                            try {
+                                switch (mode) {
+                                    case "ramp" -> {
+                                        if (main_cmds.size() < 5) {
+                                            usage_pr.run();
+                                            continue;
+                                        }
+
+                                        final float to = Float.parseFloat(main_cmds.get(3)) * scale;
+                                        final float secs = Float.parseFloat(main_cmds.get(4));
+                                        if (secs <= 0) {
+                                            throw new IllegalArgumentException("Ramp duration must be > 0, given: " + secs);
+                                        }
+
+                                        tasks.add(() -> {
+                                            final double now = pendulumWave.getElapsedSeconds();
+                                            obtainAutomation().setLane(target, KeyframeCurve.ramp(now, target.get(pendulumWave), now + secs, to));
+                                        });
+                                    }
+
+                                    case "lfo" -> {
+                                        if (main_cmds.size() < 6) {
+                                            usage_pr.run();
+                                            continue;
+                                        }
+
+                                        final float offset = Float.parseFloat(main_cmds.get(3)) * scale;
+                                        final float amplitude = Float.parseFloat(main_cmds.get(4)) * scale;
+                                        final float period = Float.parseFloat(main_cmds.get(5));
+                                        final LfoCurve.Waveform waveform = main_cmds.size() > 6? LfoCurve.Waveform.valueOf(main_cmds.get(6).toUpperCase()): LfoCurve.Waveform.SINE;
+
+                                        final LfoCurve lfo = new LfoCurve(waveform, offset, amplitude, period);
+                                        tasks.add(() -> obtainAutomation().setLane(target, lfo));
+                                    }
+
+                                    case "keys", "keyframes" -> {
+                                        if (main_cmds.size() < 4) {
+                                            usage_pr.run();
+                                            continue;
+                                        }
+
+                                        final int n = main_cmds.size() - 3;
+                                        final double[] times = new double[n];
+                                        final float[] values = new float[n];
+                                        for (int i=0; i < n; i++) {
+                                            final String[] tv = main_cmds.get(3 + i).split(":");
+                                            if (tv.length != 2) {
+                                                throw new IllegalArgumentException("Keyframes must be of the form <time:value>, given: " + main_cmds.get(3 + i));
+                                            }
+
+                                            times[i] = Double.parseDouble(tv[0]);
+                                            values[i] = Float.parseFloat(tv[1]) * scale;
+                                        }
+
+                                        final KeyframeCurve.Interpolation interpolation = ops.contains("-smooth")? KeyframeCurve.Interpolation.SMOOTH: ops.contains("-step")? KeyframeCurve.Interpolation.STEP: KeyframeCurve.Interpolation.LINEAR;
+                                        final KeyframeCurve curve = new KeyframeCurve(times, values, interpolation, ops.contains("-loop"));
+                                        tasks.add(() -> obtainAutomation().setLane(target, curve));
+                                    }
+
+                                    default -> {
+                                        usage_pr.run();
+                                        continue;
+                                    }
+                                }
+
+                                tasks.add(() -> println("\n" + R.SHELL_AUTOMATION + target.label + " automation set"));
+                            } catch (NumberFormatException exc) {
+                                printErrln(R.SHELL_AUTOMATION + "Automation values must be integers or floating point numbers. " + exc.getMessage());
+                                usage_pr.run();
+                            } catch (IllegalArgumentException arg_exc) {
+                                printErrln(R.SHELL_AUTOMATION + arg_exc.getMessage());
+                                usage_pr.run();
+                            }
+                        }
+
+                        case "design", "inverse" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_DESIGN + "Usage: design [-clear] [-wide] [align <secs>... | wave <secs> <wavelengths>]\nExample: design align 60  |  design align 30 60  |  design wave 20 2 -wide  |  design -clear\n");
+
+                            if (ops.contains("-clear")) {
+                                tasks.add(() -> {
+                                    pendulumWave.setCustomPendulumLengths(null, true);
+                                    println("\n" + R.SHELL_DESIGN + "Custom lengths cleared. Lengths are calculated from the wave parameters");
+                                });
+
+                                continue;
+                            }
+
+                            if (main_cmds.size() < 3) {
+                                println(R.SHELL_DESIGN + "Custom lengths: " + (pendulumWave.hasCustomPendulumLengths()? "ON": "OFF"));
+                                usage_pr.run();
+                                continue;
+                            }
+
+                            final DesignTarget target;
+                            try {
+                                switch (main_cmds.get(1)) {
+                                    case "align" -> {
+                                        final double[] times = new double[main_cmds.size() - 2];
+                                        for (int i=0; i < times.length; i++) {
+                                            times[i] = Double.parseDouble(main_cmds.get(2 + i));
+                                        }
+
+                                        target = DesignTarget.alignAt(times);
+                                    }
+
+                                    case "wave" -> {
+                                        if (main_cmds.size() < 4) {
+                                            usage_pr.run();
+                                            continue;
+                                        }
+
+                                        target = DesignTarget.travellingWaveAt(Double.parseDouble(main_cmds.get(2)), Double.parseDouble(main_cmds.get(3)));
+                                    }
+
+                                    default -> {
+                                        usage_pr.run();
+                                        continue;
+                                    }
+                                }
+                            } catch (NumberFormatException exc) {
+                                printErrln(R.SHELL_DESIGN + "Design times must be integers or floating point numbers. " + exc.getMessage());
+                                usage_pr.run();
+                                continue;
+                            } catch (IllegalArgumentException arg_exc) {
+                                printErrln(R.SHELL_DESIGN + arg_exc.getMessage());
+                                usage_pr.run();
+                                continue;
+                            }
+
+                            // Parameters are captured from the wave on the UI thread, solved in the background, and applied back on the UI thread
+                            final boolean wide = ops.contains("-wide");
+                            tasks.add(() -> {
+                                final PendulumWaveDesigner designer = new PendulumWaveDesigner(pendulumWave);
+                                if (wide) {
+                                    designer.setSearchWidthOscillations(2);
+                                }
+
+                                println("\n" + R.SHELL_DESIGN + "Solving lengths of " + designer.pendulumCount() + " pendulums for: " + target);
+                                ForkJoinPool.commonPool().execute(() -> {
+                                    final PendulumWaveDesigner.Result result = designer.design(target);
+                                    enqueueTask(() -> applyDesign(designer, result));
+                                });
+                            });
+                        }
+
+                        case "moments", "patterns" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_MOMENTS + "Usage: moments [-next] [wave periods] [max groups]\nExample: moments  |  moments 4  |  moments 1 2  |  moments -next\n");
+
+                            final int wavePeriods, maxGroups;       // -1 -> unchanged
+                            try {
+                                wavePeriods = main_cmds.size() > 1? Integer.parseInt(main_cmds.get(1)): -1;
+                                if (wavePeriods != -1 && wavePeriods < 1) {
+                                    throw new IllegalArgumentException("Wave periods must be >= 1, given: " + wavePeriods);
+                                }
+
+                                maxGroups = main_cmds.size() > 2? Integer.parseInt(main_cmds.get(2)): -1;
+                                if (maxGroups != -1 && maxGroups < 1) {
+                                    throw new IllegalArgumentException("Max groups must be >= 1, given: " + maxGroups);
+                                }
+                            } catch (NumberFormatException exc) {
+                                printErrln(R.SHELL_MOMENTS + "Wave periods and max groups must be integers. " + exc.getMessage());
+                                usage_pr.run();
+                                continue;
+                            } catch (IllegalArgumentException arg_exc) {
+                                printErrln(R.SHELL_MOMENTS + arg_exc.getMessage());
+                                usage_pr.run();
+                                continue;
+                            }
+
+                            // The wave is read, and the cached moments changed, on the UI thread
+                            final boolean toNext = ops.contains("-next");
+                            tasks.add(() -> {
+                                if (wavePeriods != -1) {
+                                    mMoments.setWavePeriods(wavePeriods);
+                                }
+
+                                if (maxGroups != -1) {
+                                    mMoments.setMaxGroups(maxGroups);
+                                }
+
+                                final double now = pendulumWave.getElapsedSeconds();
+                                if (toNext) {
+                                    final PendulumWaveMoments.Moment next = mMoments.next(pendulumWave, now, null);
+                                    if (next == null) {
+                                        printErrln("\n" + R.SHELL_MOMENTS + "No moment within the next " + mMoments.getWavePeriods() + " wave periods");
+                                        return;
+                                    }
+
+                                    pendulumWave.fastForward(Math.max(next.time() - now, 0));
+                                    pendulumWave.setPause(true);
+                                    println("\n" + R.SHELL_MOMENTS + String.format("Moved to %s at %s s", next, Format.nf002((float) next.time())));
+                                    return;
+                                }
+
+                                final List<PendulumWaveMoments.Moment> moments = mMoments.moments(pendulumWave, now);
+                                println("\n" + R.SHELL_MOMENTS + String.format("%d moments in the next %d wave periods (%s s each)", moments.size(), mMoments.getWavePeriods(), Format.nf002((float) mMoments.getWavePeriod())));
+                                for (PendulumWaveMoments.Moment m: moments) {
+                                    println(String.format("  %10s s  (in %s s)  %-12s score: %s", Format.nf002((float) m.time()), Format.nf001((float) (m.time() - now)), m, Format.nf000((float) m.score())));
+                                }
+                            });
+                        }
+
+                        case "fft", "spectrum" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_SPECTRUM + "Usage: fft [-on | -off | -export] [frame interval | file]\nExample: fft -on  |  fft -on 10  |  fft -export  |  fft -off\n");
+
+                            if (ops.contains("-export")) {
+                                final Path file = main_cmds.size() > 1? Path.of(main_cmds.get(1)).toAbsolutePath(): R.FILE_SPECTRUM_DEFAULT;
+                                final PendulumWaveSpectrum spectrum = mSpectrum;
+                                if (spectrum == null) {
+                                    printErrln(R.SHELL_SPECTRUM + "Spectrum analysis is not enabled. Enable with fft -on");
+                                    continue;
+                                }
+
+                                try {
+                                    final int entries = spectrum.exportCsv(file);
+                                    println(R.SHELL_SPECTRUM + "Exported " + entries + " analyses to file: " + file);
+                                } catch (IOException io_exc) {
+                                    printErrln(R.SHELL_SPECTRUM + "Failed to export spectrum to file: " + file + "\n" + io_exc.getMessage());
+                                }
+
+                                continue;
+                            }
+
+                            if (ops.contains("-on")) {
+                                try {
+                                    final int interval = main_cmds.size() > 1? Integer.parseInt(main_cmds.get(1)): PendulumWaveSpectrum.DEFAULT_FRAME_INTERVAL;
+                                    if (interval < 1) {
+                                        throw new IllegalArgumentException("Frame interval must be >= 1, given: " + interval);
+                                    }
+
+                                    tasks.add(() -> {
+                                        PendulumWaveSpectrum spectrum = mSpectrum;
+                                        if (spectrum == null) {
+                                            spectrum = new PendulumWaveSpectrum();
+                                            mSpectrum = spectrum;
+                                        }
+
+                                        spectrum.setFrameInterval(interval).setEnabled(true);
+                                        println("\n" + R.SHELL_SPECTRUM + "Spectrum analysis ON, every " + interval + " frames");
+                                    });
+                                } catch (NumberFormatException exc) {
+                                    printErrln(R.SHELL_SPECTRUM + "Frame interval must be an integer, given: " + main_cmds.get(1));
+                                    usage_pr.run();
+                                } catch (IllegalArgumentException arg_exc) {
+                                    printErrln(R.SHELL_SPECTRUM + arg_exc.getMessage());
+                                    usage_pr.run();
+                                }
+                            } else if (ops.contains("-off")) {
+                                tasks.add(() -> {
+                                    final PendulumWaveSpectrum spectrum = mSpectrum;
+                                    if (spectrum != null) {
+                                        spectrum.setEnabled(false);
+                                    }
+
+                                    println("\n" + R.SHELL_SPECTRUM + "Spectrum analysis OFF");
+                                });
+                            } else {
+                                final PendulumWaveSpectrum spectrum = mSpectrum;
+                                if (spectrum == null || spectrum.analysisCount() == 0) {
+                                    println(R.SHELL_SPECTRUM + "No spectrum analyzed yet");
+                                    usage_pr.run();
+                                    continue;
+                                }
+
+                                final StringBuilder sb = new StringBuilder(R.SHELL_SPECTRUM).append(spectrum.latestSummary())
+                                        .append("  |  Entropy: ").append(Format.nf002(spectrum.latestEntropy()))
+                                        .append("  |  Peaks:");
+                                for (int p=0; p < PendulumWaveSpectrum.PEAKS; p++) {
+                                    sb.append(String.format("  k=%s (%s%%)", Format.nf001(spectrum.latestWavenumber(p)), Format.nf001(spectrum.latestPowerFraction(p) * 100)));
+                                }
+
+                                println(sb.toString());
+                            }
+                        }
+
+                        case "stats", "statistics" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_STATS + "Usage: stats [-on | -off] [pendulum index]\nExample: stats -on  |  stats  |  stats 3  |  stats -off\n");
+
+                            if (ops.contains("-on") || ops.contains("-off")) {
+                                final boolean on = ops.contains("-on");
+                                tasks.add(() -> {
+                                    if (on != (pendulumWave.getStats() != null)) {
+                                        pendulumWave.setStats(on? new PendulumWaveStats(): null);
+                                    }
+
+                                    println("\n" + R.SHELL_STATS + "Statistics " + (on? "ON": "OFF"));
+                                });
+
+                                continue;
+                            }
+
+                            final int index;
+                            try {
+                                index = main_cmds.size() > 1? Integer.parseInt(main_cmds.get(1)): -1;
+                            } catch (NumberFormatException exc) {
+                                printErrln(R.SHELL_STATS + "Pendulum index must be an integer, given: " + main_cmds.get(1));
+                                usage_pr.run();
+                                continue;
+                            }
+
+                            // Read on the UI thread, which updates the statistics
+                            tasks.add(() -> {
+                                final PendulumWaveStats stats = pendulumWave.getStats();
+                                if (stats == null) {
+                                    printErrln(R.SHELL_STATS + "Statistics are not enabled. Enable with stats -on");
+                                    return;
+                                }
+
+                                final int count = Math.min(stats.pendulumCount(), pendulumWave.pendulumCount());
+                                if (index >= count) {
+                                    printErrln(R.SHELL_STATS + "Pendulum index must be in range [0, " + (count - 1) + "], given: " + index);
+                                    return;
+                                }
+
+                                final StringBuilder sb = new StringBuilder("\n").append(R.SHELL_STATS).append(String.format("%-6s %-12s %-10s %-14s %-14s %-12s %-12s%n", "Index", "Half-cycles", "Peak (deg)", "Period (s)", "Period SD (s)", "Damping", "Drag damping"));
+                                for (int i = Math.max(index, 0); i < (index >= 0? index + 1: count); i++) {
+                                    sb.append(String.format("%-6d %-12d %-10.3f %-14.5f %-14.6f %-12.6f %-12.6f  Energy: %.3e J (%.1f%%)%n",
+                                            i, stats.halfCycles(i), Math.toDegrees(stats.lastPeakAmplitude(i)), stats.meanPeriod(i), stats.periodStdDev(i),
+                                            stats.measuredDampingRatio(i), PendulumWaveStats.expectedDampingRatio(pendulumWave, i),
+                                            stats.energy(pendulumWave, i, false), stats.energy(pendulumWave, i, true) * 100));
+                                }
+
+                                println(sb.toString());
+                            });
+                        }
+
+                        case "save-state", "savestate" -> {
+                            final Path file = main_cmds.size() > 1? Path.of(main_cmds.get(1)).toAbsolutePath(): R.FILE_STATE_DEFAULT;
+
+                            tasks.add(() -> {
+                                try {
+                                    final long startNs = System.nanoTime();
+                                    PendulumWaveCheckpoint.save(pendulumWave, file);
+                                    println("\n" + R.SHELL_STATE + String.format("State of %d pendulums saved in %.2f ms to file: %s", pendulumWave.pendulumCount(), (System.nanoTime() - startNs) / 1e6, file));
+                                } catch (IOException io_exc) {
+                                    printErrln("\n" + R.SHELL_STATE + "Failed to save state to file: " + file + ". " + io_exc.getMessage());
+                                }
+                            });
+                        }
+
+                        case "load-state", "loadstate" -> {
+                            final Path file = main_cmds.size() > 1? Path.of(main_cmds.get(1)).toAbsolutePath(): R.FILE_STATE_DEFAULT;
+                            if (!Files.isRegularFile(file)) {
+                                printErrln(R.SHELL_STATE + "State file does not exist: " + file);
+                                println(R.SHELL_STATE + "Usage: load-state [file]\nExample: load-state  |  load-state before-drag.pwstate\n");
+                                continue;
+                            }
+
+                            tasks.add(() -> {
+                                try {
+                                    final long startNs = System.nanoTime();
+                                    PendulumWaveCheckpoint.load(pendulumWave, file);
+                                    println("\n" + R.SHELL_STATE + String.format("State of %d pendulums restored in %.2f ms from file: %s", pendulumWave.pendulumCount(), (System.nanoTime() - startNs) / 1e6, file));
+                                } catch (IOException | IllegalArgumentException exc) {
+                                    printErrln("\n" + R.SHELL_STATE + "Failed to load state from file: " + file + ". " + exc.getMessage());
+                                }
+                            });
+                        }
+
+                        case "resume" -> tasks.add(this::resumeFromAutosave);
+
+                        case "autosave" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_AUTOSAVE + "Usage: autosave [-on | -off | -now] [interval secs]\nExample: autosave 30  |  autosave -off  |  autosave -now\n");
+
+                            if (main_cmds.size() > 1) {
+                                try {
+                                    final float interval = Float.parseFloat(main_cmds.get(1));
+                                    if (interval < PendulumWaveAutosave.MIN_INTERVAL_SECS) {
+                                        throw new IllegalArgumentException("Autosave interval must be >= " + PendulumWaveAutosave.MIN_INTERVAL_SECS + " s, given: " + interval);
+                                    }
+
+                                    tasks.add(() -> obtainAutosave().setIntervalSecs(interval).setEnabled(true));
+                                } catch (NumberFormatException exc) {
+                                    printErrln(R.SHELL_AUTOSAVE + "Autosave interval must be an integer or a floating point number, given: " + main_cmds.get(1));
+                                    usage_pr.run();
+                                    continue;
+                                } catch (IllegalArgumentException arg_exc) {
+                                    printErrln(R.SHELL_AUTOSAVE + arg_exc.getMessage());
+                                    usage_pr.run();
+                                    continue;
+                                }
+                            } else if (ops.contains("-on") || ops.contains("-off")) {
+                                final boolean enable = ops.contains("-on");
+                                tasks.add(() -> {
+                                    if (enable) {
+                                        obtainAutosave().setEnabled(true);
+                                    } else if (mAutosave != null) {
+                                        mAutosave.setEnabled(false);
+                                    }
+                                });
+                            } else if (ops.contains("-now")) {
+                                tasks.add(() -> {
+                                    if (obtainAutosave().saveNow(pendulumWave)) {
+                                        println("\n" + R.SHELL_AUTOSAVE + "Saving to " + obtainAutosave().getPath());
+                                    } else {
+                                        printErrln("\n" + R.SHELL_AUTOSAVE + "An autosave is already in progress");
+                                    }
+                                });
+
+                                continue;
+                            }
+
+                            tasks.add(() -> {
+                                final PendulumWaveAutosave autosave = mAutosave;
+                                if (autosave == null || !autosave.isEnabled()) {
+                                    println("\n" + R.SHELL_AUTOSAVE + "Autosave: OFF");
+                                    return;
+                                }
+
+                                String status = String.format("Autosave: ON  |  Interval: %s s  |  File: %s", Format.nf002(autosave.getIntervalSecs()), autosave.getPath());
+                                if (autosave.getLastSavedElapsedSeconds() >= 0) {
+                                    status += String.format("  |  Last saved at: %s s", Format.nf002((float) autosave.getLastSavedElapsedSeconds()));
+                                }
+
+                                println("\n" + R.SHELL_AUTOSAVE + status);
+
+                                final IOException error = autosave.getLastError();
+                                if (error != null) {
+                                    printErrln(R.SHELL_AUTOSAVE + "Last autosave failed: " + error.getMessage());
+                                }
+                            });
+                        }
+
+                        case "spherical", "sphere", "3d-swing" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_SPHERICAL + "Usage: spherical [-on | -off] [azimuthal ratio]\nExample: spherical  |  spherical -on 0.5  |  spherical 1  |  spherical -off\n");
+
+                            if (main_cmds.size() > 1) {
+                                try {
+                                    final float ratio = Float.parseFloat(main_cmds.get(1));
+                                    if (Math.abs(ratio) > PendulumWave.AZIMUTHAL_VELOCITY_RATIO_MAX) {
+                                        throw new IllegalArgumentException("Azimuthal ratio must be in range [-" + PendulumWave.AZIMUTHAL_VELOCITY_RATIO_MAX + ", " + PendulumWave.AZIMUTHAL_VELOCITY_RATIO_MAX + "], given: " + ratio);
+                                    }
+
+                                    final boolean on = !ops.contains("-off");
+                                    tasks.add(() -> {
+                                        pendulumWave.setAzimuthalVelocityRatio(ratio, false);
+                                        pendulumWave.setSpherical(on, false);
+                                        pendulumWave.resetPendulumsState();
+                                    });
+                                } catch (NumberFormatException exc) {
+                                    printErrln(R.SHELL_SPHERICAL + "Azimuthal ratio must be an integer or a floating point number, given: " + main_cmds.get(1));
+                                    usage_pr.run();
+                                    continue;
+                                } catch (IllegalArgumentException arg_exc) {
+                                    printErrln(R.SHELL_SPHERICAL + arg_exc.getMessage());
+                                    usage_pr.run();
+                                    continue;
+                                }
+                            } else if (ops.contains("-on") || ops.contains("-off")) {
+                                final boolean on = ops.contains("-on");
+                                tasks.add(() -> pendulumWave.setSpherical(on, true));
+                            } else {
+                                tasks.add(() -> pendulumWave.toggleSpherical(true));
+                            }
+
+                            tasks.add(() -> println("\n" + R.SHELL_SPHERICAL + String.format("Spherical pendulums: %s  |  Azimuthal ratio: %s", pendulumWave.isSpherical()? "ON": "OFF", Format.nf002(pendulumWave.getAzimuthalVelocityRatio()))));
+                        }
+
+                        case "exact-period", "exact" -> {
+                            if (ops.contains("-on") || ops.contains("-off")) {
+                                final boolean on = ops.contains("-on");
+                                tasks.add(() -> pendulumWave.setExactPeriodLengths(on, resetFlag));
+                            } else {
+                                tasks.add(() -> pendulumWave.toggleExactPeriodLengths(resetFlag));
+                            }
+
+                            tasks.add(() -> println("\n" + R.SHELL_EXACT_PERIOD + String.format("Exact period lengths: %s  |  Period at start angle: %s x small-angle period",
+                                    pendulumWave.isExactPeriodLengths()? "ON": "OFF",
+                                    Format.nf000((float) PendulumPeriod.periodFactor(pendulumWave.getPendulumStartAngle())))));
+                        }
+
+                        case "lazy" -> {
+                            if (ops.contains("-on") || ops.contains("-off")) {
+                                final boolean on = ops.contains("-on");
+                                tasks.add(() -> pendulumWave.setLazyEvaluation(on));
+                            } else {
+                                tasks.add(pendulumWave::toggleLazyEvaluation);
+                            }
+
+                            tasks.add(() -> {
+                                println("\n" + R.SHELL_LAZY + String.format("Lazy evaluation: %s  |  Stepped pendulums: %d / %d",
+                                        pendulumWave.isLazyEvaluation()? "ON": "OFF", pendulumWave.awakePendulumCount(), pendulumWave.pendulumCount()));
+
+                                if (pendulumWave.isLazyEvaluation() && isSoundEnabled()) {
+                                    println(R.SHELL_LAZY + "Inactive while sound is on, since every pendulum plays a note as it passes the center. Turn sound off to step only visible pendulums");
+                                }
+                            });
+                        }
+
+                        case "collisions", "collide" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_COLLISIONS + "Usage: collisions [-on | -off] [-elastic | -inelastic | restitution]\nExample: collisions  |  collisions -on -inelastic  |  collisions 0.5  |  collisions -off\n");
+
+                            float restitution = Float.NaN;
+                            if (ops.contains("-elastic")) {
+                                restitution = PendulumCollisions.RESTITUTION_ELASTIC;
+                            } else if (ops.contains("-inelastic")) {
+                                restitution = PendulumCollisions.RESTITUTION_INELASTIC;
+                            } else if (main_cmds.size() > 1) {
+                                try {
+                                    restitution = Float.parseFloat(main_cmds.get(1));
+                                    if (!(restitution >= 0 && restitution <= 1)) {
+                                        throw new IllegalArgumentException("Restitution must be in range [0, 1], given: " + main_cmds.get(1));
+                                    }
+                                } catch (IllegalArgumentException exc) {
+                                    printErrln(R.SHELL_COLLISIONS + (exc instanceof NumberFormatException? "Restitution must be a number, given: " + main_cmds.get(1): exc.getMessage()));
+                                    usage_pr.run();
+                                    continue;
+                                }
+                            }
+
+                            final boolean on = ops.contains("-on") || (!ops.contains("-off") && (!Float.isNaN(restitution) || pendulumWave.getCollisions() == null));
+                            final float restitutionFinal = restitution;
+                            tasks.add(() -> {
+                                PendulumCollisions collisions = pendulumWave.getCollisions();
+                                if (on && collisions == null) {
+                                    collisions = new PendulumCollisions();
+                                    pendulumWave.setCollisions(collisions);
+                                    updatePendulumLayout();
+                                } else if (!on && collisions != null) {
+                                    pendulumWave.setCollisions(null);
+                                    collisions = null;
+                                }
+
+                                if (collisions != null && !Float.isNaN(restitutionFinal)) {
+                                    collisions.setRestitution(restitutionFinal);
+                                }
+
+                                println("\n" + R.SHELL_COLLISIONS + (collisions != null?
+                                        String.format("Bob collisions: ON  |  Restitution: %s (%s)  |  Bob radius: %s m  |  Collisions so far: %d",
+                                                Format.nf002(collisions.restitution()), collisions.isElastic()? "elastic": "inelastic", Format.nf002(collisions.bobRadius()), collisions.collisionCount()):
+                                        "Bob collisions: OFF"));
+                            });
+                        }
+
+                        case "chaos", "double-pendulum" -> {
+                            final Runnable usage_pr = () -> println(R.SHELL_CHAOS + "Usage: chaos [members] [secs] [start angle in deg]\nExample: chaos  |  chaos 4096 60  |  chaos 1024 30 120\n");
+
+                            final int members;
+                            final double secs;
+                            final float startAngleDeg;
+                            try {
+                                members = main_cmds.size() > 1? Integer.parseInt(main_cmds.get(1)): 1024;
+                                secs = main_cmds.size() > 2? Double.parseDouble(main_cmds.get(2)): 20;
+                                if (!(secs > 0)) {
+                                    throw new IllegalArgumentException("Simulation time must be > 0, given: " + secs);
+                                }
+
+                                startAngleDeg = main_cmds.size() > 3? Float.parseFloat(main_cmds.get(3)): Float.NaN;
+                            } catch (NumberFormatException exc) {
+                                printErrln(R.SHELL_CHAOS + "Members must be an integer, time and angle must be integers or floating point numbers. " + exc.getMessage());
+                                usage_pr.run();
+                                continue;
+                            } catch (IllegalArgumentException arg_exc) {
+                                printErrln(R.SHELL_CHAOS + arg_exc.getMessage());
+                                usage_pr.run();
+                                continue;
+                            }
+
+                            // Parameters are captured from the wave on the UI thread, and the ensemble runs in the background
+                            tasks.add(() -> {
+                                final DoublePendulumEnsemble ensemble;
+                                try {
+                                    final float startAngle = Float.isNaN(startAngleDeg)? pendulumWave.getPendulumStartAngle(): (float) Math.toRadians(startAngleDeg);
+                                    ensemble = DoublePendulumEnsemble.fromWave(pendulumWave, members, DoublePendulumEnsemble.DEFAULT_PERTURBATION_RAD, startAngle);
+                                } catch (IllegalArgumentException arg_exc) {
+                                    printErrln("\n" + R.SHELL_CHAOS + arg_exc.getMessage());
+                                    usage_pr.run();
+                                    return;
+                                }
+
+                                ForkJoinPool.commonPool().execute(() -> runChaosEnsemble(ensemble, secs));
+                            });
+                        }
+
                         case "gravity", "g" -> {
                             final Runnable cur_val_pr = () -> println(R.SHELL_GRAVITY + String.format("Acceleration due to gravity. Current: %s ms-2  |  Default: %s ms-2", Format.nf002(pendulumWave.gravity()), Format.nf002(PendulumWave.DEFAULT_GRAVITY)));
                             final Runnable usage_pr = () -> println(R.SHELL_GRAVITY + "Usage: g [-reset] <value in ms-2>. \nExample: g 9.8  |  g -reset 12.4\n");
@@ -2,7 +2,7 @@ package main;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import peasy.PeasyCam;
+import pendulum.PendulumWave;
 import processing.core.PApplet;
 import processing.event.Event;
 import processing.event.KeyEvent;
@@ -11,7 +11,9 @@ import util.U;
 
 import java.awt.*;
 import java.util.function.BiFunction;
+import java.util.function.DoubleFunction;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 public enum Control {
 
@@ -49,7 +51,8 @@ public enum Control {
 
     PENDULUM_COUNT("Pendulums",
             "Number of Pendulums in the Pendulum Wave.",
-            ui -> String.valueOf(ui.getPendulumWave().pendulumCount()),
+            ui -> ui.getPendulumWave().pendulumCount(),
+            v -> String.valueOf((int) v),
             "[Ctr | Shf]-N",
             "N -> Increase Count  |  Shift-N -> Decrease Count  |  Ctrl-[Shift]-N -> Change count without resetting pendulums state",
             (ui, ev) -> {
@@ -191,9 +194,10 @@ public enum Control {
 
     SIMULATION_SPEED("Sim Speed",
             "Simulation Speed, in both multiples and percentage.",
-            ui -> String.format("%sx (%s%%)",
-                    Format.nf001(ui.getPendulumWave().getSpeed()),
-                    Format.nf001(ui.getPendulumWave().getSpeedPercent())),
+            ui -> ui.getPendulumWave().getSpeed(),
+            v -> String.format("%sx (%s%%)",
+                    Format.nf001((float) v),
+                    Format.nf001(PendulumWave.speedToPercent((float) v))),
             "[Shf]-/",
             "/ -> Increase Speed  |  Shift-/ -> Decrease Speed",
             (ui, ev) -> {
@@ -206,9 +210,40 @@ public enum Control {
                 return false;
             }, true),
 
+    REWIND("Rewind",
+            "Plays the simulation backwards in time. Without drag, pendulums retrace their exact trajectory. With drag, the simulation can be rewound over a limited recent history.",
+            ui -> ui.getPendulumWave().isReversed() ? "ON" : "OFF",
+            "Ctrl-/",
+            "",
+            (ui, ev) -> {
+                final int mod = ev.getModifiers();
+                if (ev.getKeyCode() == java.awt.event.KeyEvent.VK_SLASH && mod == Event.CTRL /* Ctrl only */) {
+                    ui.getPendulumWave().toggleReversed();
+                    return true;
+                }
+
+                return false;
+            }, false),
+
+    SPHERICAL("Spherical",
+            "Spherical (two-axis) pendulums, which swing freely in 3D in conical and elliptical orbits, instead of in a plane. Restarts the pendulums.",
+            ui -> ui.getPendulumWave().isSpherical() ? "ON" : "OFF",
+            "L",
+            "",
+            (ui, ev) -> {
+                final int mod = ev.getModifiers();
+                if (ev.getKeyCode() == java.awt.event.KeyEvent.VK_L && mod == 0) {
+                    ui.getPendulumWave().toggleSpherical(true);
+                    return true;
+                }
+
+                return false;
+            }, false),
+
     GRAVITY("Gravity",
             "Acceleration due to Gravity (in ms-2).",
-            ui -> Format.nf002(ui.getPendulumWave().gravity()) + " ms-2",
+            ui -> ui.getPendulumWave().gravity(),
+            v -> Format.nf002((float) v) + " ms-2",
             "[Shf]-G",
             "G -> Increase Gravity  |  Shift-G -> Decrease Gravity",
             (ui, ev) -> {
@@ -223,7 +258,8 @@ public enum Control {
 
     DRAG("Drag",
             "Drag Coefficient (in g/s), Positive value corresponds to drag, negative to push.",
-            ui -> Format.nf002(ui.getPendulumWave().drag() * 1000) + " g/s",
+            ui -> ui.getPendulumWave().drag(),
+            v -> Format.nf002((float) v * 1000) + " g/s",
             "[Shf]-D",
             "D -> Increase Drag  |  Shift-D -> Decrease Drag",
             (ui, ev) -> {
@@ -238,7 +274,8 @@ public enum Control {
 
     PENDULUM_MASS("Mass",
             "Mass of each pendulum Bob (in grams).",
-            ui -> Format.nf002(ui.getPendulumWave().getPendulumMass() * 1000) + " g",
+            ui -> ui.getPendulumWave().getPendulumMass(),
+            v -> Format.nf002((float) v * 1000) + " g",
             "[Shf]-M",
             "M -> Increase Mass  |  Shift-M -> Decrease Mass",
             (ui, ev) -> {
@@ -253,7 +290,8 @@ public enum Control {
 
     PENDULUM_START_ANGLE("Start Angle",
             "Start angle for each pendulum (in degrees).",
-            ui -> Format.nf001(U.normalizeDegrees(PApplet.degrees(ui.getPendulumWave().getPendulumStartAngle()))) + "°",
+            ui -> ui.getPendulumWave().getPendulumStartAngle(),
+            v -> Format.nf001(U.normalizeDegrees(PApplet.degrees((float) v))) + "°",
             "[Shf]-A",
             "A -> Increase Start Angle  |  Shift-A -> Decrease Start Angle",
             (ui, ev) -> {
@@ -268,7 +306,8 @@ public enum Control {
 
     WAVE_PERIOD("Wave Period",
             "Total time in which the Pendulum Wave completes one cycle (in secs).",
-            ui -> Format.nf001(ui.getPendulumWave().getEffectiveWavePeriod()) + " s",
+            ui -> ui.getPendulumWave().getEffectiveWavePeriod(),
+            v -> Format.nf001((float) v) + " s",
             "[Shf]-P",
             "P -> Increase Wave Period  |  Shift-P -> Decrease Wave Period",
             (ui, ev) -> {
@@ -283,7 +322,8 @@ public enum Control {
 
     MIN_OSCILLATIONS_IN_WAVE_PERIOD("Min Osc",
             "Number of oscillations the first pendulum completes in Wave Period time.",
-            ui -> Format.nf001(ui.getPendulumWave().getMinOscillationsInWavePeriod()),
+            ui -> ui.getPendulumWave().getMinOscillationsInWavePeriod(),
+            v -> Format.nf001((float) v),
             "[Shf]-O",
             "O -> Increase Min Osc  |  Shift-O -> Decrease Min Osc",
             (ui, ev) -> {
@@ -298,7 +338,8 @@ public enum Control {
 
     OSCILLATION_STEP_PER_PENDULUM("Osc Step",
             "Number of oscillations that a pendulum completes more than its predecessor.",
-            ui -> Format.nf001(ui.getPendulumWave().getOscillationsStepPerPendulum()),
+            ui -> ui.getPendulumWave().getOscillationsStepPerPendulum(),
+            v -> Format.nf001((float) v),
             "[Shf]-I",
             "I -> Increase Osc Step  |  Shift-I -> Decrease Osc Step",
             (ui, ev) -> {
@@ -317,9 +358,10 @@ public enum Control {
     CAMERA_ROTATE_X("Pitch-X",
             "Controls the Camera PITCH (rotation about X-Axis).",
             ui -> {
-                final PeasyCam cam = ui.getCamera();
-                return cam != null? Format.nf001(U.normalizeDegrees(PApplet.degrees(cam.getRotations()[0]))) + "°": "N/A";
+                final float[] rotations = ui.getCameraRotations();
+                return rotations != null? rotations[0]: Double.NaN;
             },
+            Control::formatCameraRotation,
             "Up/Down",
             "[UP | DOWN] arrow keys",
             (ui, ev) -> {
@@ -336,9 +378,10 @@ public enum Control {
     CAMERA_ROTATE_Y("Yaw-Y",
             "Controls the Camera YAW (rotation about Y-Axis).",
             ui -> {
-                final PeasyCam cam = ui.getCamera();
-                return cam != null? Format.nf001(U.normalizeDegrees(PApplet.degrees(cam.getRotations()[1]))) + "°": "N/A";
+                final float[] rotations = ui.getCameraRotations();
+                return rotations != null? rotations[1]: Double.NaN;
             },
+            Control::formatCameraRotation,
             "Left/Right",
             "[LEFT | RIGHT] arrow keys",
             (ui, ev) -> {
@@ -355,9 +398,10 @@ public enum Control {
     CAMERA_ROTATE_Z("Roll-Z",
             "Controls the Camera ROLL (rotation about Z-Axis).",
             ui -> {
-                final PeasyCam cam = ui.getCamera();
-                return cam != null? Format.nf001(U.normalizeDegrees(PApplet.degrees(cam.getRotations()[2]))) + "°": "N/A";
+                final float[] rotations = ui.getCameraRotations();
+                return rotations != null? rotations[2]: Double.NaN;
             },
+            Control::formatCameraRotation,
             "Shf-Up/Down",
             "Shift-[LEFT | RIGHT] arrow keys",
             (ui, ev) -> {
@@ -379,6 +423,13 @@ public enum Control {
     public final String description;
     @NotNull
     private final Function<BasePendulumWavePUi, String> valueProvider;
+    // Numeric value, formatted only when it changes. null if the value provider formats directly
+    @Nullable
+    private final ToDoubleFunction<BasePendulumWavePUi> numericValue;
+    @Nullable
+    private final DoubleFunction<String> numericFormatter;
+    @Nullable
+    private volatile FormattedValue mFormattedValue;
     @NotNull
     public final String keyBindingLabel;
     @NotNull
@@ -406,9 +457,50 @@ public enum Control {
             boolean alwaysShowKeyBinding,
             @Nullable Color labelColorOverride) {
 
+        this(label, description, valueProvider, null, null, keyBindingLabel, keyBindingDescription, keyEventHandler, continuousKeyEvent, alwaysShowKeyBinding, labelColorOverride);
+    }
+
+    Control(@NotNull String label,
+            @NotNull String description,
+            @NotNull ToDoubleFunction<BasePendulumWavePUi> numericValue,
+            @NotNull DoubleFunction<String> formatter,
+            @NotNull String keyBindingLabel,
+            @NotNull String keyBindingDescription,
+            @NotNull BiFunction<BasePendulumWavePUi, KeyEvent, Boolean> keyEventHandler,
+            boolean continuousKeyEvent,
+            boolean alwaysShowKeyBinding,
+            @Nullable Color labelColorOverride) {
+        this(label, description, ui -> formatter.apply(numericValue.applyAsDouble(ui)), numericValue, formatter, keyBindingLabel, keyBindingDescription, keyEventHandler, continuousKeyEvent, alwaysShowKeyBinding, labelColorOverride);
+    }
+
+    Control(@NotNull String label,
+            @NotNull String description,
+            @NotNull ToDoubleFunction<BasePendulumWavePUi> numericValue,
+            @NotNull DoubleFunction<String> formatter,
+            @NotNull String keyBindingLabel,
+            @NotNull String keyBindingDescription,
+            @NotNull BiFunction<BasePendulumWavePUi, KeyEvent, Boolean> keyEventHandler,
+            boolean continuousKeyEvent) {
+        this(label, description, numericValue, formatter, keyBindingLabel, keyBindingDescription, keyEventHandler, continuousKeyEvent, false, null);
+    }
+
+    Control(@NotNull String label,
+            @NotNull String description,
+            @NotNull Function<BasePendulumWavePUi, String> valueProvider,
+            @Nullable ToDoubleFunction<BasePendulumWavePUi> numericValue,
+            @Nullable DoubleFunction<String> numericFormatter,
+            @NotNull String keyBindingLabel,
+            @NotNull String keyBindingDescription,
+            @NotNull BiFunction<BasePendulumWavePUi, KeyEvent, Boolean> keyEventHandler,
+            boolean continuousKeyEvent,
+            boolean alwaysShowKeyBinding,
+            @Nullable Color labelColorOverride) {
+
         this.label = label;
         this.description = description;
         this.valueProvider = valueProvider;
+        this.numericValue = numericValue;
+        this.numericFormatter = numericFormatter;
         this.keyBindingLabel = keyBindingLabel;
         this.keyBindingDescription = keyBindingDescription;
         this.keyEventHandler = keyEventHandler;
@@ -429,11 +521,29 @@ public enum Control {
 
 
     /**
-     * @return current formatted value
+     * @return current formatted value. Numeric values are formatted only when they change, so the same instance is returned otherwise
      */
     @NotNull
     public String getFormattedValue(@NotNull BasePendulumWavePUi baseUi) {
-        return valueProvider.apply(baseUi);
+        if (numericValue == null || numericFormatter == null)
+            return valueProvider.apply(baseUi);
+
+        final double value = numericValue.applyAsDouble(baseUi);
+        final FormattedValue cached = mFormattedValue;
+        if (cached != null && Double.doubleToLongBits(cached.value) == Double.doubleToLongBits(value))
+            return cached.text;
+
+        final String text = numericFormatter.apply(value);
+        mFormattedValue = new FormattedValue(value, text);
+        return text;
+    }
+
+    private record FormattedValue(double value, @NotNull String text) {
+    }
+
+    @NotNull
+    private static String formatCameraRotation(double rotation) {
+        return Double.isNaN(rotation)? "N/A": Format.nf001(U.normalizeDegrees(PApplet.degrees((float) rotation))) + "°";
     }
 
     /**
@@ -477,6 +587,8 @@ public enum Control {
     public static final Control[] CONTROLS_MAIN1 = {
             PENDULUM_COUNT,
             RESET,
+            REWIND,
+            SPHERICAL,
             DRAW_ONLY_BOBS
     };
 
@@ -4,7 +4,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import peasy.PeasyCam;
 import pendulum.Pendulum;
+import pendulum.PendulumDrawStyle;
 import pendulum.PendulumDrawStylesHolder;
+import pendulum.PendulumVertexBuffer;
 import pendulum.PendulumWave;
 import processing.core.PApplet;
 import processing.event.KeyEvent;
@@ -13,6 +15,7 @@ import util.Point3DF;
 import util.U;
 
 import java.awt.*;
+import java.util.Arrays;
 
 /**
  * A 2D graphical engine for {@link PendulumWave Pendulum Wave} in Processing 3
@@ -27,6 +30,12 @@ public class PendulumWaveP2D extends BasePendulumWavePUi {
 
     private static final Dimension DEFAULT_INITIAL_WINDOW_SIZE = U.scaleDimension(getNativeScreenResolution(), 0.8f);
 
+    /**
+     * Whether to draw all chords in one batch, and all bobs of the same stroke and fill setup in one pass, instead of setting the full style of
+     * every pendulum in immediate mode
+     * */
+    private static final boolean DEFAULT_BATCHED_RENDERING = true;
+
 
     @NotNull
     private static Point3DF pendulumChordDrawOrigin(int width, int height, int index) {
@@ -40,6 +49,23 @@ public class PendulumWaveP2D extends BasePendulumWavePUi {
     @NotNull
     private Dimension mInitialWindowedSize = DEFAULT_INITIAL_WINDOW_SIZE;
 
+    /* Batched rendering */
+    private boolean mBatchedRendering = DEFAULT_BATCHED_RENDERING;
+
+    // Styles, at (2 * index) for normal and (2 * index + 1) for highlight. A line weight of 0 means no chord
+    private float[] mLineWeights = new float[0];
+    private int[] mLineColors = new int[0];
+    private int[] mBobStrokeColors = new int[0], mBobFillColors = new int[0];
+    private float[] mBobExtraRadii = new float[0];
+    private int[] mBobBuckets = new int[0];
+
+    // Bob buckets: pendulums drawn with the same stroke weight, and with or without stroke and fill
+    private int mBucketCount;
+    private float[] mBucketStrokeWeights = new float[0];
+    private boolean[] mBucketFill = new boolean[0];
+
+    private int mBatchStylesCount = -1, mBatchStylesVersion = -1;
+
     public PendulumWaveP2D(@NotNull PendulumWave pendulumWave) {
         super(pendulumWave);
         init();
@@ -138,6 +164,178 @@ public class PendulumWaveP2D extends BasePendulumWavePUi {
         super.drawMain();
     }
 
+    public boolean isBatchedRenderingEnabled() {
+        return mBatchedRendering;
+    }
+
+    public PendulumWaveP2D setBatchedRendering(boolean batchedRendering) {
+        mBatchedRendering = batchedRendering;
+        return this;
+    }
+
+    /**
+     * Draws the pendulums from the render vertices in batches: all chords in a single {@link #LINES} shape with per-vertex stroke, then the bobs
+     * bucket by bucket, setting stroke weight and fill mode once per bucket. Falls back to immediate mode for the spherical model, or if the
+     * render vertices are not current
+     * */
+    @Override
+    protected void drawPendulums() {
+        if (!mBatchedRendering || pendulumWave.isSpherical() || !pendulumVertices.isCurrent(pendulumWave)) {
+            super.drawPendulums();
+            return;
+        }
+
+        final int count = pendulumWave.pendulumCount();
+        if (count == 0)
+            return;
+
+        if (mBatchStylesCount != count || mBatchStylesVersion != drawStylesVersion()) {
+            updateBatchStyles(count);
+        }
+
+        final float[] v = pendulumVertices.data();
+        final int from = pendulumVertices.from(), to = pendulumVertices.to();
+
+        // Chords
+        if (drawLine()) {
+            pushStyle();
+            beginShape(LINES);
+
+            float lastWeight = -1;
+            int lastColor = 0;
+            boolean colorSet = false;
+
+            for (int i = to - 1; i >= from; i--) {
+                final int o = i * PendulumVertexBuffer.STRIDE;
+                final int k = (i << 1) | (v[o + PendulumVertexBuffer.FLAGS] != 0? 1: 0);
+                final float weight = mLineWeights[k];
+                if (weight == 0)
+                    continue;
+
+                if (weight != lastWeight) {
+                    strokeWeight(lastWeight = weight);
+                }
+
+                if (!colorSet || mLineColors[k] != lastColor) {
+                    stroke(lastColor = mLineColors[k]);
+                    colorSet = true;
+                }
+
+                vertex(v[o + PendulumVertexBuffer.ORIGIN_X], v[o + PendulumVertexBuffer.ORIGIN_Y]);
+                vertex(v[o + PendulumVertexBuffer.BOB_X], v[o + PendulumVertexBuffer.BOB_Y]);
+            }
+
+            endShape();
+            popStyle();
+        }
+
+        // Bobs
+        if (drawBob()) {
+            final float bobRadius = bobRadius(pendulumWave.pendulumAt(0));
+            pushStyle();
+
+            for (int b=0; b < mBucketCount; b++) {
+                final float strokeWeight = mBucketStrokeWeights[b];
+                final boolean fill = mBucketFill[b];
+
+                if (strokeWeight == 0) {
+                    noStroke();
+                } else {
+                    strokeWeight(strokeWeight);
+                }
+
+                if (!fill) {
+                    noFill();
+                }
+
+                int lastStroke = 0, lastFill = 0;
+                boolean strokeSet = false, fillSet = false;
+
+                for (int i = to - 1; i >= from; i--) {
+                    final int o = i * PendulumVertexBuffer.STRIDE;
+                    final int k = (i << 1) | (v[o + PendulumVertexBuffer.FLAGS] != 0? 1: 0);
+                    if (mBobBuckets[k] != b)
+                        continue;
+
+                    if (strokeWeight != 0 && (!strokeSet || mBobStrokeColors[k] != lastStroke)) {
+                        stroke(lastStroke = mBobStrokeColors[k]);
+                        strokeSet = true;
+                    }
+
+                    if (fill && (!fillSet || mBobFillColors[k] != lastFill)) {
+                        fill(lastFill = mBobFillColors[k]);
+                        fillSet = true;
+                    }
+
+                    final float radius = bobRadius + mBobExtraRadii[k];
+                    ellipse(v[o + PendulumVertexBuffer.BOB_X], v[o + PendulumVertexBuffer.BOB_Y], radius, radius);
+                }
+            }
+
+            popStyle();
+        }
+    }
+
+    /**
+     * Packs the normal and highlight styles of all pendulums into primitive arrays, and assigns each bob style to a bucket
+     * */
+    private void updateBatchStyles(int count) {
+        final int n = count << 1;
+        if (mLineWeights.length < n) {
+            mLineWeights = new float[n];
+            mLineColors = new int[n];
+            mBobStrokeColors = new int[n];
+            mBobFillColors = new int[n];
+            mBobExtraRadii = new float[n];
+            mBobBuckets = new int[n];
+        }
+
+        mBucketCount = 0;
+
+        for (int i=0; i < count; i++) {
+            final Pendulum p = pendulumWave.pendulumAt(i);
+            final PendulumDrawStyle normal = drawStyle(p);
+            final PendulumDrawStyle highlight = drawStyleHighlight(p);
+
+            putBatchStyle(i << 1, normal);
+            putBatchStyle((i << 1) | 1, highlight != null? highlight: normal);
+        }
+
+        mBatchStylesCount = count;
+        mBatchStylesVersion = drawStylesVersion();
+    }
+
+    private void putBatchStyle(int k, @NotNull PendulumDrawStyle style) {
+        final boolean line = style.lineStrokeWeight() != 0 && style.lineStrokeColor() != null;
+        mLineWeights[k] = line? style.lineStrokeWeight(): 0;
+        mLineColors[k] = line? style.lineStrokeColor().getRGB(): 0;
+
+        final boolean stroke = style.bobStrokeWeight() != 0 && style.bobStrokeColor() != null;
+        final boolean fill = style.fillBob() && style.bobFillColor() != null;
+        final float strokeWeight = stroke? style.bobStrokeWeight(): 0;
+        mBobStrokeColors[k] = stroke? style.bobStrokeColor().getRGB(): 0;
+        mBobFillColors[k] = fill? style.bobFillColor().getRGB(): 0;
+        mBobExtraRadii[k] = style.extraRadius();
+
+        int bucket = 0;
+        while (bucket < mBucketCount && (mBucketStrokeWeights[bucket] != strokeWeight || mBucketFill[bucket] != fill)) {
+            bucket++;
+        }
+
+        if (bucket == mBucketCount) {
+            if (mBucketStrokeWeights.length == mBucketCount) {
+                mBucketStrokeWeights = Arrays.copyOf(mBucketStrokeWeights, Math.max(4, mBucketCount << 1));
+                mBucketFill = Arrays.copyOf(mBucketFill, mBucketStrokeWeights.length);
+            }
+
+            mBucketStrokeWeights[bucket] = strokeWeight;
+            mBucketFill[bucket] = fill;
+            mBucketCount++;
+        }
+
+        mBobBuckets[k] = bucket;
+    }
+
     @Override
     protected void beginHUD() {
         super.beginHUD();
@@ -233,8 +431,8 @@ public class PendulumWaveP2D extends BasePendulumWavePUi {
     }
 
     @Override
-    public @NotNull Point3DF lineDrawOrigin(@NotNull Pendulum p) {
-        return pendulumChordDrawOrigin(width, height, p.id);
+    protected @NotNull Point3DF createLineDrawOrigin(int index) {
+        return pendulumChordDrawOrigin(width, height, index);
     }
 
     @Override
@@ -4,10 +4,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import peasy.PeasyCam;
 import pendulum.Pendulum;
+import pendulum.PendulumDrawStyle;
 import pendulum.PendulumDrawStylesHolder;
+import pendulum.PendulumVertexBuffer;
 import pendulum.PendulumWave;
 import processing.core.PApplet;
+import processing.core.PMatrix3D;
+import processing.core.PShape;
 import processing.event.KeyEvent;
+import processing.opengl.PGraphicsOpenGL;
 import util.Config;
 import util.Point3DF;
 import util.U;
@@ -34,11 +39,32 @@ public class PendulumWaveP3D extends BasePendulumWavePUi {
      * */
     private static final float PENDULUM_SEPARATION_PIXELS = 50;
 
+    /**
+     * Whether to draw pendulums from a retained {@link PShape} group, built once and only re-transformed every frame,
+     * instead of re-tessellating a box and a sphere per pendulum in immediate mode
+     * */
+    private static final boolean DEFAULT_RETAINED_RENDERING = true;
+
+    /**
+     * Number of frames after which the retained pendulums are rebuilt anyway.<br>
+     * Each frame undoes the previous transform of every child with its inverse before applying the new one, which slowly accumulates float error in
+     * the geometry
+     * */
+    private static final int RETAINED_SHAPE_MAX_FRAMES = 36_000;
+
     @NotNull
     private static Point3DF pendulumChordDrawOrigin(int width, int height, int index) {
         return new Point3DF(width / 2f, min(height / 10f, 50), -index * PENDULUM_SEPARATION_PIXELS);
     }
 
+    private static void setTransform(@NotNull PShape shape, @NotNull PMatrix3D m) {
+        shape.resetMatrix();
+        shape.applyMatrix(m.m00, m.m01, m.m02, m.m03,
+                m.m10, m.m11, m.m12, m.m13,
+                m.m20, m.m21, m.m22, m.m23,
+                m.m30, m.m31, m.m32, m.m33);
+    }
+
 
     private PeasyCam cam;
 
@@ -47,6 +73,21 @@ public class PendulumWaveP3D extends BasePendulumWavePUi {
     @NotNull
     private Dimension mInitialWindowedSize = DEFAULT_INITIAL_WINDOW_SIZE;
 
+    /* Retained rendering */
+    private boolean mRetainedRendering = DEFAULT_RETAINED_RENDERING;
+    @Nullable
+    private PShape mPendulumsShape;
+    // Children of the group, per pendulum. null if not drawn
+    private PShape[] mChordShapes = new PShape[0], mBobShapes = new PShape[0];
+    // Highlight state the fills of the children were last set for
+    private boolean[] mShapeHighlighted = new boolean[0];
+    private final PMatrix3D mShapeMatrix = new PMatrix3D();
+
+    // Identity of the built group
+    private int mShapeCount = -1, mShapeStylesVersion = -1, mShapeFrames;
+    private boolean mShapeDrawLine, mShapeDrawBob;
+    private float mShapeBobRadius = Float.NaN;
+
     public PendulumWaveP3D(@NotNull PendulumWave pendulumWave) {
         super(pendulumWave);
         init();
@@ -71,6 +112,9 @@ public class PendulumWaveP3D extends BasePendulumWavePUi {
 
         applyConfig(config);
 
+        // Pendulums far along -Z are often out of view. Only takes effect with sound off, since sound subscribes to the highlights of every pendulum
+        pendulumWave.setLazyEvaluation(true);
+
         // AT Last
         attachPendulumWaveListener();       // very important
     }
@@ -133,7 +177,7 @@ public class PendulumWaveP3D extends BasePendulumWavePUi {
             return;
 
         final int count = pendulumWave.pendulumCount();
-        final Point3DF o = pendulumChordDrawOrigin(width, height, 0);
+        final Point3DF o = lineDrawOrigin(0);
         final float len = ((count - 1) * PENDULUM_SEPARATION_PIXELS);
         final float w = 20, h = 20, d = 20;
 
@@ -177,8 +221,179 @@ public class PendulumWaveP3D extends BasePendulumWavePUi {
 
         drawSupport();
 
-        pendulumWave.updatePendulums();
-        pendulumWave.drawPendulums(this, this);
+        if (pendulumWave.isLazyEvaluation() && !observesAllPendulums()) {
+            updateVisiblePendulumRange();
+        } else {
+            pendulumWave.clearVisiblePendulumRange();
+        }
+
+        updatePendulumsAndDraw();
+    }
+
+    public boolean isRetainedRenderingEnabled() {
+        return mRetainedRendering;
+    }
+
+    public PendulumWaveP3D setRetainedRendering(boolean retainedRendering) {
+        if (mRetainedRendering != retainedRendering) {
+            mRetainedRendering = retainedRendering;
+            if (!retainedRendering) {
+                releasePendulumsShape();
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Draws the pendulums from a retained group shape, setting only the transform of each chord and bob, and the fills of the pendulums whose
+     * highlight flipped. Falls back to immediate mode for the spherical model, or if the render vertices are not current
+     * */
+    @Override
+    protected void drawPendulums() {
+        if (!mRetainedRendering || pendulumWave.isSpherical() || !pendulumVertices.isCurrent(pendulumWave)) {
+            super.drawPendulums();
+            return;
+        }
+
+        final int count = pendulumWave.pendulumCount();
+        if (count == 0)
+            return;
+
+        final Pendulum first = pendulumWave.pendulumAt(0);
+        final float bobRadius = bobRadius(first);
+        if (mPendulumsShape == null
+                || mShapeCount != count
+                || mShapeStylesVersion != drawStylesVersion()
+                || mShapeDrawLine != drawLine()
+                || mShapeDrawBob != drawBob()
+                || mShapeBobRadius != bobRadius
+                || mShapeFrames >= RETAINED_SHAPE_MAX_FRAMES) {
+            buildPendulumsShape(count, bobRadius);
+        }
+
+        // Pendulums outside [from, to) are out of view, and keep their last transform
+        final float[] v = pendulumVertices.data();
+        final PMatrix3D m = mShapeMatrix;
+
+        for (int i = pendulumVertices.from(), to = pendulumVertices.to(); i < to; i++) {
+            final int o = i * PendulumVertexBuffer.STRIDE;
+            final boolean highlight = v[o + PendulumVertexBuffer.FLAGS] != 0;
+            final PShape chord = mChordShapes[i], bob = mBobShapes[i];
+
+            if (highlight != mShapeHighlighted[i]) {
+                mShapeHighlighted[i] = highlight;
+                applyPendulumShapeFills(pendulumWave.pendulumAt(i), chord, bob, highlight);
+            }
+
+            if (chord != null) {
+                // Unit chord along +Y, centered
+                final float len = max(v[o + PendulumVertexBuffer.LENGTH], 1e-3f);
+                m.reset();
+                m.translate(v[o + PendulumVertexBuffer.ORIGIN_X], v[o + PendulumVertexBuffer.ORIGIN_Y], v[o + PendulumVertexBuffer.ORIGIN_Z]);
+                m.rotateZ(-v[o + PendulumVertexBuffer.ANGLE]);
+                m.translate(0, len / 2, 0);
+                m.scale(1, len, 1);
+                setTransform(chord, m);
+            }
+
+            if (bob != null) {
+                m.reset();
+                m.translate(v[o + PendulumVertexBuffer.BOB_X], v[o + PendulumVertexBuffer.BOB_Y], v[o + PendulumVertexBuffer.BOB_Z]);
+                if (highlight) {
+                    final float scale = highlightBobScale(pendulumWave.pendulumAt(i), bobRadius);
+                    m.scale(scale);
+                }
+
+                setTransform(bob, m);
+            }
+        }
+
+        mShapeFrames++;
+        shape(mPendulumsShape);
+    }
+
+    private float highlightBobScale(@NotNull Pendulum p, float bobRadius) {
+        final PendulumDrawStyle normal = drawStyle(p);
+        final PendulumDrawStyle highlight = drawStyleHighlight(p);
+        final float r = bobRadius + normal.extraRadius();
+
+        return highlight != null && r > 0? (bobRadius + highlight.extraRadius()) / r: 1;
+    }
+
+    private void applyPendulumShapeFills(@NotNull Pendulum p, @Nullable PShape chord, @Nullable PShape bob, boolean highlight) {
+        PendulumDrawStyle style = highlight? drawStyleHighlight(p): null;
+        if (style == null) {
+            style = drawStyle(p);
+        }
+
+        if (chord != null && style.lineStrokeWeight() != 0 && style.lineStrokeColor() != null) {
+            chord.setFill(style.lineStrokeColor().getRGB());
+        }
+
+        if (bob != null && style.fillBob() && style.bobFillColor() != null) {
+            bob.setFill(style.bobFillColor().getRGB());
+        }
+    }
+
+    /**
+     * Builds a group with a unit chord and a bob of the normal style per pendulum. Geometry is tessellated once here, frames only transform it
+     * */
+    private void buildPendulumsShape(int count, float bobRadius) {
+        final PShape group = createShape(GROUP);
+        final PShape[] chords = new PShape[count], bobs = new PShape[count];
+        final boolean drawLine = drawLine(), drawBob = drawBob();
+
+        for (int i=0; i < count; i++) {
+            final PendulumDrawStyle style = drawStyle(pendulumWave.pendulumAt(i));
+            pushStyle();
+
+            if (drawLine && style.lineStrokeWeight() != 0 && style.lineStrokeColor() != null) {
+                noStroke();
+                fill(style.lineStrokeColor().getRGB());
+                chords[i] = createShape(BOX, style.lineStrokeWeight(), 1, style.lineStrokeWeight());
+                group.addChild(chords[i]);
+            }
+
+            if (drawBob) {
+                if (style.bobStrokeWeight() == 0 || style.bobStrokeColor() == null) {
+                    noStroke();
+                } else {
+                    strokeWeight(style.bobStrokeWeight());
+                    stroke(style.bobStrokeColor().getRGB());
+                }
+
+                if (style.fillBob() && style.bobFillColor() != null) {
+                    fill(style.bobFillColor().getRGB());
+                } else {
+                    noFill();
+                }
+
+                bobs[i] = createShape(SPHERE, bobRadius + style.extraRadius());
+                group.addChild(bobs[i]);
+            }
+
+            popStyle();
+        }
+
+        mPendulumsShape = group;
+        mChordShapes = chords;
+        mBobShapes = bobs;
+        mShapeHighlighted = new boolean[count];
+        mShapeCount = count;
+        mShapeStylesVersion = drawStylesVersion();
+        mShapeDrawLine = drawLine;
+        mShapeDrawBob = drawBob;
+        mShapeBobRadius = bobRadius;
+        mShapeFrames = 0;
+    }
+
+    private void releasePendulumsShape() {
+        mPendulumsShape = null;
+        mChordShapes = new PShape[0];
+        mBobShapes = new PShape[0];
+        mShapeHighlighted = new boolean[0];
+        mShapeCount = -1;
     }
 
     @Override
@@ -292,8 +507,8 @@ public class PendulumWaveP3D extends BasePendulumWavePUi {
     }
 
     @Override
-    public @NotNull Point3DF lineDrawOrigin(@NotNull Pendulum p) {
-        return pendulumChordDrawOrigin(width, height, p.id);
+    protected @NotNull Point3DF createLineDrawOrigin(int index) {
+        return pendulumChordDrawOrigin(width, height, index);
     }
 
     @Override
@@ -311,6 +526,55 @@ public class PendulumWaveP3D extends BasePendulumWavePUi {
         return super.createPendulumDrawStyle(numPendulums, index);
     }
 
+    /**
+     * Sets the range of pendulums within the view frustum on the wave, for lazy evaluation.<br>
+     * Pendulum i lies within the bounding box of pendulum 0 moved by i separations along -Z, so for each frustum plane (extracted from the
+     * projection-modelview matrix), the farthest corner of that box is inside iff i is on one side of a bound. The bounds of all planes give the range.
+     * Conservative: a pendulum outside the range is never visible
+     * */
+    private void updateVisiblePendulumRange() {
+        final Pendulum longest = pendulumWave.getLongestPendulum();
+        if (!(g instanceof PGraphicsOpenGL) || longest == null) {
+            pendulumWave.clearVisiblePendulumRange();
+            return;
+        }
+
+        final PMatrix3D m = ((PGraphicsOpenGL) g).projmodelview;
+        final Point3DF o = lineDrawOrigin(0);
+        final float reach = (longest.getLength() * lengthScale(longest)) + bobRadius(longest);       // in any direction from the origin
+        final float depth = bobRadius(longest);
+
+        final int count = pendulumWave.pendulumCount();
+        float tMin = 0, tMax = count - 1;
+
+        for (int plane = 0; plane < 6 && tMin <= tMax; plane++) {
+            // Gribb-Hartmann: left/right, bottom/top, near/far = row3 +/- row0, row1, row2
+            final float sign = (plane & 1) == 0? 1: -1;
+            final float a, b, c, d;
+            switch (plane >> 1) {
+                case 0 -> { a = m.m30 + sign * m.m00; b = m.m31 + sign * m.m01; c = m.m32 + sign * m.m02; d = m.m33 + sign * m.m03; }
+                case 1 -> { a = m.m30 + sign * m.m10; b = m.m31 + sign * m.m11; c = m.m32 + sign * m.m12; d = m.m33 + sign * m.m13; }
+                default -> { a = m.m30 + sign * m.m20; b = m.m31 + sign * m.m21; c = m.m32 + sign * m.m22; d = m.m33 + sign * m.m23; }
+            }
+
+            // Signed distance of the farthest box corner along the plane normal, and its change per pendulum index
+            final float dist = d + (a * (a > 0? o.x + reach: o.x - reach)) + (b * (b > 0? o.y + reach: o.y - reach)) + (c * (c > 0? o.z + depth: o.z - depth));
+            final float slope = -c * PENDULUM_SEPARATION_PIXELS;
+
+            if (slope > 0) {
+                tMin = max(tMin, -dist / slope);
+            } else if (slope < 0) {
+                tMax = min(tMax, -dist / slope);
+            } else if (dist < 0) {
+                tMin = count;       // entirely outside
+            }
+        }
+
+        final int from = tMin <= tMax? constrain(ceil(tMin), 0, count): 0;
+        final int to = tMin <= tMax? constrain(floor(tMax) + 1, from, count): 0;
+        pendulumWave.setVisiblePendulumRange(from, to);
+    }
+
     /* Camera ...........................................  */
 
     @Override
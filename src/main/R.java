@@ -3,6 +3,7 @@ package main;
 import org.apache.commons.math3.util.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import pendulum.PendulumWaveCheckpoint;
 import util.Config;
 
 import java.awt.*;
@@ -39,6 +40,10 @@ public class R {
 
     public static final Path FILE_CONFIG_2D = DIR_MAIN.resolve("config-2D.ini");
     public static final Path FILE_CONFIG_3D = DIR_MAIN.resolve("config-3D.ini");
+    public static final Path FILE_STATE_DEFAULT = DIR_MAIN.resolve("pendulum-wave" + PendulumWaveCheckpoint.FILE_EXTENSION);
+    public static final Path FILE_AUTOSAVE_2D = DIR_MAIN.resolve("autosave-2D" + PendulumWaveCheckpoint.FILE_EXTENSION);
+    public static final Path FILE_AUTOSAVE_3D = DIR_MAIN.resolve("autosave-3D" + PendulumWaveCheckpoint.FILE_EXTENSION);
+    public static final Path FILE_SPECTRUM_DEFAULT = DIR_MAIN.resolve("pendulum-wave-spectrum.csv");
 
     public static final Config CONFIG_2D = Config.obtain(FILE_CONFIG_2D);       // Since configs are lazily loaded, this does not have any cost
     public static final Config CONFIG_3D = Config.obtain(FILE_CONFIG_3D);       // Since configs are lazily loaded, this does not have any cost
@@ -60,6 +65,8 @@ public class R {
     public static final String CONFIG_KEY_WAVE_PERIOD = "wave_period";
     public static final String CONFIG_KEY_MIN_OSC = "min_osc";
     public static final String CONFIG_KEY_OSC_STEP = "osc_step";
+    public static final String CONFIG_KEY_AUTOSAVE_INTERVAL = "autosave_interval";
+    public static final String CONFIG_KEY_AUTOSAVE_RESUME = "autosave_resume";
 
     @NotNull
     public static Dimension getConfigWindowSize(@NotNull Config config, @NotNull Dimension screenSize, @NotNull Dimension defaultValue) {
@@ -80,6 +87,20 @@ public class R {
     public static final String SHELL_PENDULUM_COUNT = shellPath("count");
     public static final String SHELL_RESET = shellPath("reset");
     public static final String SHELL_SPEED = shellPath("speed");
+    public static final String SHELL_REWIND = shellPath("rewind");
+    public static final String SHELL_FAST_FORWARD = shellPath("ff");
+    public static final String SHELL_AUTOMATION = shellPath("auto");
+    public static final String SHELL_DESIGN = shellPath("design");
+    public static final String SHELL_MOMENTS = shellPath("moments");
+    public static final String SHELL_SPECTRUM = shellPath("fft");
+    public static final String SHELL_STATS = shellPath("stats");
+    public static final String SHELL_STATE = shellPath("state");
+    public static final String SHELL_AUTOSAVE = shellPath("autosave");
+    public static final String SHELL_SPHERICAL = shellPath("spherical");
+    public static final String SHELL_CHAOS = shellPath("chaos");
+    public static final String SHELL_EXACT_PERIOD = shellPath("exact-period");
+    public static final String SHELL_LAZY = shellPath("lazy");
+    public static final String SHELL_COLLISIONS = shellPath("collisions");
     public static final String SHELL_GRAVITY = shellPath("gravity");
     public static final String SHELL_DRAG = shellPath("drag");
     public static final String SHELL_MASS = shellPath("mass");
@@ -145,9 +166,91 @@ public class R {
                
             -> speed [-x | -p] <value> : Sets the simulation speed, in multipliers or percentage
                Modes
-               1. -x -> Multiples or times (Default)
+               1. -x -> Multiples or times (Default). Negative multiples play the simulation in reverse
                2. -p -> percentage, in range [0, 100]
                
+            -> rewind [-on | -off] [secs] : Toggles reverse playback, or rewinds the simulation by the given seconds
+               Alias: reverse
+               Options
+               1. -on -> play in reverse
+               2. -off -> play forward
+               
+            -> ff [-on | -off] [secs | speed] : Fast-forwards the simulation by the given seconds as fast as possible, with a 4th order integrator and large time steps
+               Alias: fast-forward
+               Options
+               1. -on <speed> -> fast-forward mode: plays at the given speed multiplier (50 - 100000), rendering every Nth state
+               2. -off -> back to normal speed
+               Example: ff 2400  |  ff -on 1000  |  ff -off
+               
+            -> auto [-clear] [param] [ramp | lfo | keys] <values...> : Automates a parameter over simulation time. Without arguments, lists the active lanes
+               Params: speed, g, drag (g/s), mass (g), wp (s), minosc, oscstep
+               Curves
+               1. ramp <to> <secs> -> linear ramp from the current value, over the given seconds
+               2. lfo <offset> <amplitude> <period secs> [sine | triangle | square | saw] -> periodic oscillation
+               3. keys <t:v> <t:v>... [-smooth | -step] [-loop] -> keyframes at absolute simulation times
+               Options
+               1. -clear -> remove the lane of the given param, or all lanes if no param is given
+               Example: auto g ramp 20 60  |  auto speed lfo 1 0.5 30  |  auto wp keys 0:30 60:45 -smooth  |  auto -clear
+               
+            -> design [-clear] [-wide] [align <secs>... | wave <secs> <wavelengths>] : Solves for the pendulum lengths that produce a target pattern, and applies them
+               Targets
+               1. align <secs>... -> all pendulums back at the start angle at each of the given times
+               2. wave <secs> <wavelengths> -> a travelling wave spanning the given number of wavelengths at the given time
+               Options
+               1. -wide -> search further from the current lengths (2 oscillations per wave period instead of 0.5)
+               2. -clear -> discard the designed lengths, and calculate lengths from the wave parameters again
+               Example: design align 60  |  design align 30 60  |  design wave 20 2 -wide  |  design -clear
+               
+            -> moments [-next] [wave periods] [max groups] : Lists the predicted times of alignment, half split and k-group patterns in the next wave periods. Default: 2 periods, up to 6 groups
+               Options
+               1. -next -> fast-forward to the next moment and pause
+               Example: moments  |  moments 4  |  moments 1 2  |  moments -next
+               
+            -> fft [-on | -off | -export] [frame interval | file] : Spatial FFT of the bob displacements across the pendulums on a background thread, classifying the wave pattern
+               over time (shown in the status bar). Without arguments, shows the latest result
+               Options
+               1. -on [frame interval] -> analyze every Nth frame. Default: 2
+               2. -off -> stop analyzing
+               3. -export [file] -> export the tracked wavenumbers as CSV. Default file: pendulum-wave-spectrum.csv
+               Example: fft -on  |  fft -on 10  |  fft -export  |  fft -off
+               
+            -> stats [-on | -off] [pendulum index] : Streaming per-pendulum statistics: peak amplitude per half-cycle, energy, measured period, and the damping ratio
+               measured from the decay of the peaks against the one implied by drag and mass (also shown in the status bar). Without arguments, shows a table of all pendulums
+               Example: stats -on  |  stats  |  stats 3  |  stats -off
+               
+            -> save-state [file] : Saves the full simulation state (parameters, elapsed time, and the state of every pendulum) to a binary file. Default file: pendulum-wave.pwstate
+            -> load-state [file] : Restores the simulation state saved by save-state. Default file: pendulum-wave.pwstate
+               Example: save-state  |  save-state before-drag.pwstate  |  load-state before-drag.pwstate
+               
+            -> autosave [-on | -off | -now] [interval secs] : Periodically saves the simulation state in the background, to resume after a crash. Without arguments, shows the status
+               Options
+               1. -on / -off -> enable or disable autosave
+               2. -now -> save immediately
+               Example: autosave 30  |  autosave -off  |  autosave -now
+               
+            -> resume : Restores the last autosaved state
+               
+            -> spherical [-on | -off] [azimuthal ratio] : Spherical (two-axis) pendulums that swing freely in 3D. Without arguments, toggles the model
+               Azimuthal ratio: initial azimuthal velocity as a fraction of the conical orbit velocity. 0 -> planar swing, 1 -> circular orbits, in between -> elliptical orbits
+               Example: spherical  |  spherical -on 0.5  |  spherical 1  |  spherical -off
+               
+            -> exact-period [-on | -off] : Whether pendulum lengths account for the longer period of large swings (elliptic integral), so that the wave truly comes back in sync
+               at the end of the wave period. Off -> small-angle period T = 2π√(L/g). Without arguments, toggles. Default: on
+               Example: exact-period  |  exact-period -off
+               
+            -> lazy [-on | -off] : Lazy evaluation: pendulums outside the view are not stepped, and catch up when they come into view or are queried. Only in 3D,
+               and only while nothing observes every pendulum (sound, spectrum, autosave, statistics, snapshots) and without drag, which needs every pendulum
+               in the rewind history. Without arguments, toggles. Default: on in 3D, but inactive while sound is on
+               Example: lazy  |  lazy -off
+               
+            -> collisions [-on | -off] [-elastic | -inelastic | restitution] : Bob-to-bob collisions, found with a spatial hash rebuilt every step. Restitution in [0, 1]:
+               1 -> elastic, 0 -> perfectly inelastic. Bobs are laid out as drawn. Only with planar pendulums. Without arguments, toggles. Default: off, elastic
+               Example: collisions  |  collisions -on -inelastic  |  collisions 0.5  |  collisions -off
+               
+            -> chaos [members] [secs] [start angle in deg] : Runs an ensemble of slightly perturbed double pendulums (bobs of the pendulum mass, rods half as long as the longest pendulum) in parallel,
+               and reports the largest Lyapunov exponent and the time it takes the members to diverge. Does not affect the wave. Defaults: 1024 members, 20 secs, the pendulum start angle
+               Example: chaos  |  chaos 4096 60  |  chaos 1024 30 120
+               
             -> gravity [-reset] <value in ms-2> : Sets the acceleration due to gravity (in ms-2)
             -> drag [-reset] <value in g/s> : Sets the drag coefficient (in gram/s). positive value -> drag, negative -> push
             -> mass [-reset] <value in g> : Sets the mass of each pendulum (in grams). Must be > 0
@@ -0,0 +1,333 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An ensemble of double pendulums started from slightly perturbed initial conditions, to study chaos.<br>
+ * <br>
+ * Equations of motion of a double pendulum with point bobs (m1, m2) on massless rods (l1, l2), where d = theta1 - theta2: <br>
+ * <strong>theta1'' = (-g (2 m1 + m2) sin(theta1) - m2 g sin(theta1 - 2 theta2) - 2 sin(d) m2 (w2<sup>2</sup> l2 + w1<sup>2</sup> l1 cos(d))) / (l1 (2 m1 + m2 - m2 cos(2d)))</strong> <br>
+ * <strong>theta2'' = 2 sin(d) (w1<sup>2</sup> l1 (m1 + m2) + g (m1 + m2) cos(theta1) + w2<sup>2</sup> l2 m2 cos(d)) / (l2 (2 m1 + m2 - m2 cos(2d)))</strong> <br>
+ * integrated with RK4 in double precision.<br>
+ * <br>
+ * Member i starts at {@code theta1 = startAngle + i * perturbation}. Each member also carries a shadow trajectory, a fixed small distance away in phase space,
+ * which is pulled back to that distance after every epoch (Benettin's method). The average logarithmic growth of the separation per second converges to the
+ * largest Lyapunov exponent. Members are independent, so each epoch is split across a {@link ForkJoinPool} without any sharing between threads.
+ * Between epochs, every member is compared with member 0 to measure when the perturbed trajectories diverge.
+ * */
+public final class DoublePendulumEnsemble {
+
+    public static final double DEFAULT_TIME_STEP_SECS = 1e-3;
+    public static final double DEFAULT_EPOCH_SECS = 0.05;
+    public static final double DEFAULT_PERTURBATION_RAD = 1e-9;
+
+    // Initial separation of each shadow trajectory in phase space
+    private static final double SHADOW_SEPARATION = 1e-8;
+
+    // Separation (in rad) of theta1 from member 0 beyond which a member is considered diverged
+    public static final double DIVERGENCE_THRESHOLD_RAD = 1;
+
+    // Members per fork/join task
+    private static final int MIN_CHUNK = 64;
+
+
+    private final int size;
+    private final double m1, m2, l1, l2, gravity;
+    private final double perturbation;
+    private final double dt;
+    private final double epochSecs;
+
+    // State of the members: angles (rad) and angular velocities (rad/s)
+    private final double[] th1, th2, w1, w2;
+
+    // State of the shadow trajectories
+    private final double[] sth1, sth2, sw1, sw2;
+
+    // Sum of log(separation growth) of each member over all epochs
+    private final double[] logGrowth;
+
+    // Time (in s) at which each member diverged from member 0, or NaN
+    private final double[] divergedAt;
+
+    @NotNull
+    private final ForkJoinPool pool;
+    private double elapsedSecs;
+
+    /**
+     * @param size number of members, must be >= 2
+     * @param mass1 mass of the upper bob (in kg)
+     * @param mass2 mass of the lower bob (in kg)
+     * @param length1 length of the upper rod (in m)
+     * @param length2 length of the lower rod (in m)
+     * @param gravity acceleration due to gravity (in ms-2)
+     * @param startAngle start angle of both rods off the vertical (in radians), released from rest
+     * @param perturbation difference of theta1 (in radians) between successive members
+     * */
+    public DoublePendulumEnsemble(int size, float mass1, float mass2, float length1, float length2, float gravity, float startAngle, double perturbation, @NotNull ForkJoinPool pool) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Ensemble size must be >= 2, given: " + size);
+        }
+
+        if (!(mass1 > 0 && mass2 > 0)) {
+            throw new IllegalArgumentException("Bob masses must be > 0, given: " + mass1 + ", " + mass2);
+        }
+
+        if (!(length1 > 0 && length2 > 0)) {
+            throw new IllegalArgumentException("Rod lengths must be > 0, given: " + length1 + ", " + length2);
+        }
+
+        this.size = size;
+        this.m1 = mass1;
+        this.m2 = mass2;
+        this.l1 = length1;
+        this.l2 = length2;
+        this.gravity = gravity;
+        this.perturbation = perturbation;
+        this.dt = DEFAULT_TIME_STEP_SECS;
+        this.epochSecs = DEFAULT_EPOCH_SECS;
+        this.pool = pool;
+
+        th1 = new double[size];
+        th2 = new double[size];
+        w1 = new double[size];
+        w2 = new double[size];
+        sth1 = new double[size];
+        sth2 = new double[size];
+        sw1 = new double[size];
+        sw2 = new double[size];
+        logGrowth = new double[size];
+        divergedAt = new double[size];
+
+        for (int i=0; i < size; i++) {
+            th1[i] = startAngle + (i * perturbation);
+            th2[i] = startAngle;
+
+            // Shadow: displaced along all four state axes
+            final double d = SHADOW_SEPARATION / 2;
+            sth1[i] = th1[i] + d;
+            sth2[i] = th2[i] + d;
+            sw1[i] = d;
+            sw2[i] = d;
+        }
+
+        Arrays.fill(divergedAt, Double.NaN);
+        divergedAt[0] = Double.POSITIVE_INFINITY;       // the reference never diverges from itself
+    }
+
+    /**
+     * An ensemble of double pendulums made of two bobs of the wave's mass, on two rods each half as long as the longest pendulum of the wave,
+     * released at the wave's start angle
+     * */
+    @NotNull
+    public static DoublePendulumEnsemble fromWave(@NotNull PendulumWave wave, int size, double perturbation) {
+        return fromWave(wave, size, perturbation, wave.getPendulumStartAngle());
+    }
+
+    /**
+     * Same as {@link #fromWave(PendulumWave, int, double)}, but released at the given start angle (in radians)
+     * */
+    @NotNull
+    public static DoublePendulumEnsemble fromWave(@NotNull PendulumWave wave, int size, double perturbation, float startAngle) {
+        final float length = wave.getLongestPendulum().getLength() / 2;
+        return new DoublePendulumEnsemble(size, wave.getPendulumMass(), wave.getPendulumMass(), length, length, wave.gravity(), startAngle, perturbation, ForkJoinPool.commonPool());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedSecs;
+    }
+
+    /* Physics ................................................................................. */
+
+    private double acc1(double a1, double a2, double v1, double v2) {
+        final double d = a1 - a2;
+        final double sinD = Math.sin(d), cosD = Math.cos(d);
+        final double den = l1 * ((2 * m1) + m2 - (m2 * Math.cos(2 * d)));
+        return ((-gravity * ((2 * m1) + m2) * Math.sin(a1)) - (m2 * gravity * Math.sin(a1 - (2 * a2))) - (2 * sinD * m2 * ((v2 * v2 * l2) + (v1 * v1 * l1 * cosD)))) / den;
+    }
+
+    private double acc2(double a1, double a2, double v1, double v2) {
+        final double d = a1 - a2;
+        final double sinD = Math.sin(d), cosD = Math.cos(d);
+        final double den = l2 * ((2 * m1) + m2 - (m2 * Math.cos(2 * d)));
+        return (2 * sinD * ((v1 * v1 * l1 * (m1 + m2)) + (gravity * (m1 + m2) * Math.cos(a1)) + (v2 * v2 * l2 * m2 * cosD))) / den;
+    }
+
+    /**
+     * Steps one state by one RK4 step, in place
+     * */
+    private void rk4(double @NotNull[] a1s, double @NotNull[] a2s, double @NotNull[] v1s, double @NotNull[] v2s, int i, double h) {
+        final double a1 = a1s[i], a2 = a2s[i], v1 = v1s[i], v2 = v2s[i];
+
+        final double k1a1 = v1, k1a2 = v2;
+        final double k1v1 = acc1(a1, a2, v1, v2), k1v2 = acc2(a1, a2, v1, v2);
+
+        final double h2 = h / 2;
+        final double k2a1 = v1 + (h2 * k1v1), k2a2 = v2 + (h2 * k1v2);
+        final double k2v1 = acc1(a1 + (h2 * k1a1), a2 + (h2 * k1a2), k2a1, k2a2);
+        final double k2v2 = acc2(a1 + (h2 * k1a1), a2 + (h2 * k1a2), k2a1, k2a2);
+
+        final double k3a1 = v1 + (h2 * k2v1), k3a2 = v2 + (h2 * k2v2);
+        final double k3v1 = acc1(a1 + (h2 * k2a1), a2 + (h2 * k2a2), k3a1, k3a2);
+        final double k3v2 = acc2(a1 + (h2 * k2a1), a2 + (h2 * k2a2), k3a1, k3a2);
+
+        final double k4a1 = v1 + (h * k3v1), k4a2 = v2 + (h * k3v2);
+        final double k4v1 = acc1(a1 + (h * k3a1), a2 + (h * k3a2), k4a1, k4a2);
+        final double k4v2 = acc2(a1 + (h * k3a1), a2 + (h * k3a2), k4a1, k4a2);
+
+        final double h6 = h / 6;
+        a1s[i] = a1 + (h6 * (k1a1 + (2 * k2a1) + (2 * k3a1) + k4a1));
+        a2s[i] = a2 + (h6 * (k1a2 + (2 * k2a2) + (2 * k3a2) + k4a2));
+        v1s[i] = v1 + (h6 * (k1v1 + (2 * k2v1) + (2 * k3v1) + k4v1));
+        v2s[i] = v2 + (h6 * (k1v2 + (2 * k2v2) + (2 * k3v2) + k4v2));
+    }
+
+    /**
+     * Steps members in range [from, to) and their shadows through one epoch, then renormalizes the shadows
+     * */
+    private void runEpoch(int from, int to, int steps) {
+        for (int i=from; i < to; i++) {
+            for (int s=0; s < steps; s++) {
+                rk4(th1, th2, w1, w2, i, dt);
+                rk4(sth1, sth2, sw1, sw2, i, dt);
+            }
+
+            final double d1 = sth1[i] - th1[i], d2 = sth2[i] - th2[i], d3 = sw1[i] - w1[i], d4 = sw2[i] - w2[i];
+            final double separation = Math.sqrt((d1 * d1) + (d2 * d2) + (d3 * d3) + (d4 * d4));
+            if (separation > 0) {
+                logGrowth[i] += Math.log(separation / SHADOW_SEPARATION);
+
+                final double scale = SHADOW_SEPARATION / separation;
+                sth1[i] = th1[i] + (d1 * scale);
+                sth2[i] = th2[i] + (d2 * scale);
+                sw1[i] = w1[i] + (d3 * scale);
+                sw2[i] = w2[i] + (d4 * scale);
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class EpochTask extends RecursiveAction {
+
+        private final int from, to, steps;
+
+        EpochTask(int from, int to, int steps) {
+            this.from = from;
+            this.to = to;
+            this.steps = steps;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_CHUNK) {
+                runEpoch(from, to, steps);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new EpochTask(from, mid, steps), new EpochTask(mid, to, steps));
+        }
+    }
+
+    /**
+     * Advances the whole ensemble by the given simulation time, rounded up to whole epochs. Blocks until done
+     * */
+    public DoublePendulumEnsemble advance(double seconds) {
+        final int stepsPerEpoch = (int) Math.round(epochSecs / dt);
+        final int epochs = (int) Math.ceil(seconds / epochSecs);
+
+        for (int e=0; e < epochs; e++) {
+            pool.invoke(new EpochTask(0, size, stepsPerEpoch));
+            elapsedSecs += stepsPerEpoch * dt;
+
+            // Divergence from the reference member
+            for (int i=1; i < size; i++) {
+                if (Double.isNaN(divergedAt[i]) && Math.abs(wrapAngle(th1[i] - th1[0])) > DIVERGENCE_THRESHOLD_RAD) {
+                    divergedAt[i] = elapsedSecs;
+                }
+            }
+        }
+
+        return this;
+    }
+
+    private static double wrapAngle(double a) {
+        return a - (2 * Math.PI * Math.rint(a / (2 * Math.PI)));
+    }
+
+    /* Estimates ................................................................................. */
+
+    /**
+     * @return online estimate of the largest Lyapunov exponent (in s<sup>-1</sup>), averaged over all members. Positive values indicate chaos
+     * */
+    public double lyapunovExponent() {
+        if (elapsedSecs <= 0)
+            return Double.NaN;
+
+        double sum = 0;
+        for (double g: logGrowth) {
+            sum += g;
+        }
+
+        return sum / size / elapsedSecs;
+    }
+
+    /**
+     * @return standard deviation of the Lyapunov exponent estimates of individual members (in s<sup>-1</sup>)
+     * */
+    public double lyapunovExponentStdDev() {
+        if (elapsedSecs <= 0)
+            return Double.NaN;
+
+        final double mean = lyapunovExponent();
+        double sumSq = 0;
+        for (double g: logGrowth) {
+            final double d = (g / elapsedSecs) - mean;
+            sumSq += d * d;
+        }
+
+        return Math.sqrt(sumSq / size);
+    }
+
+    /**
+     * @return fraction of perturbed members that have diverged from member 0 by more than {@link #DIVERGENCE_THRESHOLD_RAD}
+     * */
+    public double divergedFraction() {
+        int count = 0;
+        for (int i=1; i < size; i++) {
+            if (!Double.isNaN(divergedAt[i])) {
+                count++;
+            }
+        }
+
+        return count / (double) (size - 1);
+    }
+
+    /**
+     * @return median time (in s) at which the perturbed members diverged from member 0, or NaN if less than half have diverged yet
+     * */
+    public double divergenceTime() {
+        final double[] times = Arrays.copyOfRange(divergedAt, 1, size);
+        Arrays.sort(times);     // NaNs last
+
+        final double median = times[(times.length - 1) / 2];
+        return Double.isNaN(median)? Double.NaN: median;
+    }
+
+    /**
+     * @return divergence time (in s) predicted by the Lyapunov exponent for the median initial offset from member 0: ln(threshold / offset) / lambda
+     * */
+    public double predictedDivergenceTime() {
+        final double lambda = lyapunovExponent();
+        final double offset = Math.abs(perturbation) * (size / 2);
+        return lambda > 0 && offset > 0? Math.log(DIVERGENCE_THRESHOLD_RAD / offset) / lambda: Double.POSITIVE_INFINITY;
+    }
+
+}
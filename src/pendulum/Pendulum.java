@@ -26,11 +26,14 @@ public class Pendulum {
 
     public interface Listener {
 
-        void onPendulumLengthChanged(@NotNull Pendulum p, float prevLength, float newLength);
+        default void onPendulumLengthChanged(@NotNull Pendulum p, float prevLength, float newLength) {
+        }
 
-        void onPendulumAngleChanged(@NotNull Pendulum p, float prevAngle, float newAngle);
+        default void onPendulumAngleChanged(@NotNull Pendulum p, float prevAngle, float newAngle) {
+        }
 
-        void onPendulumHighlightChanged(@NotNull Pendulum p, boolean highlight);
+        default void onPendulumHighlightChanged(@NotNull Pendulum p, boolean highlight) {
+        }
 
     }
 
@@ -41,36 +44,38 @@ public class Pendulum {
     // Mass of the pendulum bob, in kg
     private float mass;
 
-    // Length of the pendulum chord, in meters
-    private float length;
-
-    // angle of the pendulum off the vertical axis, in radians
-    private float angle;
-
-    // Angular velocity of the pendulum, in rad/s
-    private float angVel;
+    // Length, angle, angular velocity and angular acceleration of this pendulum live in a (possibly shared) store
+    @NotNull
+    private PendulumStateStore store;
+    private int index;
 
     private float startAngle;
     private float startAngVel;
-    private boolean mStarted, mPaused;
-    private boolean mHighlight;
+    private boolean mPaused;
 
     @Nullable
     private Listener mListener;
 
     private Object tag;
 
-    public Pendulum(int id, float mass, float length, float startAngle, float startAngVel) {
+    /**
+     * Creates a pendulum whose state lives in the given store, ex. one shared by all pendulums of a {@link PendulumWave}
+     * */
+    Pendulum(@NotNull PendulumStateStore store, int id, float mass, float length, float startAngle, float startAngVel) {
         this.id = id;
         this.mass = mass;
-        this.length = length;
         this.startAngle = startAngle;
         this.startAngVel = startAngVel;
 
-        this.angle = startAngle;
+        this.store = store;
+        this.index = store.add(length, startAngle, 0);
         updateHighlight();
     }
 
+    public Pendulum(int id, float mass, float length, float startAngle, float startAngVel) {
+        this(new PendulumStateStore(1), id, mass, length, startAngle, startAngVel);
+    }
+
     public Pendulum(int id, float mass, float length, float startAngle) {
         this(id, mass, length, startAngle, 0);
     }
@@ -95,6 +100,28 @@ public class Pendulum {
         return this;
     }
 
+    /**
+     * @return index of this pendulum in its state store
+     * */
+    int storeIndex() {
+        return index;
+    }
+
+    /**
+     * Moves the state of this pendulum into a private store. Called when the pendulum is removed from a shared store
+     * */
+    void detachStore() {
+        final PendulumStateStore prev = store;
+        final PendulumStateStore own = new PendulumStateStore(1);
+        own.add(prev.length(index), prev.angles[index], prev.angVels[index]);
+        own.angAccs[0] = prev.angAccs[index];
+        own.setStarted(0, prev.isStarted(index));
+        own.setHighlighted(0, prev.isHighlighted(index));
+
+        store = own;
+        index = 0;
+    }
+
     public float getMass() {
         return mass;
     }
@@ -106,25 +133,47 @@ public class Pendulum {
 
 
     protected void onLengthChanged(float prevLen, float newLen) {
-        if (mListener != null) {
+        if (mListener != null && (store.eventMask & PendulumWaveEvents.LENGTH) != 0) {
             mListener.onPendulumLengthChanged(this, prevLen, newLen);
         }
     }
 
     public float getLength() {
-        return length;
+        return store.length(index);
     }
 
+    /**
+     * @param length in meters. In a {@link PendulumWave#isCompactStorage() compact} store, a length other than the shared one switches the store to stored lengths
+     * */
     public Pendulum setLength(float length) {
-        if (this.length != length) {
-            final float prev = this.length;
-            this.length = length;
-            onLengthChanged(prev, length);
+        final float prev = store.length(index);
+        store.setLength(index, length);
+
+        final float cur = store.length(index);
+        if (prev != cur) {
+            store.lengthsVersion++;
+            onLengthChanged(prev, cur);
         }
 
         return this;
     }
 
+    /**
+     * @return angle of the pendulum chord off the vertical axis, in radians
+     * */
+    public float getAngle() {
+        ensureCurrent();
+        return store.angles[index];
+    }
+
+    /**
+     * @return angular velocity of the pendulum, in rad/s
+     * */
+    public float getAngularVelocity() {
+        ensureCurrent();
+        return store.angVels[index];
+    }
+
     public float getStartAngle() {
         return startAngle;
     }
@@ -144,7 +193,7 @@ public class Pendulum {
     }
 
     public boolean isStarted() {
-        return mStarted;
+        return store.isStarted(index);
     }
 
     public boolean isPaused() {
@@ -162,32 +211,47 @@ public class Pendulum {
     }
 
     public Pendulum resetState() {
-        mStarted = false;
-        angVel = startAngVel;
+        store.setStarted(index, false);
+        store.angVels[index] = startAngVel;
+        store.stateVersion++;
         setAngleInternal(startAngle);
         return this;
     }
 
+    /**
+     * Called when the highlight of this pendulum changes, either by this pendulum or by its wave in bulk
+     * */
     protected void onHighlightChanged(boolean highlight) {
-        if (mListener != null) {
+        if (mListener != null && (store.eventMask & PendulumWaveEvents.HIGHLIGHT) != 0) {
             mListener.onPendulumHighlightChanged(Pendulum.this, highlight);
         }
     }
 
     public boolean isHighlighted() {
-        return mHighlight;
+        ensureCurrent();
+        return store.isHighlighted(index);
+    }
+
+    /**
+     * Brings this pendulum up to the current time if its wave evaluates it lazily, and it has not been stepped meanwhile
+     * */
+    private void ensureCurrent() {
+        final PendulumStateStore s = store;
+        if (s.lazyWave != null && (index < s.awakeFrom || index >= s.awakeTo)) {
+            s.lazyWave.catchUp(index);
+        }
     }
 
     private void updateHighlight() {
-        final boolean h = shouldHighlight(angle, startAngle);
-        if (mHighlight != h) {
-            mHighlight = h;
+        final boolean h = shouldHighlight(store.angles[index], startAngle);
+        if (store.isHighlighted(index) != h) {
+            store.setHighlighted(index, h);
             onHighlightChanged(h);
         }
     }
 
     protected void onAngleChanged(float prevAngle, float newAngle) {
-        if (mListener != null) {
+        if (mListener != null && (store.eventMask & PendulumWaveEvents.ANGLE) != 0) {
             mListener.onPendulumAngleChanged(Pendulum.this, prevAngle, newAngle);
         }
 
@@ -195,47 +259,170 @@ public class Pendulum {
     }
 
     private void setAngleInternal(float angle) {
-        if (this.angle == angle)
+        final float prev = store.angles[index];
+        if (prev == angle)
             return;
 
-        final float prev = this.angle;
-        this.angle = angle;
+        store.angles[index] = angle;
+        store.stateVersion++;
         onAngleChanged(prev, angle);
     }
 
+    /**
+     * @return angular acceleration (in rad s<sup>-2</sup>) due to gravity alone, at the given angle
+     * */
+    private float gravityAcceleration(@NotNull PendulumEnvironmentProvider environmentProvider, float angle) {
+        return -(environmentProvider.gravity() * PApplet.sin(angle) / store.length(index));
+    }
+
+    /**
+     * Restores the dynamic state of this pendulum, as if it had been stepped to it.
+     * Used by the {@link PendulumWave} to seek back in time
+     * */
+    void restoreState(@NotNull PendulumEnvironmentProvider environmentProvider, float angle, float angVel) {
+        store.setStarted(index, true);
+        store.angVels[index] = angVel;
+        store.stateVersion++;
+        setAngleInternal(angle);
+        store.angAccs[index] = gravityAcceleration(environmentProvider, angle) - (environmentProvider.drag() / mass * angVel);
+    }
+
+    /**
+     * Starts this pendulum from its start state if not started yet, so that its state can be stepped in bulk
+     * */
+    void ensureStarted(@NotNull PendulumEnvironmentProvider environmentProvider) {
+        if (!store.isStarted(index)) {
+            restoreState(environmentProvider, startAngle, startAngVel);
+        }
+    }
+
+    /**
+     * Called after the state of this pendulum has been written directly into its store, ex. when restoring a {@link PendulumWaveCheckpoint}
+     * */
+    void onStateRestored(boolean started) {
+        store.setStarted(index, started);
+        updateHighlight();
+    }
+
+    /**
+     * Called when this pendulum is stepped by the {@link SphericalPendulumKernel spherical model}, with its state projected onto the XY plane
+     * */
+    void onProjectedStateChanged(float angle, float angVel) {
+        store.setStarted(index, true);
+        store.angVels[index] = angVel;
+        store.stateVersion++;
+        setAngleInternal(angle);
+    }
+
+    /**
+     * @return whether this pendulum swings freely in 3D, as per the {@link SphericalPendulumKernel spherical model}
+     * */
+    public boolean isSpherical() {
+        return store.spherical != null;
+    }
+
+    /**
+     * Steps this pendulum by the given time step using the Velocity Verlet integrator.<br>
+     * Velocity Verlet is symplectic and time-reversible, so stepping with a negative {@code dt} retraces the trajectory, as long as there is no drag.
+     *
+     * @param dt time step in seconds. Can be negative to step backwards in time
+     * */
     public Pendulum update(@NotNull PendulumEnvironmentProvider environmentProvider, float dt /* secs */) {
-        if (!mStarted) {
-            angVel = startAngVel;
-            setAngleInternal(startAngle);
-            mStarted = true;        // start
-        } else if (mPaused) {
+        if (mPaused && store.isStarted(index))
             return this;
+
+        integrate(environmentProvider, dt);
+        return this;
+    }
+
+    /**
+     * Same as {@link #update(PendulumEnvironmentProvider, float)}, but ignores the paused state
+     * */
+    void integrate(@NotNull PendulumEnvironmentProvider environmentProvider, float dt /* secs */) {
+        if (!store.isStarted(index)) {
+            restoreState(environmentProvider, startAngle, startAngVel);       // start
         }
 
-        final float acc = - ((environmentProvider.gravity() * PApplet.sin(angle) / length) + (environmentProvider.drag() / mass * angVel));
+        final PendulumStateStore s = store;
+        final int i = index;
+        final float angVel = s.angVels[i], angAcc = s.angAccs[i];
 
-        angVel += acc * dt;
-        setAngleInternal(angle + (angVel * dt));
-        return this;
+        final float dragPerMass = environmentProvider.drag() / mass;
+        final float newAngle = s.angles[i] + (angVel * dt) + (0.5f * angAcc * dt * dt);
+        final float gravityAcc = gravityAcceleration(environmentProvider, newAngle);
+
+        // Drag depends on velocity: evaluate the new acceleration with the predicted velocity
+        final float predictedAcc = gravityAcc - (dragPerMass * (angVel + angAcc * dt));
+        final float newAngVel = angVel + (0.5f * (angAcc + predictedAcc) * dt);
+        s.angVels[i] = newAngVel;
+        s.angAccs[i] = gravityAcc - (dragPerMass * newAngVel);
+        s.stateVersion++;
+
+        setAngleInternal(newAngle);
     }
 
     public Pendulum draw(@NotNull PApplet p, @NotNull PendulumStyleProvider styleProvider) {
-        p.pushMatrix();
+        ensureCurrent();
 
-        final boolean is3d = styleProvider.is3D(this);
         final Point3DF origin = styleProvider.lineDrawOrigin(this);
+        final float angle = store.angles[index];
+        final float len = store.length(index) * styleProvider.lengthScale(this);
+        final SphericalPendulumKernel spherical = store.spherical;
+        final float x, y, z;
+
+        if (spherical != null) {
+            x = len * spherical.ux[index];
+            y = len * spherical.uy[index];
+            z = len * spherical.uz[index];
+        } else {
+            x = len * PApplet.sin(angle);
+            y = len * PApplet.cos(angle);
+            z = 0;
+        }
+
+        draw(p, styleProvider, origin.x, origin.y, origin.z, angle, len, x, y, z, isHighlighted());
+        return this;
+    }
+
+    /**
+     * Draws this pendulum from its projected render vertices, written by the wave (see {@link PendulumVertexBuffer}), without any trigonometry
+     * or layout calls
+     *
+     * @param vertices vertex data
+     * @param offset offset of the vertices of this pendulum
+     * */
+    void draw(@NotNull PApplet p, @NotNull PendulumStyleProvider styleProvider, float @NotNull[] vertices, int offset) {
+        final float ox = vertices[offset + PendulumVertexBuffer.ORIGIN_X];
+        final float oy = vertices[offset + PendulumVertexBuffer.ORIGIN_Y];
+        final float oz = vertices[offset + PendulumVertexBuffer.ORIGIN_Z];
+
+        draw(p, styleProvider, ox, oy, oz,
+                vertices[offset + PendulumVertexBuffer.ANGLE],
+                vertices[offset + PendulumVertexBuffer.LENGTH],
+                vertices[offset + PendulumVertexBuffer.BOB_X] - ox,
+                vertices[offset + PendulumVertexBuffer.BOB_Y] - oy,
+                vertices[offset + PendulumVertexBuffer.BOB_Z] - oz,
+                vertices[offset + PendulumVertexBuffer.FLAGS] != 0);
+    }
 
+    /**
+     * @param len scaled length of the chord
+     * @param x, y, z position of the bob relative to the origin
+     * */
+    private void draw(@NotNull PApplet p, @NotNull PendulumStyleProvider styleProvider,
+                      float originX, float originY, float originZ, float angle, float len, float x, float y, float z, boolean highlight) {
+        p.pushMatrix();
+
+        final boolean is3d = styleProvider.is3D(this);
         if (is3d) {
-            p.translate(origin.x, origin.y, origin.z);
+            p.translate(originX, originY, originZ);
         } else {
-            p.translate(origin.x, origin.y);
+            p.translate(originX, originY);
         }
 
-        final float len = length * styleProvider.lengthScale(this);
-        final float x = len * PApplet.sin(angle), y = len * PApplet.cos(angle);
+        final SphericalPendulumKernel spherical = store.spherical;
 
         // Style
-        final boolean highlight = isHighlighted();
         PendulumDrawStyle style = null;
 
         if (highlight) {
@@ -262,7 +449,13 @@ public class Pendulum {
 
                 // Box interacts with lights, line does not
                 p.pushMatrix();
-                p.rotateZ(-angle);
+                if (spherical != null) {
+                    p.rotateY(-spherical.azimuth(index));
+                    p.rotateZ(-spherical.polarAngle(index));
+                } else {
+                    p.rotateZ(-angle);
+                }
+
                 p.translate(0, len/2, 0);       // center draw mode
                 p.box(style.lineStrokeWeight(), len, style.lineStrokeWeight());
                 p.popMatrix();
@@ -306,7 +499,7 @@ public class Pendulum {
             final float radius = styleProvider.bobRadius(this) + style.extraRadius();
 
             if (is3d) {
-                p.translate(x, y, 0);
+                p.translate(x, y, z);
 
 //                p.lights();
 //                p.noStroke();
@@ -319,7 +512,6 @@ public class Pendulum {
         }
 
         p.popMatrix();
-        return this;
     }
 
 
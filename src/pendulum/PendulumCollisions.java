@@ -0,0 +1,247 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Optional collisions between the bobs of the (planar) pendulums of a {@link PendulumWave}, see {@link PendulumWave#setCollisions(PendulumCollisions)}.<br>
+ * <br>
+ * Pendulum i hangs from {@code i * spacing} (in m), and its bob is a sphere of the {@link #setLayout(float, float, float, float) given radius}.
+ * Before every step, the wave calls {@link #resolve(PendulumStateStore, int, float)}, which
+ * <ul>
+ *     <li><strong>broad phase</strong>: rebuilds a uniform spatial hash of the bobs, with cells as wide as a bob, in O(N) with a counting sort
+ *     over the hash buckets. Only bobs in the 27 (9 if all pendulums hang in one plane) cells around a bob can touch it</li>
+ *     <li><strong>narrow phase</strong>: for each pair of overlapping bobs moving towards each other, applies an impulse along the line between
+ *     their centers. A bob can only move along its swing, so the impulse is projected on the tangent of each swing, and scaled so that the relative
+ *     normal velocity becomes {@code -restitution} times what it was: 1 -> elastic, 0 -> perfectly inelastic</li>
+ * </ul>
+ * All pendulums have the mass of the wave, so it cancels out. Impulses change angular velocities only, never angles. The spherical model is not supported.
+ * Nothing is allocated per step once buffers fit the pendulum count.
+ * */
+public final class PendulumCollisions {
+
+    public static final float RESTITUTION_ELASTIC = 1;
+    public static final float RESTITUTION_INELASTIC = 0;
+
+    public static final float DEFAULT_RESTITUTION = RESTITUTION_ELASTIC;
+
+    // Large primes of the spatial hash (Teschner et al.)
+    private static final int HASH_PRIME_X = 73856093;
+    private static final int HASH_PRIME_Y = 19349663;
+    private static final int HASH_PRIME_Z = 83492791;
+
+    private float restitution = DEFAULT_RESTITUTION;
+
+    // Layout, in m
+    private float spacingX, spacingY, spacingZ;
+    private float bobRadius;
+
+    private long collisionCount;
+
+    // Bob centers, and sine and cosine of the angles
+    private float[] posX = new float[0], posY = new float[0], posZ = new float[0], sin = new float[0], cos = new float[0];
+
+    // Spatial hash: bucket of each bob, and bobs sorted by bucket. Bucket k holds sorted[bucketStart[k], bucketStart[k + 1])
+    private int[] bucketOf = new int[0], sorted = new int[0], bucketStart = new int[1];
+
+    // Buckets visited around the current bob, to never visit a bucket twice
+    private final int[] visited = new int[27];
+
+    public float restitution() {
+        return restitution;
+    }
+
+    /**
+     * @param restitution coefficient of restitution, in range [0, 1]. 1 -> elastic, 0 -> perfectly inelastic
+     * */
+    public PendulumCollisions setRestitution(float restitution) {
+        if (!(restitution >= 0 && restitution <= 1)) {
+            throw new IllegalArgumentException("Restitution must be in range [0, 1], given: " + restitution);
+        }
+
+        this.restitution = restitution;
+        return this;
+    }
+
+    public boolean isElastic() {
+        return restitution == RESTITUTION_ELASTIC;
+    }
+
+    /**
+     * Sets where bobs are: pendulum i hangs from {@code i * spacing}, and its bob is a sphere of the given radius. All in m
+     * */
+    public PendulumCollisions setLayout(float spacingX, float spacingY, float spacingZ, float bobRadius) {
+        if (!(bobRadius >= 0)) {
+            throw new IllegalArgumentException("Bob radius must be >= 0, given: " + bobRadius);
+        }
+
+        this.spacingX = spacingX;
+        this.spacingY = spacingY;
+        this.spacingZ = spacingZ;
+        this.bobRadius = bobRadius;
+        return this;
+    }
+
+    /**
+     * @return radius of the bobs, in m
+     * */
+    public float bobRadius() {
+        return bobRadius;
+    }
+
+    /**
+     * @return number of collisions resolved since created or {@link #resetCollisionCount() reset}
+     * */
+    public long collisionCount() {
+        return collisionCount;
+    }
+
+    public PendulumCollisions resetCollisionCount() {
+        collisionCount = 0;
+        return this;
+    }
+
+    private void ensureCapacity(int count) {
+        if (posX.length >= count)
+            return;
+
+        final int capacity = Math.max(count, posX.length + (posX.length >> 1));
+        posX = new float[capacity];
+        posY = new float[capacity];
+        posZ = new float[capacity];
+        sin = new float[capacity];
+        cos = new float[capacity];
+        bucketOf = new int[capacity];
+        sorted = new int[capacity];
+    }
+
+    private static int cell(float coordinate, float invCellSize) {
+        return (int) Math.floor(coordinate * invCellSize);
+    }
+
+    private static int bucket(int cx, int cy, int cz, int mask) {
+        return ((cx * HASH_PRIME_X) ^ (cy * HASH_PRIME_Y) ^ (cz * HASH_PRIME_Z)) & mask;
+    }
+
+    /**
+     * Resolves the collisions of the first {@code count} pendulums in the given store
+     *
+     * @param dragPerMass drag coefficient per unit mass, to keep the cached angular accelerations consistent with the new angular velocities
+     * @return number of collisions resolved
+     * */
+    int resolve(@NotNull PendulumStateStore store, int count, float dragPerMass) {
+        final float r = bobRadius;
+        if (count < 2 || !(r > 0))
+            return 0;
+
+        ensureCapacity(count);
+
+        final float cellSize = 2 * r, invCellSize = 1 / cellSize, minDist2 = cellSize * cellSize;
+        final float[] angles = store.angles, angVels = store.angVels, angAccs = store.angAccs;
+        final float[] px = posX, py = posY, pz = posZ, sn = sin, cs = cos;
+
+        // Broad phase: spatial hash with at least twice as many buckets as bobs, filled with a counting sort
+        final int buckets = Integer.highestOneBit(Math.max(count * 2 - 1, 1)) << 1;
+        final int mask = buckets - 1;
+        if (bucketStart.length < buckets + 1) {
+            bucketStart = new int[buckets + 1];
+        }
+
+        final int[] start = bucketStart, bucketOf = this.bucketOf, sorted = this.sorted;
+        Arrays.fill(start, 0, buckets + 1, 0);
+
+        for (int i=0; i < count; i++) {
+            final float a = angles[i], len = store.length(i);
+            final float s = (float) Math.sin(a), c = (float) Math.cos(a);
+            sn[i] = s;
+            cs[i] = c;
+            px[i] = (i * spacingX) + (len * s);
+            py[i] = (i * spacingY) + (len * c);
+            pz[i] = i * spacingZ;
+
+            final int k = bucket(cell(px[i], invCellSize), cell(py[i], invCellSize), cell(pz[i], invCellSize), mask);
+            bucketOf[i] = k;
+            start[k]++;
+        }
+
+        for (int k=1; k < buckets; k++) {
+            start[k] += start[k - 1];       // end of bucket k
+        }
+
+        start[buckets] = count;
+        for (int i=count - 1; i >= 0; i--) {
+            sorted[--start[bucketOf[i]]] = i;        // start[k] ends up at the start of bucket k
+        }
+
+        // Narrow phase
+        final int dzMax = spacingZ != 0? 1: 0;
+        final float e = restitution;
+        int collisions = 0;
+
+        for (int i=0; i < count; i++) {
+            final int cx = cell(px[i], invCellSize), cy = cell(py[i], invCellSize), cz = cell(pz[i], invCellSize);
+            int visitedCount = 0;
+
+            for (int dx=-1; dx <= 1; dx++) {
+                for (int dy=-1; dy <= 1; dy++) {
+                    for (int dz=-dzMax; dz <= dzMax; dz++) {
+                        final int k = bucket(cx + dx, cy + dy, cz + dz, mask);
+
+                        boolean seen = false;
+                        for (int v=0; v < visitedCount; v++) {
+                            if (visited[v] == k) {
+                                seen = true;
+                                break;
+                            }
+                        }
+
+                        if (seen)
+                            continue;
+
+                        visited[visitedCount++] = k;
+
+                        for (int q=start[k], end=start[k + 1]; q < end; q++) {
+                            final int j = sorted[q];
+                            if (j <= i)
+                                continue;       // each pair once
+
+                            final float nx = px[j] - px[i], ny = py[j] - py[i], nz = pz[j] - pz[i];
+                            final float dist2 = (nx * nx) + (ny * ny) + (nz * nz);
+                            if (dist2 >= minDist2 || dist2 == 0)
+                                continue;
+
+                            // Swing tangents of both bobs, along increasing angle: (cos, -sin, 0)
+                            final float invDist = (float) (1 / Math.sqrt(dist2));
+                            final float ki = ((nx * cs[i]) - (ny * sn[i])) * invDist;
+                            final float kj = ((nx * cs[j]) - (ny * sn[j])) * invDist;
+                            final float li = store.length(i), lj = store.length(j);
+
+                            // Relative velocity along the normal, from i to j
+                            final float relVel = (lj * angVels[j] * kj) - (li * angVels[i] * ki);
+                            final float denom = (ki * ki) + (kj * kj);
+                            if (relVel >= 0 || denom < 1e-6f)
+                                continue;       // separating, or the impulse cannot move the bobs apart
+
+                            final float impulse = -(1 + e) * relVel / denom;        // per unit mass
+                            final float dwi = -impulse * ki / li, dwj = impulse * kj / lj;
+                            angVels[i] += dwi;
+                            angVels[j] += dwj;
+                            angAccs[i] -= dragPerMass * dwi;
+                            angAccs[j] -= dragPerMass * dwj;
+                            collisions++;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (collisions > 0) {
+            collisionCount += collisions;
+            store.stateVersion++;
+        }
+
+        return collisions;
+    }
+
+}
@@ -0,0 +1,63 @@
+package pendulum;
+
+/**
+ * Exact period of a simple pendulum at any amplitude.<br>
+ * <br>
+ * <strong>T = 4 sqrt(l/g) K(k),  k = sin(theta0 / 2)</strong><br>
+ * where K is the complete elliptic integral of the first kind. Compared to the small-angle period <strong>T0 = 2 pi sqrt(l/g)</strong>, this is
+ * <strong>T / T0 = 2 K(k) / pi</strong>, about 1.7% longer at 30 degrees. K is evaluated with the arithmetic-geometric mean, which converges
+ * quadratically (a handful of iterations to double precision).
+ * */
+public final class PendulumPeriod {
+
+    private PendulumPeriod() {
+    }
+
+    /**
+     * @return arithmetic-geometric mean of a and b
+     * */
+    public static double agm(double a, double b) {
+        for (int i=0; i < 32 && Math.abs(a - b) > 1e-15 * a; i++) {
+            final double an = (a + b) / 2;
+            b = Math.sqrt(a * b);
+            a = an;
+        }
+
+        return a;
+    }
+
+    /**
+     * @param k elliptic modulus, in range [0, 1)
+     * @return complete elliptic integral of the first kind K(k) = pi / (2 AGM(1, sqrt(1 - k<sup>2</sup>)))
+     * */
+    public static double ellipticK(double k) {
+        if (!(Math.abs(k) < 1)) {
+            throw new IllegalArgumentException("Elliptic modulus must be in range (-1, 1), given: " + k);
+        }
+
+        return Math.PI / (2 * agm(1, Math.sqrt(1 - (k * k))));
+    }
+
+    /**
+     * @param amplitude amplitude (in radians) of the swing, i.e. the angle it is released from rest at
+     * @return ratio of the exact period to the small-angle period, {@code >= 1}
+     * */
+    public static double periodFactor(double amplitude) {
+        final double k = Math.sin(amplitude / 2);
+        if (Math.abs(k) >= 1)
+            return Double.POSITIVE_INFINITY;        // inverted pendulum never returns
+
+        return 2 * ellipticK(k) / Math.PI;
+    }
+
+    /**
+     * @param amplitude amplitude (in radians) of the swing
+     * @return factor to scale a small-angle length by, so that the pendulum swings with the intended period at the given amplitude.
+     * Since T scales with sqrt(l), this is {@code 1 / periodFactor^2}
+     * */
+    public static double lengthFactor(double amplitude) {
+        final double f = periodFactor(amplitude);
+        return 1 / (f * f);
+    }
+
+}
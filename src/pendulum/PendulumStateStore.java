@@ -0,0 +1,361 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Structure-of-arrays storage for the dynamic state of a group of {@link Pendulum pendulums}.<br>
+ * <br>
+ * Each pendulum keeps an index into a store instead of its own fields, so the state of a whole {@link PendulumWave} lies in a few contiguous arrays
+ * which can be copied or wrapped in bulk. A pendulum created on its own gets a private store of size 1.<br>
+ * <br>
+ * Arrays may be reallocated when the store grows, so they must not be cached across a change in {@link #size()}.<br>
+ * <br>
+ * In {@link #setSharedLengths(float, float, float) compact} mode, lengths, which change rarely but are read by every step, are not stored at all.
+ * Each is derived from its index and three constants shared by all slots, <strong>base / (minOsc + i * oscStep)<sup>2</sup></strong>, with the same float
+ * arithmetic the wave calculates them with, so they are exact and cost no memory traffic. Setting a length that does not follow the shared constants
+ * switches back to stored lengths. Lengths must be accessed through {@link #length(int)}, {@link #setLength(int, float)} and the bulk accessors,
+ * never through {@link #lengths} directly.
+ * */
+final class PendulumStateStore {
+
+    private static final int MIN_CAPACITY = 8;
+
+    // angle of each pendulum off the vertical axis, in radians
+    float[] angles;
+
+    // angular velocity of each pendulum, in rad/s
+    float[] angVels;
+
+    // angular acceleration of each pendulum at its current state, in rad s-2. Cached for the Velocity Verlet integrator
+    float[] angAccs;
+
+    // length of each pendulum chord, in meters. null in compact mode
+    float[] lengths;
+
+    // Constants of the lengths in compact mode: length(i) = lengthsBase / (lengthsMinOsc + i * lengthsOscStep)^2
+    float lengthsBase, lengthsMinOsc, lengthsOscStep;
+
+    // lengths derived from the shared constants for bulk readers, valid while decodedLengthsVersion == lengthsVersion
+    private float[] decodedLengths;
+    private long decodedLengthsVersion = -1;
+
+    // Slots that have started from their start state, and slots whose pendulum is highlighted. Kept here so that bulk steps need not visit the pendulums
+    private final BitSet started = new BitSet(), highlighted = new BitSet();
+
+    // State of the spherical model, or null for the planar model. Sized independently of the planar arrays
+    SphericalPendulumKernel spherical;
+
+    private int size;
+
+    // Incremented on every change of angles or angular velocities
+    long stateVersion;
+
+    // Incremented on every change of lengths or size
+    long lengthsVersion;
+
+    // Event types (see PendulumWaveEvents) for which pendulums in this store call their listener. All for a standalone pendulum.
+    // Volatile since listeners may subscribe from any thread
+    volatile int eventMask = PendulumWaveEvents.ALL;
+
+    // Wave that evaluates pendulums outside [awakeFrom, awakeTo) lazily, bringing them up to date when queried. null -> all pendulums are awake
+    PendulumWave lazyWave;
+    int awakeFrom, awakeTo;
+
+    PendulumStateStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        angles = new float[capacity];
+        angVels = new float[capacity];
+        angAccs = new float[capacity];
+        lengths = new float[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return angles.length;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= angles.length)
+            return;
+
+        final int newCapacity = Math.max(Math.max(capacity, angles.length + (angles.length >> 1)), MIN_CAPACITY);
+        angles = Arrays.copyOf(angles, newCapacity);
+        angVels = Arrays.copyOf(angVels, newCapacity);
+        angAccs = Arrays.copyOf(angAccs, newCapacity);
+        if (lengths != null) {
+            lengths = Arrays.copyOf(lengths, newCapacity);
+        }
+    }
+
+    boolean isCompact() {
+        return lengths == null;
+    }
+
+    /**
+     * Switches to compact mode, in which the length of slot i is {@code base / (minOsc + i * oscStep)}<sup>2</sup>, and discards stored lengths
+     * */
+    void setSharedLengths(float base, float minOsc, float oscStep) {
+        if (lengths == null && base == lengthsBase && minOsc == lengthsMinOsc && oscStep == lengthsOscStep)
+            return;
+
+        lengthsBase = base;
+        lengthsMinOsc = minOsc;
+        lengthsOscStep = oscStep;
+        lengths = null;
+        lengthsVersion++;
+    }
+
+    /**
+     * Leaves compact mode, storing the lengths derived from the shared constants
+     * */
+    void storeLengths() {
+        if (lengths != null)
+            return;
+
+        final float[] l = new float[capacity()];
+        copyLengths(0, size, l, 0);
+        lengths = l;
+        decodedLengths = null;
+        decodedLengthsVersion = -1;
+    }
+
+    private float sharedLength(int index) {
+        final float osc = lengthsMinOsc + (index * lengthsOscStep);
+        return lengthsBase / (osc * osc);
+    }
+
+    /**
+     * @return length of the given slot, in meters
+     * */
+    float length(int index) {
+        final float[] l = lengths;
+        return l != null? l[index]: sharedLength(index);
+    }
+
+    /**
+     * Sets the length of the given slot. In compact mode, a length other than the shared one switches to stored lengths. Does not change {@link #lengthsVersion}
+     * */
+    void setLength(int index, float length) {
+        if (lengths == null) {
+            if (Float.floatToIntBits(length) == Float.floatToIntBits(sharedLength(index)))
+                return;
+
+            storeLengths();
+        }
+
+        lengths[index] = length;
+    }
+
+    /**
+     * @return lengths of all slots, in meters. In compact mode, a derived copy which is reused until lengths change, so it must not be written to
+     * */
+    float[] lengths() {
+        if (lengths != null)
+            return lengths;
+
+        if (decodedLengthsVersion != lengthsVersion || decodedLengths == null || decodedLengths.length < size) {
+            final float[] decoded = decodedLengths != null && decodedLengths.length >= size? decodedLengths: new float[capacity()];
+            copyLengths(0, size, decoded, 0);
+            decodedLengths = decoded;
+            decodedLengthsVersion = lengthsVersion;
+        }
+
+        return decodedLengths;
+    }
+
+    /**
+     * Copies the lengths of slots in range [from, to) into the given array, at the given offset
+     * */
+    void copyLengths(int from, int to, float @NotNull[] dst, int dstOffset) {
+        if (lengths != null) {
+            System.arraycopy(lengths, from, dst, dstOffset, to - from);
+            return;
+        }
+
+        for (int i=from; i < to; i++) {
+            dst[dstOffset++] = sharedLength(i);
+        }
+    }
+
+    /**
+     * Writes the lengths of the first {@code count} slots into the given buffer
+     * */
+    void writeLengths(@NotNull FloatBuffer dst, int count) {
+        if (lengths != null) {
+            dst.put(lengths, 0, count);
+            return;
+        }
+
+        for (int i=0; i < count; i++) {
+            dst.put(sharedLength(i));
+        }
+    }
+
+    /**
+     * Reads the lengths of the first {@code count} slots from the given buffer. Does not change {@link #lengthsVersion}
+     * */
+    void readLengths(@NotNull FloatBuffer src, int count) {
+        // In compact mode, lengths stay shared as long as the ones read follow them
+        int i = 0;
+        for (; i < count && lengths == null; i++) {
+            setLength(i, src.get());
+        }
+
+        if (i < count) {
+            src.get(lengths, i, count - i);
+        }
+    }
+
+    boolean isStarted(int index) {
+        return started.get(index);
+    }
+
+    void setStarted(int index, boolean started) {
+        this.started.set(index, started);
+    }
+
+    /**
+     * @return index of the first slot in range [from, to) that has not started, or {@code to} if all have
+     * */
+    int nextUnstarted(int from, int to) {
+        return Math.min(started.nextClearBit(from), to);
+    }
+
+    boolean isHighlighted(int index) {
+        return highlighted.get(index);
+    }
+
+    void setHighlighted(int index, boolean highlighted) {
+        this.highlighted.set(index, highlighted);
+    }
+
+    /**
+     * Updates the highlight of slots in range [from, to) from their angles, up to the first one that changes
+     *
+     * @return index of the first slot whose highlight changed, or {@code to} if none did
+     * */
+    int nextHighlightFlip(int from, int to) {
+        final float[] angles = this.angles;
+        for (int i=from; i < to; i++) {
+            final boolean h = Pendulum.shouldHighlight(angles[i], 0);
+            if (h != highlighted.get(i)) {
+                highlighted.set(i, h);
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * Appends a slot for a new pendulum
+     *
+     * @return index of the new slot
+     * */
+    int add(float length, float angle, float angVel) {
+        ensureCapacity(size + 1);
+
+        final int index = size++;
+        setLength(index, length);
+        angles[index] = angle;
+        angVels[index] = angVel;
+        angAccs[index] = 0;
+        started.clear(index);
+        highlighted.clear(index);
+
+        stateVersion++;
+        lengthsVersion++;
+        return index;
+    }
+
+    /**
+     * Steps the planar state of slots in range [from, to) by one Velocity Verlet step, in bulk. Same scheme as {@link Pendulum#integrate},
+     * but without per-pendulum calls or events, for pendulums of equal mass that have already started
+     * */
+    void stepPlanar(int from, int to, float gravity, float dragPerMass, float dt) {
+        final float halfDt = 0.5f * dt, halfDt2 = 0.5f * dt * dt;
+        final float[] angles = this.angles, angVels = this.angVels, angAccs = this.angAccs, lengths = this.lengths;
+        final float lengthsBase = this.lengthsBase, lengthsMinOsc = this.lengthsMinOsc, lengthsOscStep = this.lengthsOscStep;
+
+        for (int i=from; i < to; i++) {
+            final float angVel = angVels[i], angAcc = angAccs[i];
+            final float osc = lengthsMinOsc + (i * lengthsOscStep);
+            final float length = lengths != null? lengths[i]: lengthsBase / (osc * osc);
+            final float newAngle = angles[i] + (angVel * dt) + (angAcc * halfDt2);
+            final float gravityAcc = -(gravity * (float) Math.sin(newAngle) / length);
+
+            final float predictedAcc = gravityAcc - (dragPerMass * (angVel + angAcc * dt));
+            final float newAngVel = angVel + ((angAcc + predictedAcc) * halfDt);
+            angles[i] = newAngle;
+            angVels[i] = newAngVel;
+            angAccs[i] = gravityAcc - (dragPerMass * newAngVel);
+        }
+
+        stateVersion++;
+    }
+
+    /**
+     * Same as {@link #stepPlanar}, but also writes the render vertices of each stepped slot into the given buffer, in the same sweep and
+     * reusing the sine of the new angle
+     * */
+    void stepPlanarAndProject(int from, int to, float gravity, float dragPerMass, float dt, @NotNull PendulumVertexBuffer vertices) {
+        final float halfDt = 0.5f * dt, halfDt2 = 0.5f * dt * dt;
+        final float[] angles = this.angles, angVels = this.angVels, angAccs = this.angAccs, lengths = this.lengths;
+        final float lengthsBase = this.lengthsBase, lengthsMinOsc = this.lengthsMinOsc, lengthsOscStep = this.lengthsOscStep;
+
+        for (int i=from; i < to; i++) {
+            final float angVel = angVels[i], angAcc = angAccs[i];
+            final float osc = lengthsMinOsc + (i * lengthsOscStep);
+            final float length = lengths != null? lengths[i]: lengthsBase / (osc * osc);
+            final float newAngle = angles[i] + (angVel * dt) + (angAcc * halfDt2);
+            final float sin = (float) Math.sin(newAngle);
+            final float gravityAcc = -(gravity * sin / length);
+
+            final float predictedAcc = gravityAcc - (dragPerMass * (angVel + angAcc * dt));
+            final float newAngVel = angVel + ((angAcc + predictedAcc) * halfDt);
+            angles[i] = newAngle;
+            angVels[i] = newAngVel;
+            angAccs[i] = gravityAcc - (dragPerMass * newAngVel);
+
+            vertices.put(i, newAngle, sin, (float) Math.cos(newAngle), length);
+        }
+
+        stateVersion++;
+    }
+
+    /**
+     * Writes the render vertices of the planar state of slots in range [from, to) into the given buffer, without stepping
+     * */
+    void projectPlanar(int from, int to, @NotNull PendulumVertexBuffer vertices) {
+        final float[] angles = this.angles;
+        for (int i=from; i < to; i++) {
+            final float angle = angles[i];
+            vertices.put(i, angle, (float) Math.sin(angle), (float) Math.cos(angle), length(i));
+        }
+    }
+
+    /**
+     * Discards all slots at or beyond the given size
+     * */
+    void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException("Store size must be in range [0, " + this.size + "], given: " + size);
+        }
+
+        if (size != this.size) {
+            started.clear(size, this.size);
+            highlighted.clear(size, this.size);
+            this.size = size;
+            stateVersion++;
+            lengthsVersion++;
+        }
+    }
+
+}
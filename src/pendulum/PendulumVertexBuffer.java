@@ -0,0 +1,146 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Preallocated render vertices of the pendulums of a {@link PendulumWave}, written by the same sweep that integrates them
+ * (see {@link PendulumWave#updatePendulums(PendulumVertexBuffer)}), so the renderer needs no trigonometry or per-pendulum layout calls.<br>
+ * <br>
+ * Renderers lay pendulums out along a line: the chord of pendulum i starts at {@code origin + i * step} (in pixels), and its length is scaled by a
+ * common {@link #setLayout(float, float, float, float, float, float, float) length scale}. For each pendulum in [{@link #from()}, {@link #to()}),
+ * {@link #data()} holds {@link #STRIDE} floats at offset {@code i * STRIDE}:
+ * <ul>
+ *     <li>{@link #ORIGIN_X}, {@link #ORIGIN_Y}, {@link #ORIGIN_Z}: start of the chord</li>
+ *     <li>{@link #BOB_X}, {@link #BOB_Y}, {@link #BOB_Z}: center of the bob</li>
+ *     <li>{@link #ANGLE}: angle of the chord off the vertical, in radians</li>
+ *     <li>{@link #LENGTH}: scaled length of the chord, in pixels</li>
+ *     <li>{@link #FLAGS}: {@link #FLAG_HIGHLIGHT} if highlighted</li>
+ * </ul>
+ * Only planar pendulums are projected. The buffer is {@link #isCurrent(PendulumWave) current} until the state, count or layout changes.
+ * */
+public final class PendulumVertexBuffer {
+
+    public static final int ORIGIN_X = 0;
+    public static final int ORIGIN_Y = 1;
+    public static final int ORIGIN_Z = 2;
+    public static final int BOB_X = 3;
+    public static final int BOB_Y = 4;
+    public static final int BOB_Z = 5;
+    public static final int ANGLE = 6;
+    public static final int LENGTH = 7;
+    public static final int FLAGS = 8;
+
+    public static final int STRIDE = 9;
+
+    public static final float FLAG_HIGHLIGHT = 1;
+
+    private float[] data = new float[0];
+    private int from, to;
+
+    // Layout, in pixels
+    private float originX, originY, originZ;
+    private float stepX, stepY, stepZ;
+    private float lengthScale;
+
+    // Identity of the projected state. Layout version changes on every layout change
+    private long layoutVersion, projectedLayoutVersion = -1;
+    private long projectedStateVersion = -1;
+    private int projectedCount = -1;
+
+    /**
+     * Sets where pendulums are drawn: the chord of pendulum i starts at {@code origin + i * step}, and is {@code length * lengthScale} long
+     * */
+    public PendulumVertexBuffer setLayout(float originX, float originY, float originZ, float stepX, float stepY, float stepZ, float lengthScale) {
+        if (this.originX != originX || this.originY != originY || this.originZ != originZ
+                || this.stepX != stepX || this.stepY != stepY || this.stepZ != stepZ || this.lengthScale != lengthScale) {
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+            this.stepX = stepX;
+            this.stepY = stepY;
+            this.stepZ = stepZ;
+            this.lengthScale = lengthScale;
+            layoutVersion++;
+        }
+
+        return this;
+    }
+
+    public float lengthScale() {
+        return lengthScale;
+    }
+
+    /**
+     * @return the vertices, {@link #STRIDE} floats per pendulum. Only [{@link #from()}, {@link #to()}) are valid
+     * */
+    public float @NotNull[] data() {
+        return data;
+    }
+
+    /**
+     * @return first projected pendulum index, inclusive
+     * */
+    public int from() {
+        return from;
+    }
+
+    /**
+     * @return last projected pendulum index, exclusive
+     * */
+    public int to() {
+        return to;
+    }
+
+    public boolean isHighlighted(int index) {
+        return data[(index * STRIDE) + FLAGS] != 0;
+    }
+
+    /**
+     * @return whether the vertices match the current state of the given wave, and the current layout
+     * */
+    public boolean isCurrent(@NotNull PendulumWave wave) {
+        return projectedStateVersion == wave.stateVersion()
+                && projectedCount == wave.pendulumCount()
+                && projectedLayoutVersion == layoutVersion;
+    }
+
+    /* Projection, by the wave ..................................................................... */
+
+    void begin(int from, int to, int count) {
+        if (data.length < count * STRIDE) {
+            data = Arrays.copyOf(data, Math.max(count, (data.length / STRIDE) + (data.length / STRIDE >> 1)) * STRIDE);
+        }
+
+        this.from = from;
+        this.to = to;
+    }
+
+    void end(long stateVersion, int count) {
+        projectedStateVersion = stateVersion;
+        projectedCount = count;
+        projectedLayoutVersion = layoutVersion;
+    }
+
+    /**
+     * Writes the vertices of pendulum i, given the sine and cosine of its angle
+     * */
+    void put(int i, float angle, float sin, float cos, float length) {
+        final float[] v = data;
+        final int o = i * STRIDE;
+        final float ox = originX + (i * stepX), oy = originY + (i * stepY), oz = originZ + (i * stepZ);
+        final float len = length * lengthScale;
+
+        v[o + ORIGIN_X] = ox;
+        v[o + ORIGIN_Y] = oy;
+        v[o + ORIGIN_Z] = oz;
+        v[o + BOB_X] = ox + (len * sin);
+        v[o + BOB_Y] = oy + (len * cos);
+        v[o + BOB_Z] = oz;
+        v[o + ANGLE] = angle;
+        v[o + LENGTH] = len;
+        v[o + FLAGS] = Pendulum.shouldHighlight(angle, 0)? FLAG_HIGHLIGHT: 0;
+    }
+
+}
@@ -1,11 +1,17 @@
 package pendulum;
 
+import automation.PendulumWaveAutomation;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import processing.core.PApplet;
+import util.SimulationClock;
 import util.U;
+import util.VirtualClock;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 
@@ -27,13 +33,25 @@ import java.util.function.Consumer;
  * */
 public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Listener {
 
+    /**
+     * Subscriber of the {@link PendulumWaveEvents event bus} of a wave. Only the events in its interest mask are delivered
+     * */
     public interface Listener extends Pendulum.Listener {
 
-        void onPendulumCountChanged(@NotNull PendulumWave pendulumWave, int prevCount, int newCount);
+        default void onPendulumCountChanged(@NotNull PendulumWave pendulumWave, int prevCount, int newCount) {
+        }
 
-        void onSpeedChanged(@NotNull PendulumWave pendulumWave, float prevSpeed, float newSpeed);
-        
-        void onIsPausedChanged(@NotNull PendulumWave pendulumWave, boolean isPaused);
+        default void onSpeedChanged(@NotNull PendulumWave pendulumWave, float prevSpeed, float newSpeed) {
+        }
+
+        default void onIsPausedChanged(@NotNull PendulumWave pendulumWave, boolean isPaused) {
+        }
+
+        /**
+         * Called once after every update with everything that changed meanwhile. The frame is reused, and only valid during this call
+         * */
+        default void onPendulumWaveFrame(@NotNull PendulumWave pendulumWave, @NotNull PendulumWaveFrame frame) {
+        }
 
     }
 
@@ -98,13 +116,70 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     public static final float DEFAULT_DRAG = 0.0f;                  // drag coefficient, in kg/s. Positive -> drag, negative -> push
     private static final float DEFAULT_DRAG__STEP = 0.00002f;                  // drag coefficient step, in kg/s. Positive -> drag, negative -> push
 
+    // Bounds of the speed magnitude. Negative speed plays the simulation in reverse
     public static final float SPEED_MIN = 0.02f;
     public static final float SPEED_MAX = 50f;
     public static final float DEFAULT_SPEED = 1f;
     public static final float DEFAULT_SPEED__STEP = 0.005f;            // speed step
 
+    // Initial azimuthal velocity of spherical pendulums, as a fraction of the conical orbit velocity
+    public static final float DEFAULT_AZIMUTHAL_VELOCITY_RATIO = 0.3f;
+    public static final float AZIMUTHAL_VELOCITY_RATIO_MAX = 2f;
+
+    // Whether lengths account for the longer period of large swings. See PendulumPeriod
+    public static final boolean DEFAULT_EXACT_PERIOD_LENGTHS = true;
+
+    /**
+     * Time step (in s) used when seeking or replaying the simulation from a history checkpoint
+     * */
+    public static final float SEEK_STEP_SECS = 1 / 120f;
+
+    /**
+     * Largest time step (in s) of simulation time taken by {@link #updatePendulums()}. Longer intervals between updates are split into equal sub-steps
+     * */
+    public static final float MAX_UPDATE_STEP_SECS = 1 / 30f;
+
+    /**
+     * Largest number of sub-steps taken by one {@link #updatePendulums()}, so that the cost of a frame does not grow with the speed multiplier.
+     * Simulation time beyond {@code MAX_UPDATE_STEPS * MAX_UPDATE_STEP_SECS} per update is moved by in bulk steps, like {@link #fastForward(double)}.
+     * With clocks other than a {@link VirtualClock}, that takes at most {@link #FAST_FORWARD_MAX_PENDULUM_STEPS_PER_UPDATE} pendulum steps, and the rest is dropped
+     * */
+    public static final int MAX_UPDATE_STEPS = 64;
+
+    /**
+     * Largest time step (in s) of the 4th order integrator used to {@link #fastForward(double) fast-forward}
+     * */
+    public static final float FAST_FORWARD_STEP_SECS = 1 / 15f;
+
+    // Bounds of the fast-forward speed multiplier, beyond the normal speed range
+    public static final float FAST_FORWARD_SPEED_MIN = SPEED_MAX;
+    public static final float FAST_FORWARD_SPEED_MAX = 100_000f;
+
+    /**
+     * Largest number of pendulum steps (bulk steps times pendulums) taken by one {@link #updatePendulums() update} in fast-forward mode, so that
+     * the cost of a frame stays bounded. When a frame cannot fit the whole interval, the simulation falls behind the fast-forward speed
+     * */
+    public static final int FAST_FORWARD_MAX_PENDULUM_STEPS_PER_UPDATE = 1 << 18;
+
+    public static final boolean DEFAULT_LAZY_EVALUATION = false;
+
+    /**
+     * Pendulum count from which lengths are derived from the wave parameters instead of stored. See {@link #setCompactStorageMinPendulumCount(int)}
+     * */
+    public static final int DEFAULT_COMPACT_STORAGE_MIN_PENDULUM_COUNT = 1_000_000;
+
+    // Largest phase advance (in radians) of the fastest pendulum in one bulk 4th order step. Larger steps lose accuracy, and become unstable near 1.5
+    private static final float BULK_STEP_MAX_PHASE = 0.5f;
+
+    // Weights of Yoshida's 4th order composition of three Velocity Verlet steps: w1, w0, w1
+    private static final float YOSHIDA_W1 = (float) (1 / (2 - Math.cbrt(2)));
+    private static final float YOSHIDA_W0 = (float) (1 - (2 / (2 - Math.cbrt(2))));
+
+    /**
+     * @param speed speed multiplier. Only its magnitude is considered
+     * */
     public static float speedToPercent(float speed) {
-        return U.norm(speed, SPEED_MIN, SPEED_MAX) * 100;
+        return U.norm(Math.abs(speed), SPEED_MIN, SPEED_MAX) * 100;
     }
 
     public static float percentToSpeed(float percent) {
@@ -149,12 +224,29 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
      * */
     private float pendulumStartAngle = DEFAULT_START_ANGLE;
 
+    /**
+     * Initial azimuthal velocity of spherical pendulums, as a fraction of the velocity of the conical orbit. See {@link #setAzimuthalVelocityRatio(float, boolean)}
+     * */
+    private float azimuthalVelocityRatio = DEFAULT_AZIMUTHAL_VELOCITY_RATIO;
+
+    /**
+     * Whether pendulum lengths are calculated from the exact large-amplitude period at the start angle, or from the small-angle period.
+     * See {@link #setExactPeriodLengths(boolean, boolean)}
+     * */
+    private boolean exactPeriodLengths = DEFAULT_EXACT_PERIOD_LENGTHS;
+
     /**
      * Pendulums in the wave
      * */
     @NotNull
     private final ArrayList<Pendulum> pendulums = new ArrayList<>();
 
+    /**
+     * Structure-of-arrays state of all pendulums, indexed same as {@link #pendulums}
+     * */
+    @NotNull
+    private final PendulumStateStore store = new PendulumStateStore(DEFAULT_INITIAL_PENDULUM_COUNT);
+
     /**
      * Speed of the simulation. This is multiplied to the time step
      * */
@@ -164,17 +256,102 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     // Minimum and maximum Pendulum lengths
     private Pendulum shortestPendulum, longestPendulum;
 
-    // Last update time (in ns)
+    /**
+     * Lengths (in m) overriding the calculated ones, or {@code null} to calculate all lengths from the wave parameters
+     * */
+    @Nullable
+    private float[] mCustomLengths;
+
+    // Lengths calculated in bulk, reused across recalculations
+    private float[] mCalculatedLengths = new float[0];
+
+    /**
+     * Source of time for {@link #updatePendulums()}
+     * */
+    @NotNull
+    private SimulationClock mClock = SimulationClock.REAL_TIME;
+
+    /**
+     * Streaming statistics, updated after every step
+     * */
+    @Nullable
+    private PendulumWaveStats mStats;
+
+    // Bob collisions resolved before every planar step, or null
+    @Nullable
+    private PendulumCollisions mCollisions;
+
+    /**
+     * Snapshots for readers on other threads, created on first request
+     * */
+    @Nullable
+    private volatile PendulumWaveSnapshots mSnapshots;
+
+    /**
+     * Reactive stream of frames for pipelines on other threads, created on first request
+     * */
+    @Nullable
+    private volatile PendulumWaveFramePublisher mFramePublisher;
+
+    // Speed multiplier of the fast-forward mode, or 0 if off
+    private float mFastForwardSpeed;
+
+    // Elapsed time a pending fast-forward moves towards over the next updates, or NaN if none
+    private double mFastForwardTargetSecs = Double.NaN;
+
+    private boolean mLazyEvaluation = DEFAULT_LAZY_EVALUATION;
+
+    private int mCompactStorageMinPendulumCount = DEFAULT_COMPACT_STORAGE_MIN_PENDULUM_COUNT;
+
+    // Visibility hint: pendulums in [mVisibleFrom, mVisibleTo) are visible. -1 -> unknown
+    private int mVisibleFrom = -1, mVisibleTo = -1;
+
+    // Time (in s) up to which each pendulum outside the awake range has been stepped
+    private double[] mDormantSecs = new double[0];
+
+    // Last update time (in ns), as per the clock
     private long mLastUpdateNs = -1;
     private boolean mPaused;
 
     private double mElapsedSecs = 0;
 
+    /**
+     * State checkpoints, to seek back in time when the simulation is not time-reversible (i.e. with drag or collisions)
+     * */
+    @NotNull
+    private final PendulumWaveHistory mHistory = new PendulumWaveHistory();
+
+    // Whether to forward pendulum events to the listener. Disabled while replaying from a history checkpoint
+    private boolean mForwardPendulumEvents = true;
+
+    /**
+     * Parameter automation lanes, sampled once per physics step
+     * */
+    @Nullable
+    private PendulumWaveAutomation mAutomation;
+
+    // Whether the state is being restored from a checkpoint. Lengths are not calculated meanwhile
+    private boolean mRestoringState;
+
+    // Whether parameters are being changed by the automation. Such changes are a function of the simulation time, so they do not invalidate the history
+    private boolean mApplyingAutomation;
+
 //    private long mStartNs = -1;
 //    private long mPausedNs = -1;
 
+    @NotNull
+    private final PendulumWaveEvents mEvents = new PendulumWaveEvents(store);
+
+    // Buffer to project into during the next planar step, if any
+    @Nullable
+    private PendulumVertexBuffer mVertexTarget;
+
+    /**
+     * Bulk change event of the current update, created on first frame subscription
+     * */
     @Nullable
-    private Listener mListener;
+    private PendulumWaveFrame mFrame;
+    private boolean mFrameActive;
 
     public PendulumWave(int initialPendulumCount) {
         this.initialPendulumCount = initialPendulumCount;
@@ -190,45 +367,260 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
         return initialPendulumCount;
     }
 
-    public Listener getListener() {
-        return mListener;
+    /**
+     * @return the event bus of this wave, to subscribe listeners with interest masks
+     * */
+    @NotNull
+    public PendulumWaveEvents events() {
+        return mEvents;
+    }
+
+    /**
+     * Starts collecting a {@link PendulumWaveFrame bulk change event}, if anyone subscribed to it and none is being collected already
+     *
+     * @return whether a frame was started, and must be {@link #endFrame() ended}
+     * */
+    private boolean beginFrame() {
+        if (mFrameActive || !mEvents.hasSubscribers(PendulumWaveEvents.FRAME))
+            return false;
+
+        if (mFrame == null) {
+            mFrame = new PendulumWaveFrame();
+        }
+
+        mFrame.begin(mElapsedSecs);
+        mFrameActive = true;
+        return true;
+    }
+
+    private void endFrame() {
+        mFrameActive = false;
+
+        final PendulumWaveFrame frame = mFrame;
+        if (frame != null) {
+            frame.end(mElapsedSecs, store.stateVersion, pendulums.size());
+            mEvents.dispatchFrame(this, frame);
+        }
+    }
+
+    private boolean isCollectingFrame() {
+        return mFrameActive && mForwardPendulumEvents;
     }
 
-    public PendulumWave setListener(@Nullable Listener listener) {
-        mListener = listener;
+    @Nullable
+    public PendulumWaveAutomation getAutomation() {
+        return mAutomation;
+    }
+
+    /**
+     * @param automation parameter automation lanes to be sampled on every physics step, or {@code null} to disable automation
+     * */
+    public PendulumWave setAutomation(@Nullable PendulumWaveAutomation automation) {
+        mAutomation = automation;
+        if (automation != null) {
+            automation.invalidate();
+        }
+
         return this;
     }
 
+    public boolean isAutomationActive() {
+        return mAutomation != null && !mAutomation.isEmpty();
+    }
+
     public PendulumWave updatePendulums() {
-        if (isPaused())
+        return updatePendulums(null);
+    }
+
+    /**
+     * Updates the pendulums, and writes their render vertices into the given buffer, fused with the last integration step when possible
+     *
+     * @param vertices buffer to project the planar state into, or {@code null}. Left stale with the spherical model
+     * */
+    public PendulumWave updatePendulums(@Nullable PendulumVertexBuffer vertices) {
+        if (!Double.isNaN(mFastForwardTargetSecs)) {
+            final boolean frame = beginFrame();
+            if (fastForwardInternal(mFastForwardTargetSecs - mElapsedSecs, FAST_FORWARD_MAX_PENDULUM_STEPS_PER_UPDATE)) {
+                mFastForwardTargetSecs = Double.NaN;        // reached
+            }
+
+            mLastUpdateNs = -1;     // the time spent fast-forwarding is not played
+            publishSnapshot();
+            if (frame) {
+                endFrame();
+            }
+
+            projectIfStale(vertices);
             return this;
-        
-        final long lastNs = mLastUpdateNs;
-        if (lastNs != -1) {
-            final float dt = (System.nanoTime() - lastNs) * 1e-9f * speed;
-            mElapsedSecs += dt;
+        }
 
-            pendulums.forEach(p -> p.update(this, dt));
+        if (isPaused()) {
+            publishSnapshot();      // parameters may still change
+            projectIfStale(vertices);
+            return this;
         }
 
-        final long nowNs = System.nanoTime();
+        final long lastNs = mLastUpdateNs;
+        final long nowNs = mClock.nanoTime();
         mLastUpdateNs = nowNs;
-//        if (mStartNs == -1) {
-//            // start
-//            mStartNs = nowNs;
-//        }
+        final boolean frame = beginFrame();
+
+        if (canEvaluateLazily()) {
+            setAwakeRange(mVisibleFrom, mVisibleTo);
+        } else {
+            wakeAll();
+        }
+
+        if (lastNs != -1 && mFastForwardSpeed > 0) {
+            fastForwardInternal((nowNs - lastNs) * 1e-9 * mFastForwardSpeed * Math.signum(speed), FAST_FORWARD_MAX_PENDULUM_STEPS_PER_UPDATE);
+        } else if (lastNs != -1) {
+            double dt = (nowNs - lastNs) * 1e-9 * speed;
+
+            final double maxRegularSecs = MAX_UPDATE_STEPS * (double) MAX_UPDATE_STEP_SECS;
+            if (Math.abs(dt) > maxRegularSecs) {
+                // Sub-steps this long would be inaccurate, so move by the excess in bulk steps sized for accuracy. A virtual clock is never behind
+                fastForwardInternal(dt - Math.copySign(maxRegularSecs, dt), mClock instanceof VirtualClock? Long.MAX_VALUE: FAST_FORWARD_MAX_PENDULUM_STEPS_PER_UPDATE);
+                dt = isPaused()? 0: Math.copySign(maxRegularSecs, dt);       // paused when rewound to the start
+            }
+
+            final int steps = (int) Math.min(Math.ceil(Math.abs(dt) / MAX_UPDATE_STEP_SECS), MAX_UPDATE_STEPS);
+
+            if (steps > 1) {
+                final float subStep = (float) (dt / steps);
+                for (int i=0; i < steps; i++) {
+                    if (i == steps - 1) {
+                        mVertexTarget = vertices;       // project in the last step
+                    }
+
+                    step(subStep);
+                }
+            } else {
+                mVertexTarget = vertices;
+                step((float) dt);
+            }
+
+            mVertexTarget = null;
+        }
+
+        publishSnapshot();
+        if (frame) {
+            endFrame();
+        }
+
+        projectIfStale(vertices);
+        return this;
+    }
+
+    private void projectIfStale(@Nullable PendulumVertexBuffer vertices) {
+        if (vertices == null || store.spherical != null || vertices.isCurrent(this))
+            return;
+
+        final int count = pendulums.size();
+        final boolean lazy = store.lazyWave != null;
+        final int from = lazy? store.awakeFrom: 0;
+        final int to = lazy? store.awakeTo: count;
+
+        vertices.begin(from, to, count);
+        store.projectPlanar(from, to, vertices);
+        vertices.end(store.stateVersion, count);
+    }
+
+    private void publishSnapshot() {
+        final PendulumWaveSnapshots snapshots = mSnapshots;
+        if (snapshots != null) {
+            snapshots.publish(this);
+        }
+
+        final PendulumWaveFramePublisher frames = mFramePublisher;
+        if (frames != null) {
+            frames.publish(this);
+        }
+    }
+
+    /**
+     * @return the source of consistent snapshots of this wave for readers on other threads. Created on first call, and published to
+     * after every {@link #updatePendulums() update} from then on
+     * */
+    @NotNull
+    public PendulumWaveSnapshots snapshots() {
+        PendulumWaveSnapshots snapshots = mSnapshots;
+        if (snapshots == null) {
+            synchronized (this) {
+                snapshots = mSnapshots;
+                if (snapshots == null) {
+                    mSnapshots = snapshots = new PendulumWaveSnapshots();
+                }
+            }
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * @return the publisher of frame snapshots of this wave, as a {@link java.util.concurrent.Flow.Publisher reactive stream} with backpressure.
+     * Created on first call, and published to after every {@link #updatePendulums() update} while it has subscribers
+     * */
+    @NotNull
+    public PendulumWaveFramePublisher framePublisher() {
+        PendulumWaveFramePublisher frames = mFramePublisher;
+        if (frames == null) {
+            synchronized (this) {
+                frames = mFramePublisher;
+                if (frames == null) {
+                    mFramePublisher = frames = new PendulumWaveFramePublisher();
+                }
+            }
+        }
+
+        return frames;
+    }
+
+    @NotNull
+    public SimulationClock getClock() {
+        return mClock;
+    }
+
+    /**
+     * Sets the source of time for {@link #updatePendulums()}, ex. a {@link util.VirtualClock} to run headless faster than real time
+     * */
+    public PendulumWave setClock(@NotNull SimulationClock clock) {
+        if (mClock != clock) {
+            mClock = clock;
+            mLastUpdateNs = -1;     // invalidate, readings of different clocks are not comparable
+        }
 
         return this;
     }
 
     public PendulumWave drawPendulums(@NotNull PApplet p, @NotNull PendulumStyleProvider styleProvider) {
-        for (int i = pendulums.size() - 1; i >= 0; i--) {
+        // Pendulums outside the awake range are not visible, and drawing them would bring them up to date
+        final boolean lazy = store.lazyWave != null;
+        final int from = lazy? store.awakeFrom: 0;
+        final int to = lazy? store.awakeTo: pendulums.size();
+
+        for (int i = to - 1; i >= from; i--) {
             pendulums.get(i).draw(p, styleProvider);
         }
 
         return this;
     }
 
+    /**
+     * Draws the pendulums from their projected vertices, without recomputing their layout. Falls back to
+     * {@link #drawPendulums(PApplet, PendulumStyleProvider)} if the vertices are not {@link PendulumVertexBuffer#isCurrent(PendulumWave) current}
+     * */
+    public PendulumWave drawPendulums(@NotNull PApplet p, @NotNull PendulumStyleProvider styleProvider, @NotNull PendulumVertexBuffer vertices) {
+        if (store.spherical != null || !vertices.isCurrent(this))
+            return drawPendulums(p, styleProvider);
+
+        final float[] data = vertices.data();
+        for (int i = vertices.to() - 1; i >= vertices.from(); i--) {
+            pendulums.get(i).draw(p, styleProvider, data, i * PendulumVertexBuffer.STRIDE);
+        }
+
+        return this;
+    }
+
 
 
 
@@ -237,7 +629,7 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     /**
      * @return time stamp of the last call to {@link #updatePendulums()}, in nanoseconds or {@code -1}
      *
-     * @see System#nanoTime()
+     * @see #getClock()
      * */
     public long getLastUpdateNanoTime() {
         return mLastUpdateNs;
@@ -264,75 +656,625 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
         return mElapsedSecs;
     }
 
-    @Nullable
-    public Pendulum getShortestPendulum() {
-        return shortestPendulum;
+    /**
+     * The Velocity Verlet integrator retraces its trajectory when stepped backwards, but only in the absence of drag and of collisions,
+     * which are resolved only while playing forward.
+     *
+     * @return whether the simulation can be stepped backwards directly, without replaying from history checkpoints
+     * */
+    public boolean isTimeReversible() {
+        return drag == 0 && mCollisions == null;
     }
 
-    @Nullable
-    public Pendulum getLongestPendulum() {
-        return longestPendulum;
+    /**
+     * @return the time span (in s) over which the simulation can be rewound when it is not {@link #isTimeReversible() time-reversible}
+     * */
+    public double getRewindableSeconds() {
+        return isTimeReversible()? mElapsedSecs: mElapsedSecs - (mHistory.isEmpty()? mElapsedSecs: mHistory.timeAt(0));
     }
 
-    private float calculatePendulumLength(int i) {
-        return U.sq(internalWavePeriod / (2 * ((float) Math.PI) * (minOscillationsInWavePeriod + i * oscillationsStepPerPendulum))) * gravity;
-    }
+    private void applyAutomation() {
+        final PendulumWaveAutomation automation = mAutomation;
+        if (automation == null || automation.isEmpty())
+            return;
 
-    private void updatePendulumsLength(boolean calculateAndSet) {
-        Pendulum shortest = null, longest = null;
+        mApplyingAutomation = true;
+        try {
+            automation.apply(this, mElapsedSecs);
+        } finally {
+            mApplyingAutomation = false;
+        }
+    }
 
-        for (int i=0; i < pendulums.size(); i++) {
-            final Pendulum p = pendulums.get(i);
-            final float len;
+    private void invalidateHistory() {
+        if (!mApplyingAutomation) {
+            mHistory.clear();
+        }
+    }
 
-            if (calculateAndSet) {
-                len = calculatePendulumLength(i);
-                p.setLength(len);
-            } else {
-                len = p.getLength();
-            }
+    private void stepPendulums(float dt) {
+        applyAutomation();
 
-            if (i == 0) {
-                shortest = longest = p;
-            } else if (len < shortest.getLength()) {
-                shortest = p;
-            } else if (len > longest.getLength()) {
-                longest = p;
-            }
+        final int count = pendulums.size();
+        final double startSecs = mElapsedSecs;
+        final boolean collect = isCollectingFrame();
+        if (collect) {
+            mFrame.beforeStep(store, count);
         }
 
-        shortestPendulum = shortest;
-        longestPendulum = longest;
-    }
-
-    private void updatePendulumsLength() {
-        updatePendulumsLength(true);
-    }
+        final SphericalPendulumKernel spherical = store.spherical;
+        if (spherical != null) {
+            spherical.step(0, count, store.lengths(), gravity, drag / pendulumMass, dt);
 
-    private void updatePendulumsMass() {
-        pendulums.forEach(p -> p.setMass(pendulumMass));
-    }
+            for (int i=0; i < count; i++) {
+                pendulums.get(i).onProjectedStateChanged(spherical.projectedAngle(i), spherical.projectedAngularVelocity(i));
+            }
+        } else {
+            final boolean lazy = store.lazyWave != null;
+            final int from = lazy? store.awakeFrom: 0;
+            final int to = lazy? store.awakeTo: count;
+            final PendulumVertexBuffer vertices = mVertexTarget;
+            mVertexTarget = null;
+
+            if (mCollisions != null && dt > 0) {
+                mCollisions.resolve(store, count, drag / pendulumMass);
+            }
 
-    private void updatePendulumsStartAngle() {
-        pendulums.forEach(p -> p.setStartAngle(pendulumStartAngle));
-    }
+            if ((store.eventMask & PendulumWaveEvents.ANGLE) == 0) {
+                // No one needs per-pendulum angle events: step in bulk, and project in the same sweep if asked to
+                ensureStarted(from, to);
 
+                final float dragPerMass = drag / pendulumMass;
+                if (vertices != null) {
+                    vertices.begin(from, to, count);
+                    store.stepPlanarAndProject(from, to, gravity, dragPerMass, dt, vertices);
+                } else {
+                    store.stepPlanar(from, to, gravity, dragPerMass, dt);
+                }
 
-    private void onPendulumMassChanged(float prev, float mass, boolean resetPendulumsState) {
-        updatePendulumsMass();
+                dispatchHighlightFlips(from, to);
 
-        if (resetPendulumsState) {
-            resetPendulumsState();
+                if (vertices != null) {
+                    vertices.end(store.stateVersion, count);
+                }
+            } else {
+                for (int i=from; i < to; i++) {
+                    pendulums.get(i).integrate(this, dt);
+                }
+            }
         }
-    }
 
-    public float getPendulumMass() {
-        return pendulumMass;
-    }
+        mElapsedSecs += dt;
+        if (collect) {
+            mFrame.afterStep(store, count, startSecs, dt);
+        }
 
-    public PendulumWave setPendulumMass(float pendulumMass, boolean resetPendulumsState) {
-        if (pendulumMass <= 0) {
-            throw new IllegalArgumentException("Pendulum mass should be > 0, given: " + pendulumMass);
+        if (mStats != null) {
+            mStats.onStep(this);
+        }
+    }
+
+    /**
+     * Steps the simulation by the given time. Negative time steps move the simulation backwards
+     * */
+    private void step(float dt) {
+        if (dt == 0)
+            return;
+
+        if (dt > 0) {
+            if (!isSpherical() && store.lazyWave == null) {
+                mHistory.recordIfDue(this, mElapsedSecs);       // Checkpoints only hold the planar state, and would catch up dormant pendulums
+            }
+
+            stepPendulums(dt);
+        } else if (isTimeReversible()) {
+            if (mElapsedSecs + dt <= 0) {
+                onRewoundToStart();
+            } else {
+                stepPendulums(dt);
+                mHistory.discardAfter(mElapsedSecs);
+            }
+        } else {
+            replayTo(Math.max(mElapsedSecs + dt, 0));
+        }
+    }
+
+    /**
+     * Restores the latest history checkpoint before the given time, and steps forward from there without forwarding any pendulum events.
+     * Without any checkpoint, ex. right after a parameter change cleared the history, the current state is kept and the simulation is paused
+     * */
+    private void replayTo(double targetSecs) {
+        wakeAll();
+        final int index = mHistory.latestAtOrBefore(targetSecs);
+        if (index == -1) {
+            if (!mHistory.isEmpty()) {
+                // History exhausted: stop at the oldest checkpoint
+                mElapsedSecs = mHistory.restore(0, this);
+            }
+
+            setPause(true);
+            return;
+        }
+
+        mForwardPendulumEvents = false;
+        try {
+            mElapsedSecs = mHistory.restore(index, this);
+            if (mAutomation != null) {
+                mAutomation.invalidate();       // time jumped
+            }
+
+            while (mElapsedSecs < targetSecs) {
+                stepPendulums((float) Math.min(SEEK_STEP_SECS, targetSecs - mElapsedSecs));
+            }
+        } finally {
+            mForwardPendulumEvents = true;
+        }
+
+        mHistory.discardAfter(mElapsedSecs);
+    }
+
+    private void onRewoundToStart() {
+        resetPendulumsState();
+        setPause(true);
+    }
+
+    /**
+     * Moves the simulation to the given elapsed time, forward or backward, independent of the current speed.
+     *
+     * @param targetSecs target elapsed time, in seconds. Clamped to 0
+     * */
+    public PendulumWave seekTo(double targetSecs) {
+        targetSecs = Math.max(targetSecs, 0);
+        mFastForwardTargetSecs = Double.NaN;
+        final boolean frame = beginFrame();
+        wakeAll();
+
+        if (targetSecs < mElapsedSecs && !isTimeReversible()) {
+            replayTo(targetSecs);
+        } else {
+            double remaining;
+            while (Math.abs(remaining = targetSecs - mElapsedSecs) > 1e-6) {
+                step((float) (remaining > 0? Math.min(remaining, SEEK_STEP_SECS): Math.max(remaining, -SEEK_STEP_SECS)));
+            }
+        }
+
+        mLastUpdateNs = -1;     // invalidate
+        publishSnapshot();
+        if (frame) {
+            endFrame();
+        }
+
+        return this;
+    }
+
+    /**
+     * Moves the simulation forward by the given time as fast as possible, with large bulk time steps, 4th order accurate without drag.
+     * Pendulum events are not forwarded meanwhile, so this is much faster than {@link #seekBy(double) seeking}, but skips per-pendulum callbacks.
+     *
+     * @param secs time to move forward by, in seconds. Must be finite and >= 0
+     * @see #startFastForward(double)
+     * */
+    public PendulumWave fastForward(double secs) {
+        if (!(secs >= 0 && secs < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Fast-forward time must be finite and >= 0, given: " + secs);
+        }
+
+        mFastForwardTargetSecs = Double.NaN;
+        final boolean frame = beginFrame();
+        fastForwardInternal(secs, Long.MAX_VALUE);
+        mLastUpdateNs = -1;     // invalidate
+        publishSnapshot();
+        if (frame) {
+            endFrame();
+        }
+
+        return this;
+    }
+
+    /**
+     * Like {@link #fastForward(double)}, but spreads the work over the next {@link #updatePendulums() updates}, each taking at most
+     * {@link #FAST_FORWARD_MAX_PENDULUM_STEPS_PER_UPDATE} pendulum steps, so that a long fast-forward does not block the updating thread.
+     * Updates move only towards the target meanwhile, even when paused. Replaces a pending fast-forward
+     *
+     * @param secs time to move forward by, in seconds. Must be finite and >= 0
+     * @see #isFastForwardPending()
+     * */
+    public PendulumWave startFastForward(double secs) {
+        if (!(secs >= 0 && secs < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Fast-forward time must be finite and >= 0, given: " + secs);
+        }
+
+        mFastForwardTargetSecs = secs > 0? mElapsedSecs + secs: Double.NaN;
+        return this;
+    }
+
+    /**
+     * @return whether a fast-forward {@link #startFastForward(double) started} earlier is still moving towards its target
+     * */
+    public boolean isFastForwardPending() {
+        return !Double.isNaN(mFastForwardTargetSecs);
+    }
+
+    public PendulumWave cancelFastForward() {
+        mFastForwardTargetSecs = Double.NaN;
+        return this;
+    }
+
+    /**
+     * Steps all pendulums in bulk with large {@link #bulkStep(int, int, float, float) bulk steps}, forward or backward.
+     * Backwards, the simulation is stepped directly only if {@link #isTimeReversible() time-reversible}, and replayed from history otherwise.
+     * The spherical model falls back to regular steps
+     *
+     * @param secs time to move by, in seconds. Negative to rewind
+     * @param maxPendulumSteps largest number of pendulum steps to take. The time moved by is shortened to fit
+     * @return whether the whole time was moved by
+     * */
+    private boolean fastForwardInternal(double secs, long maxPendulumSteps) {
+        if (secs == 0)
+            return true;
+
+        if (secs < 0) {
+            if (!isTimeReversible()) {
+                replayTo(Math.max(mElapsedSecs + secs, 0));       // at most one checkpoint interval of regular steps
+                return true;
+            }
+
+            if (mElapsedSecs + secs <= 0) {
+                onRewoundToStart();
+                return true;
+            }
+        }
+
+        wakeAll();
+        final int count = pendulums.size();
+        final int maxSteps = (int) Math.max(Math.min(maxPendulumSteps / Math.max(count, 1), Integer.MAX_VALUE), 1);
+
+        if (isSpherical()) {
+            final double maxSecs = maxSteps * (double) SEEK_STEP_SECS;
+            final double endSecs = mElapsedSecs + Math.copySign(Math.min(Math.abs(secs), maxSecs), secs);
+            double remaining;
+            while (Math.abs(remaining = endSecs - mElapsedSecs) > 1e-6) {
+                step((float) (remaining > 0? Math.min(remaining, SEEK_STEP_SECS): Math.max(remaining, -SEEK_STEP_SECS)));
+            }
+
+            return Math.abs(secs) <= maxSecs;
+        }
+
+        ensureStarted(0, count);
+
+        int steps = bulkStepCount(Math.abs(secs), 0, count);
+        final boolean whole = steps <= maxSteps;
+        if (!whole) {
+            secs *= (double) maxSteps / steps;
+            steps = maxSteps;
+        }
+
+        final float dt = (float) (secs / steps);
+        final double endSecs = mElapsedSecs + secs;
+
+        for (int s=0; s < steps; s++) {
+            if (dt > 0) {
+                mHistory.recordIfDue(this, mElapsedSecs);
+            }
+
+            applyAutomation();
+
+            final boolean collect = isCollectingFrame();
+            if (collect) {
+                mFrame.beforeStep(store, count);
+            }
+
+            final float dragPerMass = drag / pendulumMass;
+            if (mCollisions != null && dt > 0) {
+                mCollisions.resolve(store, count, dragPerMass);
+            }
+
+            bulkStep(0, count, dragPerMass, dt);
+            if (collect) {
+                mFrame.afterStep(store, count, mElapsedSecs, dt);
+            }
+
+            mElapsedSecs += dt;
+
+            if (mStats != null) {
+                mStats.onStep(this);
+            }
+        }
+
+        mElapsedSecs = endSecs;     // no accumulated rounding
+        if (dt < 0) {
+            mHistory.discardAfter(mElapsedSecs);
+        }
+
+        dispatchHighlightFlips(0, count);
+        return whole;
+    }
+
+    /**
+     * Starts pendulums in range [from, to) that have not started yet, so that their state can be stepped in bulk. Visits only those pendulums
+     * */
+    private void ensureStarted(int from, int to) {
+        for (int i = store.nextUnstarted(from, to); i < to; i = store.nextUnstarted(i + 1, to)) {
+            pendulums.get(i).ensureStarted(this);
+        }
+    }
+
+    /**
+     * Updates the highlight of pendulums in range [from, to) after a bulk step, in the store. Visits only pendulums whose highlight changed
+     * */
+    private void dispatchHighlightFlips(int from, int to) {
+        for (int i = store.nextHighlightFlip(from, to); i < to; i = store.nextHighlightFlip(i + 1, to)) {
+            pendulums.get(i).onHighlightChanged(store.isHighlighted(i));
+        }
+    }
+
+    /**
+     * Steps pendulums in range [from, to) by one bulk step. Without drag, this is Yoshida's composition of three Velocity Verlet steps, which is 4th order
+     * accurate and symplectic, so it stays stable and in phase with steps much larger than {@link #MAX_UPDATE_STEP_SECS}.
+     * The composition relies on a time-symmetric base step, which drag breaks, so with drag it is a plain Velocity Verlet step
+     * */
+    private void bulkStep(int from, int to, float dragPerMass, float dt) {
+        if (dragPerMass != 0) {
+            store.stepPlanar(from, to, gravity, dragPerMass, dt);
+        } else {
+            store.stepPlanar(from, to, gravity, 0, YOSHIDA_W1 * dt);
+            store.stepPlanar(from, to, gravity, 0, YOSHIDA_W0 * dt);
+            store.stepPlanar(from, to, gravity, 0, YOSHIDA_W1 * dt);
+        }
+    }
+
+    /**
+     * @return number of equal {@link #bulkStep(int, int, float, float) bulk steps} to move pendulums in range [from, to) forward by the given time: steps of at most
+     * {@link #FAST_FORWARD_STEP_SECS} ({@link #MAX_UPDATE_STEP_SECS} with drag), and short enough for the fastest (shortest) pendulum to stay accurate
+     * */
+    private int bulkStepCount(double secs, int from, int to) {
+        float minLength = Float.POSITIVE_INFINITY;
+        for (int i=from; i < to; i++) {
+            minLength = Math.min(minLength, store.length(i));
+        }
+
+        return bulkStepCount(secs, minLength);
+    }
+
+    private int bulkStepCount(double secs, float minLength) {
+        final double maxAngFreq = minLength > 0? Math.sqrt(Math.abs(gravity) / minLength): 0;
+        final float stepSecs = drag != 0? MAX_UPDATE_STEP_SECS: FAST_FORWARD_STEP_SECS;
+        final double maxStep = maxAngFreq > 0? Math.min(stepSecs, BULK_STEP_MAX_PHASE / maxAngFreq): stepSecs;
+        return Math.max((int) Math.ceil(secs / maxStep), 1);
+    }
+
+    @Nullable
+    public PendulumWaveStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * @param stats statistics to update after every step, or {@code null} to stop collecting statistics
+     * */
+    public PendulumWave setStats(@Nullable PendulumWaveStats stats) {
+        if (mStats != stats) {
+            mStats = stats;
+            if (stats != null) {
+                stats.reset();
+            }
+        }
+
+        return this;
+    }
+
+    @Nullable
+    public PendulumCollisions getCollisions() {
+        return mCollisions;
+    }
+
+    /**
+     * @param collisions bob collisions to resolve before every step, or {@code null} to let bobs pass through each other.
+     *                   Only with the planar model, and only while playing forward, so with collisions the simulation is rewound by replaying from history
+     * */
+    public PendulumWave setCollisions(@Nullable PendulumCollisions collisions) {
+        if (mCollisions != collisions) {
+            mCollisions = collisions;
+            invalidateHistory();        // Checkpoints are replayed with the collisions in effect
+        }
+
+        return this;
+    }
+
+    public boolean isFastForwarding() {
+        return mFastForwardSpeed > 0;
+    }
+
+    public float getFastForwardSpeed() {
+        return mFastForwardSpeed;
+    }
+
+    /**
+     * Sets the speed multiplier of the fast-forward mode, in which {@link #updatePendulums()} moves the simulation forward with {@link #fastForward(double)}
+     * instead of regular steps, so that only every Nth state is rendered. Plays backwards when the {@link #getSpeed() speed} is negative.
+     * Each update takes at most {@link #FAST_FORWARD_MAX_PENDULUM_STEPS_PER_UPDATE} pendulum steps
+     *
+     * @param speed speed multiplier in range [{@link #FAST_FORWARD_SPEED_MIN}, {@link #FAST_FORWARD_SPEED_MAX}], or 0 to turn fast-forward off
+     * */
+    public PendulumWave setFastForwardSpeed(float speed) {
+        if (speed != 0 && !(speed >= FAST_FORWARD_SPEED_MIN && speed <= FAST_FORWARD_SPEED_MAX)) {
+            throw new IllegalArgumentException("Fast-forward speed must be 0 or in range [" + FAST_FORWARD_SPEED_MIN + ", " + FAST_FORWARD_SPEED_MAX + "], given: " + speed);
+        }
+
+        mFastForwardSpeed = speed;
+        return this;
+    }
+
+    /**
+     * @param deltaSecs time to move the simulation by, in seconds. Negative to rewind
+     * @see #seekTo(double)
+     * */
+    public PendulumWave seekBy(double deltaSecs) {
+        return seekTo(mElapsedSecs + deltaSecs);
+    }
+
+    @Nullable
+    public Pendulum getShortestPendulum() {
+        return shortestPendulum;
+    }
+
+    @Nullable
+    public Pendulum getLongestPendulum() {
+        return longestPendulum;
+    }
+
+    /**
+     * Calculates the lengths of the first {@code count} pendulums into the given array in one pass.<br>
+     * Pendulum i completes (minOscillations + i * oscillationsStep) oscillations in the internal wave period, so its small-angle length is
+     * <strong>g (T / (2 pi n<sub>i</sub>))<sup>2</sup></strong>. In exact mode, this is scaled by the same {@link PendulumPeriod#lengthFactor(double) factor}
+     * for all pendulums, since they share the start angle
+     * */
+    private void calculatePendulumLengths(float @NotNull[] dst, int count) {
+        final float base = pendulumLengthBase();
+        final float minOsc = minOscillationsInWavePeriod, oscStep = oscillationsStepPerPendulum;
+
+        for (int i=0; i < count; i++) {
+            final float osc = minOsc + (i * oscStep);
+            dst[i] = base / (osc * osc);
+        }
+
+        final float[] custom = mCustomLengths;
+        if (custom != null) {
+            System.arraycopy(custom, 0, dst, 0, Math.min(custom.length, count));
+        }
+    }
+
+    /**
+     * @return numerator shared by the calculated lengths of all pendulums: the length of pendulum i is <strong>base / (minOscillations + i * oscillationsStep)<sup>2</sup></strong>
+     * */
+    private float pendulumLengthBase() {
+        final double lengthFactor = exactPeriodLengths? PendulumPeriod.lengthFactor(pendulumStartAngle): 1;
+        return (float) (gravity * lengthFactor * U.sq(internalWavePeriod / (2 * (float) Math.PI)));
+    }
+
+    private boolean shouldShareLengths(int count) {
+        return count >= mCompactStorageMinPendulumCount && mCustomLengths == null;
+    }
+
+    private void updatePendulumsLength(boolean calculateAndSet) {
+        if (calculateAndSet && mRestoringState)
+            return;     // lengths are restored in bulk
+
+        if (calculateAndSet) {
+            invalidateHistory();       // Checkpoints are only valid for the lengths they were recorded with
+        }
+
+        Pendulum shortest = null, longest = null;
+        final int count = pendulums.size();
+        final boolean shared = calculateAndSet && shouldShareLengths(count);
+        final boolean notifyShared = shared && (store.eventMask & PendulumWaveEvents.LENGTH) != 0;
+
+        if (calculateAndSet) {
+            if ((!shared || notifyShared) && mCalculatedLengths.length < count) {
+                mCalculatedLengths = new float[count];
+            }
+
+            if (shared) {
+                if (notifyShared) {
+                    store.copyLengths(0, count, mCalculatedLengths, 0);     // previous lengths, for listeners
+                }
+
+                store.setSharedLengths(pendulumLengthBase(), minOscillationsInWavePeriod, oscillationsStepPerPendulum);
+            } else {
+                store.storeLengths();
+                calculatePendulumLengths(mCalculatedLengths, count);
+            }
+        }
+
+        for (int i=0; i < count; i++) {
+            final Pendulum p = pendulums.get(i);
+            final float len;
+
+            if (shared) {
+                len = store.length(i);
+                if (notifyShared && mCalculatedLengths[i] != len) {
+                    p.onLengthChanged(mCalculatedLengths[i], len);
+                }
+            } else if (calculateAndSet) {
+                len = mCalculatedLengths[i];
+                p.setLength(len);
+            } else {
+                len = p.getLength();
+            }
+
+            if (i == 0) {
+                shortest = longest = p;
+            } else if (len < shortest.getLength()) {
+                shortest = p;
+            } else if (len > longest.getLength()) {
+                longest = p;
+            }
+        }
+
+        shortestPendulum = shortest;
+        longestPendulum = longest;
+    }
+
+    private void updatePendulumsLength() {
+        updatePendulumsLength(true);
+    }
+
+    public boolean hasCustomPendulumLengths() {
+        return mCustomLengths != null;
+    }
+
+    /**
+     * Overrides the lengths calculated from the wave parameters, ex. with lengths found by a {@link design.PendulumWaveDesigner}.
+     * Pendulums beyond the given lengths still use calculated lengths.
+     *
+     * @param lengths lengths of the pendulums (in m), each must be > 0. {@code null} to calculate all lengths from the wave parameters
+     * @param resetPendulumsState true to reset all pendulums
+     * */
+    public PendulumWave setCustomPendulumLengths(@Nullable float[] lengths, boolean resetPendulumsState) {
+        if (lengths != null) {
+            for (float len: lengths) {
+                if (!(len > 0)) {
+                    throw new IllegalArgumentException("Pendulum lengths must be > 0, given: " + len);
+                }
+            }
+
+            lengths = lengths.clone();
+        }
+
+        mCustomLengths = lengths;
+        updatePendulumsLength();
+
+        if (resetPendulumsState) {
+            resetPendulumsState();
+        }
+
+        return this;
+    }
+
+    private void updatePendulumsMass() {
+        pendulums.forEach(p -> p.setMass(pendulumMass));
+    }
+
+    private void updatePendulumsStartAngle() {
+        pendulums.forEach(p -> p.setStartAngle(pendulumStartAngle));
+    }
+
+
+    private void onPendulumMassChanged(float prev, float mass, boolean resetPendulumsState) {
+        updatePendulumsMass();
+        invalidateHistory();
+
+        if (resetPendulumsState) {
+            resetPendulumsState();
+        }
+    }
+
+    public float getPendulumMass() {
+        return pendulumMass;
+    }
+
+    public PendulumWave setPendulumMass(float pendulumMass, boolean resetPendulumsState) {
+        if (pendulumMass <= 0) {
+            throw new IllegalArgumentException("Pendulum mass should be > 0, given: " + pendulumMass);
         }
 
         if (this.pendulumMass == pendulumMass)
@@ -356,6 +1298,10 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     private void onPendulumStartAngleChanged(float prev, float startAngle, boolean resetPendulumsState) {
         updatePendulumsStartAngle();
 
+        if (exactPeriodLengths) {
+            updatePendulumsLength();        // the period depends on the amplitude
+        }
+
         if (resetPendulumsState) {
             resetPendulumsState();
         }
@@ -410,6 +1356,8 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     }
 
     private void onDragChanged(float prev, float drag, boolean resetPendulumsState) {
+        invalidateHistory();
+
         if (resetPendulumsState) {
             resetPendulumsState();
         }
@@ -605,11 +1553,12 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
 
 
     private void onSpeedChanged(float prevSpeed, float newSpeed) {
-        if (mListener != null) {
-            mListener.onSpeedChanged(this, prevSpeed, newSpeed);
-        }
+        mEvents.dispatchSpeedChanged(this, prevSpeed, newSpeed);
     }
 
+    /**
+     * @return speed multiplier of the simulation. Negative if the simulation is playing in reverse
+     * */
     public float getSpeed() {
         return speed;
     }
@@ -619,11 +1568,11 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     }
 
     /**
-     * @param speed speed to set
+     * @param speed speed to set. Its magnitude is constrained to [{@link #SPEED_MIN}, {@link #SPEED_MAX}], and a negative value plays the simulation in reverse
      * @return the new speed, which may be different from the requested speed
      * */
     public float setSpeed(float speed) {
-        speed = U.constrain(speed, SPEED_MIN, SPEED_MAX);
+        speed = Math.copySign(U.constrain(Math.abs(speed), SPEED_MIN, SPEED_MAX), speed);
         if (this.speed == speed)
             return speed;
 
@@ -634,19 +1583,43 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     }
 
     /**
-     * @param percent percentage of speed, from 0-100%
+     * @param percent percentage of speed, from 0-100%. The current direction is preserved
      * @return the new speed percentage, which may be different from the requested speed percent
      * */
     public float setSpeedPercent(float percent) {
-        setSpeed(percentToSpeed(percent));
+        setSpeed(Math.copySign(percentToSpeed(percent), speed));
         return getSpeedPercent();
     }
 
+    /**
+     * Steps the magnitude of the speed, preserving the current direction
+     * */
     public PendulumWave stepSpeed(boolean inc) {
-        setSpeed(getSpeed() + (inc? 1: -1) * DEFAULT_SPEED__STEP);
+        setSpeed(Math.copySign(Math.abs(getSpeed()) + (inc? 1: -1) * DEFAULT_SPEED__STEP, speed));
+        return this;
+    }
+
+    public boolean isReversed() {
+        return speed < 0;
+    }
+
+    /**
+     * Sets the direction of the simulation.
+     *
+     * @param reversed true to play the simulation backwards in time
+     * */
+    public PendulumWave setReversed(boolean reversed) {
+        if (isReversed() != reversed) {
+            setSpeed(-speed);
+        }
+
         return this;
     }
 
+    public PendulumWave toggleReversed() {
+        return setReversed(!isReversed());
+    }
+
     
     private void onIsPausedChanged(boolean isPaused) {
         mLastUpdateNs = -1;     // Invalidate
@@ -662,9 +1635,7 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
 //            mPausedNs = -1;
 //        }
         
-        if (mListener != null) {
-            mListener.onIsPausedChanged(this, isPaused);
-        }
+        mEvents.dispatchPausedChanged(this, isPaused);
     }
 
     public boolean isPaused() {
@@ -687,14 +1658,73 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     
     
     private void onPendulumsStateReset() {
+        store.lazyWave = null;      // all pendulums restarted together
+
+        if (store.spherical != null) {
+            resetSphericalState(0, pendulums.size());
+        }
+
         mLastUpdateNs = -1;         // invalidate, very imp
         mElapsedSecs = 0;           // reset elapsed secs
+        mHistory.clear();
+
+        if (mAutomation != null) {
+            mAutomation.invalidate();
+        }
 
 //        mStartNs = -1;
 //        mPausedNs = -1;
     }
 
+    /**
+     * Called before a {@link PendulumWaveCheckpoint} sets the parameters and writes the state of all pendulums directly into the store
+     * */
+    void onStateRestoreStarted() {
+        mRestoringState = true;
+    }
+
+    /**
+     * Called while restoring a {@link PendulumWaveCheckpoint}, once the parameters are set and before lengths are read into the store.
+     * Read lengths that follow the wave parameters then stay {@link #isCompactStorage() shared}
+     * */
+    void onLengthsRestoreStarted() {
+        if (shouldShareLengths(pendulums.size())) {
+            store.setSharedLengths(pendulumLengthBase(), minOscillationsInWavePeriod, oscillationsStepPerPendulum);
+        }
+    }
+
+    /**
+     * Called when restoring a {@link PendulumWaveCheckpoint} fails midway. Recalculates lengths and resets all pendulums
+     * */
+    void onStateRestoreFailed() {
+        mRestoringState = false;
+        updatePendulumsLength();
+        resetPendulumsState();
+    }
+
+    /**
+     * Called after the state of all pendulums has been written directly into the store, ex. when restoring a {@link PendulumWaveCheckpoint}
+     * */
+    void onStateRestored(double elapsedSecs, boolean started) {
+        mRestoringState = false;
+        store.stateVersion++;
+        store.lengthsVersion++;
+
+        for (Pendulum p: pendulums) {
+            p.onStateRestored(started);
+        }
+
+        updatePendulumsLength(false);
+        onPendulumsStateReset();
+        mElapsedSecs = elapsedSecs;
+
+        if (store.spherical != null) {
+            store.spherical.setFromPlanar(0, pendulums.size(), store.angles, store.angVels, store.lengths(), gravity, drag / pendulumMass);
+        }
+    }
+
     public PendulumWave resetPendulumsState() {
+        mFastForwardTargetSecs = Double.NaN;
         pendulums.forEach(Pendulum::resetState);
         onPendulumsStateReset();
         return this;
@@ -707,6 +1737,7 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     public PendulumWave resetSimulation(boolean resetPendulumCount, boolean resetPendulumsState) {
         // Environment
         setSpeed(DEFAULT_SPEED);
+        setFastForwardSpeed(0);
         setGravity(DEFAULT_GRAVITY, false);
         setDrag(DEFAULT_DRAG, false);
 
@@ -716,6 +1747,9 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
         setInternalWavePeriod(DEFAULT_INTERNAL_WAVE_PERIOD_SECS, false);
         setMinOscillationsInWavePeriod(DEFAULT_OSCILLATIONS_MIN, false);
         setOscillationsStepPerPendulum(DEFAULT_OSCILLATIONS_STEP_PER_PENDULUM, false);
+        setCustomPendulumLengths(null, false);
+        setExactPeriodLengths(DEFAULT_EXACT_PERIOD_LENGTHS, false);
+        setAzimuthalVelocityRatio(DEFAULT_AZIMUTHAL_VELOCITY_RATIO, false);
 
         // Pendulums Count
         if (resetPendulumCount) {
@@ -731,11 +1765,324 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
     }
 
 
+    /* Spherical Model ............................................. */
+
+    /**
+     * @return whether pendulums swing freely in 3D (two-axis spherical pendulums) instead of in the XY plane
+     * */
+    public boolean isSpherical() {
+        return store.spherical != null;
+    }
+
+    /**
+     * Switches between planar pendulums and spherical (two-axis) pendulums. See {@link SphericalPendulumKernel}
+     *
+     * @param resetPendulumsState true to restart all pendulums. Otherwise, spherical pendulums continue from the current planar state, without azimuthal velocity
+     * */
+    public PendulumWave setSpherical(boolean spherical, boolean resetPendulumsState) {
+        if (spherical == isSpherical())
+            return this;
+
+        wakeAll();
+        mHistory.clear();
+
+        if (spherical) {
+            final int count = pendulums.size();
+            final SphericalPendulumKernel kernel = new SphericalPendulumKernel(count);
+            store.spherical = kernel;
+
+            if (!resetPendulumsState) {
+                kernel.setFromPlanar(0, count, store.angles, store.angVels, store.lengths(), gravity, drag / pendulumMass);
+            }
+        } else {
+            store.spherical = null;
+            if (!resetPendulumsState) {
+                // Continue the planar model from the projected state
+                for (Pendulum p: pendulums) {
+                    p.restoreState(this, p.getAngle(), p.getAngularVelocity());
+                }
+            }
+        }
+
+        if (resetPendulumsState) {
+            resetPendulumsState();
+        }
+
+        return this;
+    }
+
+    public PendulumWave toggleSpherical(boolean resetPendulumsState) {
+        return setSpherical(!isSpherical(), resetPendulumsState);
+    }
+
+    public boolean isExactPeriodLengths() {
+        return exactPeriodLengths;
+    }
+
+    /**
+     * Switches between lengths calculated from the exact period at the start angle, with which the wave truly comes back in sync at the end of the
+     * wave period, and lengths calculated from the small-angle period <strong>T = 2 pi sqrt(l/g)</strong>, with which large swings fall behind
+     *
+     * @param resetPendulumsState true to reset all pendulums
+     * */
+    public PendulumWave setExactPeriodLengths(boolean exact, boolean resetPendulumsState) {
+        if (exactPeriodLengths == exact)
+            return this;
+
+        exactPeriodLengths = exact;
+        updatePendulumsLength();
+
+        if (resetPendulumsState) {
+            resetPendulumsState();
+        }
+
+        return this;
+    }
+
+    public PendulumWave toggleExactPeriodLengths(boolean resetPendulumsState) {
+        return setExactPeriodLengths(!exactPeriodLengths, resetPendulumsState);
+    }
+
+
+    /* Compact Storage ............................................. */
+
+    public int getCompactStorageMinPendulumCount() {
+        return mCompactStorageMinPendulumCount;
+    }
+
+    /**
+     * Sets the pendulum count from which the wave does not store lengths, to save memory and bandwidth in very large waves. Each length is then
+     * derived from the index of its pendulum and the wave parameters shared by all pendulums, with the same arithmetic that calculates them,
+     * so there is no loss of precision. Mass and start angle are shared by all pendulums of the wave anyway.<br>
+     * Not with {@link #setCustomPendulumLengths(float[], boolean) custom lengths}, and setting the length of a single pendulum switches back to stored lengths.
+     *
+     * @param count minimum pendulum count, or {@link Integer#MAX_VALUE} to always store lengths
+     * */
+    public PendulumWave setCompactStorageMinPendulumCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Compact storage min pendulum count must be >= 1, given: " + count);
+        }
+
+        mCompactStorageMinPendulumCount = count;
+        if (shouldShareLengths(pendulums.size()) != store.isCompact()) {
+            updatePendulumsLength();
+        }
+
+        return this;
+    }
+
+    /**
+     * @return whether lengths are currently derived from the wave parameters instead of stored. See {@link #setCompactStorageMinPendulumCount(int)}
+     * */
+    public boolean isCompactStorage() {
+        return store.isCompact();
+    }
+
+
+    /* Lazy Evaluation ............................................. */
+
+    public boolean isLazyEvaluation() {
+        return mLazyEvaluation;
+    }
+
+    /**
+     * Lazy evaluation skips stepping the pendulums that are not {@link #setVisiblePendulumRange(int, int) visible}, as long as nothing else
+     * observes every pendulum: no angle, highlight or frame {@link #events() subscribers}, {@link #setStats(PendulumWaveStats) statistics},
+     * {@link #snapshots() snapshots}, {@link #framePublisher() frame subscribers} or {@link #setCollisions(PendulumCollisions) collisions}, and only while playing forward with the planar model.<br>
+     * A skipped (dormant) pendulum is brought up to the current time with large bulk steps (see {@link #fastForward(double)}) as soon as it
+     * becomes visible or its state is queried, through the {@link Pendulum} getters or the bulk accessors of this wave. Parameters changed
+     * meanwhile apply to the whole catch-up.<br>
+     * History checkpoints are neither recorded while pendulums are dormant nor kept from before, so with drag or collisions, the simulation cannot be rewound past the last time all pendulums were awake.
+     * */
+    public PendulumWave setLazyEvaluation(boolean lazy) {
+        if (mLazyEvaluation != lazy) {
+            mLazyEvaluation = lazy;
+            if (!lazy) {
+                wakeAll();
+            }
+        }
+
+        return this;
+    }
+
+    public PendulumWave toggleLazyEvaluation() {
+        return setLazyEvaluation(!mLazyEvaluation);
+    }
+
+    /**
+     * Sets the range of pendulums currently visible, ex. within the camera frustum. Used by {@link #setLazyEvaluation(boolean) lazy evaluation}
+     *
+     * @param from first visible index, inclusive
+     * @param to last visible index, exclusive. Equal to {@code from} if none is visible
+     * */
+    public PendulumWave setVisiblePendulumRange(int from, int to) {
+        Objects.checkFromToIndex(from, to, pendulumCount());
+        mVisibleFrom = from;
+        mVisibleTo = to;
+        return this;
+    }
+
+    /**
+     * Forgets the visible range, so that all pendulums are stepped
+     * */
+    public PendulumWave clearVisiblePendulumRange() {
+        mVisibleFrom = mVisibleTo = -1;
+        return this;
+    }
+
+    /**
+     * @return number of pendulums stepped on every update. Less than the {@link #pendulumCount() count} while evaluating lazily
+     * */
+    public int awakePendulumCount() {
+        return store.lazyWave != null? store.awakeTo - store.awakeFrom: pendulums.size();
+    }
+
+    private boolean canEvaluateLazily() {
+        return mLazyEvaluation
+                && mVisibleFrom != -1 && mVisibleTo <= pendulums.size()
+                && store.spherical == null
+                && speed > 0 && mFastForwardSpeed <= 0
+                && mStats == null && mSnapshots == null && mCollisions == null
+                && (mFramePublisher == null || !mFramePublisher.hasSubscribers())
+                && !mEvents.hasSubscribers(PendulumWaveEvents.ANGLE | PendulumWaveEvents.HIGHLIGHT | PendulumWaveEvents.FRAME);
+    }
+
+    /**
+     * Steps only the pendulums in [from, to) from now on. Pendulums entering the range are brought up to date, and those leaving it fall dormant
+     * */
+    private void setAwakeRange(int from, int to) {
+        final int count = pendulums.size();
+        final boolean lazy = store.lazyWave != null;
+        final int prevFrom = lazy? store.awakeFrom: 0;
+        final int prevTo = lazy? store.awakeTo: count;
+        if (from == prevFrom && to == prevTo)
+            return;
+
+        if (mDormantSecs.length < count) {
+            mDormantSecs = Arrays.copyOf(mDormantSecs, count);
+        }
+
+        // Wake [from, to) \ [prevFrom, prevTo)
+        catchUpRange(from, Math.min(to, prevFrom));
+        catchUpRange(Math.max(from, prevTo), to);
+
+        // Put [prevFrom, prevTo) \ [from, to) to sleep
+        sleepRange(prevFrom, Math.min(prevTo, from));
+        sleepRange(Math.max(prevFrom, to), prevTo);
+
+        store.awakeFrom = from;
+        store.awakeTo = to;
+        store.lazyWave = from == 0 && to == count? null: this;
+        if (!lazy && store.lazyWave != null) {
+            mHistory.clear();       // not recorded while lazy, so checkpoints before would be a gap to replay
+        }
+    }
+
+    private void sleepRange(int from, int to) {
+        if (from < to) {
+            Arrays.fill(mDormantSecs, from, to, mElapsedSecs);
+        }
+    }
+
+    private void wakeAll() {
+        if (store.lazyWave != null) {
+            setAwakeRange(0, pendulums.size());
+        }
+    }
+
+    /**
+     * Brings all dormant pendulums up to the current time, leaving the awake range as is
+     * */
+    private void catchUpAll() {
+        if (store.lazyWave != null) {
+            catchUpRange(0, store.awakeFrom);
+            catchUpRange(store.awakeTo, pendulums.size());
+        }
+    }
+
+    /**
+     * Brings the given dormant pendulum up to the current time. Called by the pendulum when its state is queried
+     * */
+    void catchUp(int index) {
+        catchUpRange(index, index + 1);
+    }
+
+    private void catchUpRange(int from, int to) {
+        // Neighbours that fell dormant together, and need about as many steps (same power of 2), are stepped together
+        int i = from;
+        while (i < to) {
+            final double since = mDormantSecs[i];
+            if (since >= mElapsedSecs) {
+                i++;
+                continue;
+            }
+
+            final double secs = mElapsedSecs - since;
+            final int bucket = stepBucket(secs, i);
+            int j = i + 1;
+            while (j < to && mDormantSecs[j] == since && stepBucket(secs, j) == bucket) {
+                j++;
+            }
+
+            catchUpRun(i, j, secs);
+            Arrays.fill(mDormantSecs, i, j, mElapsedSecs);
+            i = j;
+        }
+    }
+
+    private int stepBucket(double secs, int index) {
+        return 32 - Integer.numberOfLeadingZeros(bulkStepCount(secs, store.length(index)) - 1);
+    }
+
+    private void catchUpRun(int from, int to, double secs) {
+        ensureStarted(from, to);
+
+        final int steps = bulkStepCount(secs, from, to);
+        final float dt = (float) (secs / steps);
+        final float dragPerMass = drag / pendulumMass;
+
+        for (int s=0; s < steps; s++) {
+            bulkStep(from, to, dragPerMass, dt);
+        }
+
+        dispatchHighlightFlips(from, to);
+    }
+
+    public float getAzimuthalVelocityRatio() {
+        return azimuthalVelocityRatio;
+    }
+
+    /**
+     * @param ratio initial azimuthal velocity of spherical pendulums, as a fraction of the velocity of the conical orbit at the start angle.
+     *              0 -> planar swing, 1 -> circular (conical) orbits, in between -> elliptical orbits. Negative values orbit the other way
+     * @param resetPendulumsState true to reset all pendulums, which is needed for the ratio to take effect
+     * */
+    public PendulumWave setAzimuthalVelocityRatio(float ratio, boolean resetPendulumsState) {
+        if (Float.isNaN(ratio) || Math.abs(ratio) > AZIMUTHAL_VELOCITY_RATIO_MAX) {
+            throw new IllegalArgumentException("Azimuthal velocity ratio must be in range [-" + AZIMUTHAL_VELOCITY_RATIO_MAX + ", " + AZIMUTHAL_VELOCITY_RATIO_MAX + "], given: " + ratio);
+        }
+
+        azimuthalVelocityRatio = ratio;
+        if (resetPendulumsState) {
+            resetPendulumsState();
+        }
+
+        return this;
+    }
+
+    private void resetSphericalState(int from, int to) {
+        final SphericalPendulumKernel kernel = store.spherical;
+        if (kernel != null) {
+            kernel.reset(from, to, store.lengths(), pendulumStartAngle, 0, azimuthalVelocityRatio, gravity, drag / pendulumMass);
+        }
+    }
+
+
     /* Pendulums Count ............................................. */
 
     @NotNull
     private Pendulum createPendulum(int id, float length) {
-        return new Pendulum(id, pendulumMass, length, pendulumStartAngle).setListener(this);
+        return new Pendulum(store, id, pendulumMass, length, pendulumStartAngle, 0).setListener(this);
     }
 
     private void detachPendulum(@Nullable Pendulum p) {
@@ -745,6 +2092,8 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
         if (p.getListener() == this) {
             p.setListener(null);
         }
+
+        p.detachStore();
     }
 
     public int pendulumCount() {
@@ -760,13 +2109,132 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
         return this;
     }
 
+
+    /* Bulk State ............................................. */
+
+    /**
+     * @return the state store, with all pendulums up to date
+     * */
+    @NotNull
+    PendulumStateStore stateStore() {
+        catchUpAll();
+        return store;
+    }
+
+    @Nullable
+    float[] customPendulumLengths() {
+        return mCustomLengths;
+    }
+
+    /**
+     * @return a counter that changes whenever the angle or angular velocity of any pendulum changes. Consumers can compare it with the value seen last to skip unchanged state
+     * */
+    public long stateVersion() {
+        return store.stateVersion;
+    }
+
+    /**
+     * @return a counter that changes whenever the length of any pendulum, or the pendulum count changes
+     * */
+    public long lengthsVersion() {
+        return store.lengthsVersion;
+    }
+
+    private static float[] copyDestination(int count, float @Nullable[] dst, int from, int to) {
+        Objects.checkFromToIndex(from, to, count);
+
+        final int n = to - from;
+        if (dst == null) {
+            dst = new float[n];
+        } else if (dst.length < n) {
+            throw new IllegalArgumentException("Destination array too small, required: " + n + ", given: " + dst.length);
+        }
+
+        return dst;
+    }
+
+    private static float[] copyRange(float @NotNull[] src, int count, float @Nullable[] dst, int from, int to) {
+        dst = copyDestination(count, dst, from, to);
+        System.arraycopy(src, from, dst, 0, to - from);
+        return dst;
+    }
+
+    /**
+     * Copies the angles (in radians) of pendulums in range [from, to) to the start of the given array.
+     * Must be called on the thread that updates the wave, since dormant pendulums are brought up to date first
+     *
+     * @param dst destination array, or {@code null} to allocate a new one
+     * @return the destination array
+     * */
+    public float @NotNull[] copyAngles(float @Nullable[] dst, int from, int to) {
+        catchUpAll();
+        return copyRange(store.angles, pendulumCount(), dst, from, to);
+    }
+
+    /**
+     * Copies the angular velocities (in rad/s) of pendulums in range [from, to) to the start of the given array.
+     * Must be called on the thread that updates the wave, since dormant pendulums are brought up to date first
+     *
+     * @param dst destination array, or {@code null} to allocate a new one
+     * @return the destination array
+     * */
+    public float @NotNull[] copyAngularVelocities(float @Nullable[] dst, int from, int to) {
+        catchUpAll();
+        return copyRange(store.angVels, pendulumCount(), dst, from, to);
+    }
+
+    /**
+     * Copies the lengths (in m) of pendulums in range [from, to) to the start of the given array
+     *
+     * @param dst destination array, or {@code null} to allocate a new one
+     * @return the destination array
+     * */
+    public float @NotNull[] copyLengths(float @Nullable[] dst, int from, int to) {
+        dst = copyDestination(pendulumCount(), dst, from, to);
+        store.copyLengths(from, to, dst, 0);
+        return dst;
+    }
+
+    /**
+     * A read-only view over the live angles (in radians) of all pendulums, without copying.
+     * The view tracks the simulation, but must be obtained again once the pendulum count changes, and with
+     * {@link #setLazyEvaluation(boolean) lazy evaluation}, to bring dormant pendulums up to date
+     * */
+    @NotNull
+    public FloatBuffer anglesView() {
+        catchUpAll();
+        return FloatBuffer.wrap(store.angles, 0, pendulumCount()).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * A read-only view over the live angular velocities (in rad/s) of all pendulums, without copying.
+     * The view must be obtained again once the pendulum count changes
+     * */
+    @NotNull
+    public FloatBuffer angularVelocitiesView() {
+        catchUpAll();
+        return FloatBuffer.wrap(store.angVels, 0, pendulumCount()).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * A read-only view over the live lengths (in m) of all pendulums, without copying.
+     * The view must be obtained again once the pendulum count changes. With {@link #isCompactStorage() compact storage}, the view is over
+     * lengths derived at the time of the call
+     * */
+    @NotNull
+    public FloatBuffer lengthsView() {
+        return FloatBuffer.wrap(store.lengths(), 0, pendulumCount()).slice().asReadOnlyBuffer();
+    }
+
     private void onPendulumCountChanged(int prevCount, int newCount, boolean resetPendulumsState) {
         updatePendulumsLength();
 
-        if (mListener != null) {
-            mListener.onPendulumCountChanged(this, prevCount, newCount);
+        if (store.spherical != null && newCount > prevCount) {
+            resetSphericalState(prevCount, newCount);
         }
 
+        mEvents.dispatchCountChanged(this, prevCount, newCount);
+
         if (resetPendulumsState) {
             resetPendulumsState();
         }
@@ -781,15 +2249,19 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
         if (prev == count)
             return this;
 
+        wakeAll();
         if (prev < count) {
-            // add pendulums
+            // add pendulums. With shared lengths, at their final length so that lengths stay shared
+            store.ensureCapacity(count);
             for (int i=prev; i < count; i++) {
-                pendulums.add(createPendulum(i, 0 /* to be updated */));
+                pendulums.add(createPendulum(i, store.isCompact()? store.length(i): 0 /* to be updated */));
             }
         } else {
             for (int i=prev - 1; i >= count; i--) {
                 detachPendulum(pendulums.remove(i));
             }
+
+            store.truncate(count);
         }
 
         onPendulumCountChanged(prev, pendulums.size(), resetPendulumsState);
@@ -814,22 +2286,25 @@ public class PendulumWave implements PendulumEnvironmentProvider, Pendulum.Liste
 
     @Override
     public void onPendulumLengthChanged(@NotNull Pendulum p, float prevLength, float newLength) {
-        if (mListener != null) {
-            mListener.onPendulumLengthChanged(p, prevLength, newLength);
+        if (mForwardPendulumEvents) {
+            mEvents.dispatchLengthChanged(p, prevLength, newLength);
         }
     }
 
     @Override
     public void onPendulumAngleChanged(@NotNull Pendulum p, float prevAngle, float newAngle) {
-        if (mListener != null) {
-            mListener.onPendulumAngleChanged(p, prevAngle, newAngle);
+        if (mForwardPendulumEvents) {
+            mEvents.dispatchAngleChanged(p, prevAngle, newAngle);
         }
     }
 
     @Override
     public void onPendulumHighlightChanged(@NotNull Pendulum p, boolean highlight) {
-        if (mListener != null) {
-            mListener.onPendulumHighlightChanged(p, highlight);
+        if (mForwardPendulumEvents) {
+            mEvents.dispatchHighlightChanged(p, highlight);
+            if (mFrameActive) {
+                mFrame.addHighlightFlip(p.storeIndex(), highlight);
+            }
         }
     }
 
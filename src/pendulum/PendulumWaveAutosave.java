@@ -0,0 +1,188 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically saves a {@link PendulumWave} to a {@link PendulumWaveCheckpoint checkpoint} file, so that a long-running simulation survives a crash.<br>
+ * <br>
+ * {@link #onFrame(PendulumWave)} must be called on the thread that updates the wave. When an autosave is due, it only copies the state into a
+ * {@link PendulumWaveCheckpoint.Snapshot snapshot}, and the snapshot is written on a background thread with an atomic rename.
+ * No snapshot is captured while a write is in progress, so a single snapshot is reused for all autosaves.<br>
+ * <br>
+ * Autosave is disabled until {@link #setEnabled(boolean) enabled}, and nothing is written until the background thread is {@link #start() started}
+ * */
+public class PendulumWaveAutosave {
+
+    public static final float DEFAULT_INTERVAL_SECS = 60;
+    public static final float MIN_INTERVAL_SECS = 1;
+
+    @NotNull
+    private final Path path;
+    private volatile long intervalNs;
+
+    @Nullable
+    private ExecutorService mExecutor;
+
+    @Nullable
+    private PendulumWaveCheckpoint.Snapshot mSnapshot;
+
+    private volatile boolean mWriting;
+    private long mLastCaptureNs = -1;
+
+    private volatile double mLastSavedElapsedSecs = -1;
+    @Nullable
+    private volatile IOException mLastError;
+    private boolean mEnabled;
+
+    /**
+     * @param path checkpoint file to save to
+     * @param intervalSecs interval between autosaves, in seconds of real time. Must be >= {@link #MIN_INTERVAL_SECS}
+     * */
+    public PendulumWaveAutosave(@NotNull Path path, float intervalSecs) {
+        this.path = path;
+        this.intervalNs = toIntervalNs(intervalSecs);
+    }
+
+    private static long toIntervalNs(float intervalSecs) {
+        if (intervalSecs < MIN_INTERVAL_SECS) {
+            throw new IllegalArgumentException("Autosave interval must be >= " + MIN_INTERVAL_SECS + " s, given: " + intervalSecs);
+        }
+
+        return (long) (intervalSecs * 1e9);
+    }
+
+    /**
+     * Starts the background thread that writes the snapshots. Does nothing if already started
+     * */
+    public PendulumWaveAutosave start() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newSingleThreadExecutor(r -> {
+                final Thread t = new Thread(r, "PendulumWave-Autosave");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+        }
+
+        return this;
+    }
+
+    public boolean isStarted() {
+        return mExecutor != null;
+    }
+
+    @NotNull
+    public Path getPath() {
+        return path;
+    }
+
+    public float getIntervalSecs() {
+        return intervalNs / 1e9f;
+    }
+
+    public PendulumWaveAutosave setIntervalSecs(float intervalSecs) {
+        intervalNs = toIntervalNs(intervalSecs);
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public PendulumWaveAutosave setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        mLastCaptureNs = -1;
+        return this;
+    }
+
+    /**
+     * @return elapsed simulation time (in s) of the last successful autosave, or {@code -1} if none yet
+     * */
+    public double getLastSavedElapsedSeconds() {
+        return mLastSavedElapsedSecs;
+    }
+
+    /**
+     * @return the error of the last failed autosave, cleared by the next successful one
+     * */
+    @Nullable
+    public IOException getLastError() {
+        return mLastError;
+    }
+
+    /**
+     * Captures a snapshot and schedules its write, if an autosave is due and the previous write has finished.
+     * Must be called on the thread that updates the wave, ex. once per frame
+     * */
+    public void onFrame(@NotNull PendulumWave wave) {
+        if (!mEnabled || mWriting || mExecutor == null)
+            return;
+
+        final long nowNs = System.nanoTime();
+        if (mLastCaptureNs == -1) {
+            mLastCaptureNs = nowNs;     // first save after one interval
+            return;
+        }
+
+        if (nowNs - mLastCaptureNs < intervalNs)
+            return;
+
+        mLastCaptureNs = nowNs;
+        saveNow(wave);
+    }
+
+    /**
+     * Captures a snapshot and schedules its write immediately, unless a write is already in progress or the background thread is not {@link #start() started}.
+     * Must be called on the thread that updates the wave
+     *
+     * @return whether a write was scheduled
+     * */
+    public boolean saveNow(@NotNull PendulumWave wave) {
+        final ExecutorService executor = mExecutor;
+        if (mWriting || executor == null)
+            return false;
+
+        final PendulumWaveCheckpoint.Snapshot snapshot = PendulumWaveCheckpoint.capture(wave, mSnapshot);
+        mSnapshot = snapshot;
+        mWriting = true;
+
+        executor.execute(() -> {
+            try {
+                PendulumWaveCheckpoint.write(snapshot, path);
+                mLastSavedElapsedSecs = snapshot.elapsedSeconds();
+                mLastError = null;
+            } catch (IOException exc) {
+                mLastError = exc;
+            } finally {
+                mWriting = false;
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Waits for a pending write to finish, and stops the background thread
+     * */
+    public void shutdown() {
+        final ExecutorService executor = mExecutor;
+        if (executor == null)
+            return;
+
+        mExecutor = null;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
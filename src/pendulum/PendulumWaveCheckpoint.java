@@ -0,0 +1,326 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Binary checkpoint of the full state of a {@link PendulumWave}: parameters, elapsed time, and the length, angle,
+ * angular velocity and cached angular acceleration of every pendulum, plus the state of the {@link SphericalPendulumKernel} if spherical.<br>
+ * <br>
+ * Layout (little endian): a fixed size header, optional custom lengths, then the four per-pendulum arrays one after another, followed by
+ * the nine spherical arrays if spherical.
+ * The arrays are written from and read into the structure-of-arrays state store in bulk, so restoring does not create pendulums
+ * beyond a change in count and does not replay the simulation.
+ * */
+public final class PendulumWaveCheckpoint {
+
+    public static final String FILE_EXTENSION = ".pwstate";
+
+    private static final int MAGIC = 0x50575354;       // "PWST"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_BYTES =
+            (4 * Integer.BYTES)         // magic, version, pendulum count, custom lengths count
+            + (9 * Float.BYTES)         // gravity, drag, mass, start angle, internal wave period, min oscillations, oscillations step, speed, azimuthal velocity ratio
+            + Double.BYTES              // elapsed seconds
+            + 3;                        // paused, started, flags
+
+    private static final int FLAG_EXACT_PERIOD_LENGTHS = 1;
+    private static final int FLAG_SPHERICAL = 1 << 1;
+
+    private static final int ARRAYS_PER_PENDULUM = 4;
+    private static final int SPHERICAL_ARRAYS_PER_PENDULUM = 9;
+
+    private PendulumWaveCheckpoint() {
+    }
+
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) {
+                throw new EOFException("Pendulum wave checkpoint is truncated");
+            }
+        }
+
+        buf.flip();
+    }
+
+
+    private static int arraysPerPendulum(boolean spherical) {
+        return ARRAYS_PER_PENDULUM + (spherical? SPHERICAL_ARRAYS_PER_PENDULUM: 0);
+    }
+
+    private static void putSpherical(@NotNull FloatBuffer floats, @NotNull SphericalPendulumKernel kernel, int count) {
+        floats.put(kernel.ux, 0, count).put(kernel.uy, 0, count).put(kernel.uz, 0, count)
+                .put(kernel.wx, 0, count).put(kernel.wy, 0, count).put(kernel.wz, 0, count)
+                .put(kernel.ax, 0, count).put(kernel.ay, 0, count).put(kernel.az, 0, count);
+    }
+
+    private static void getSpherical(@NotNull FloatBuffer floats, @NotNull SphericalPendulumKernel kernel, int count) {
+        floats.get(kernel.ux, 0, count).get(kernel.uy, 0, count).get(kernel.uz, 0, count)
+                .get(kernel.wx, 0, count).get(kernel.wy, 0, count).get(kernel.wz, 0, count)
+                .get(kernel.ax, 0, count).get(kernel.ay, 0, count).get(kernel.az, 0, count);
+    }
+
+
+    /**
+     * An in-memory copy of the checkpoint bytes of a wave, so that it can be written to disk on another thread while the simulation goes on
+     * */
+    public static final class Snapshot {
+
+        private ByteBuffer header;
+        private ByteBuffer arrays;
+        private int pendulumCount;
+        private double elapsedSecs;
+
+        private Snapshot() {
+        }
+
+        public int pendulumCount() {
+            return pendulumCount;
+        }
+
+        public double elapsedSeconds() {
+            return elapsedSecs;
+        }
+    }
+
+    /**
+     * Basic information of a checkpoint file, read from its header
+     * */
+    public record Info(int pendulumCount, double elapsedSeconds, boolean paused) {
+    }
+
+    /**
+     * Copies the state of the given wave into a snapshot. Must be called on the thread that updates the wave
+     *
+     * @param reuse a snapshot to overwrite, or {@code null} to create a new one. Its buffers are reused when large enough
+     * */
+    @NotNull
+    public static Snapshot capture(@NotNull PendulumWave wave, @Nullable Snapshot reuse) {
+        final Snapshot snapshot = reuse != null? reuse: new Snapshot();
+        final PendulumStateStore store = wave.stateStore();
+        final int count = wave.pendulumCount();
+        final float[] customLengths = wave.customPendulumLengths();
+        final int customCount = customLengths != null? customLengths.length: 0;
+        final SphericalPendulumKernel spherical = store.spherical;
+        final int flags = (wave.isExactPeriodLengths()? FLAG_EXACT_PERIOD_LENGTHS: 0) | (spherical != null? FLAG_SPHERICAL: 0);
+
+        final int headerBytes = HEADER_BYTES + (customCount * Float.BYTES);
+        if (snapshot.header == null || snapshot.header.capacity() < headerBytes) {
+            snapshot.header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        final ByteBuffer header = snapshot.header;
+        header.clear();
+        header.putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(count)
+                .putInt(customLengths != null? customCount: -1)
+                .putFloat(wave.gravity())
+                .putFloat(wave.drag())
+                .putFloat(wave.getPendulumMass())
+                .putFloat(wave.getPendulumStartAngle())
+                .putFloat(wave.getInternalWavePeriod())
+                .putFloat(wave.getMinOscillationsInWavePeriod())
+                .putFloat(wave.getOscillationsStepPerPendulum())
+                .putFloat(wave.getSpeed())
+                .putFloat(wave.getAzimuthalVelocityRatio())
+                .putDouble(wave.getElapsedSeconds())
+                .put((byte) (wave.isPaused()? 1: 0))
+                .put((byte) (count > 0 && wave.pendulumAt(0).isStarted()? 1: 0))
+                .put((byte) flags);
+
+        if (customLengths != null) {
+            header.asFloatBuffer().put(customLengths);
+            header.position(header.position() + (customCount * Float.BYTES));
+        }
+
+        header.flip();
+
+        final int arraysBytes = arraysPerPendulum(spherical != null) * count * Float.BYTES;
+        if (snapshot.arrays == null || snapshot.arrays.capacity() < arraysBytes) {
+            snapshot.arrays = ByteBuffer.allocateDirect(arraysBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        final ByteBuffer arrays = snapshot.arrays;
+        arrays.clear();
+        final FloatBuffer floats = arrays.asFloatBuffer();
+        store.writeLengths(floats, count);
+        floats.put(store.angles, 0, count)
+                .put(store.angVels, 0, count)
+                .put(store.angAccs, 0, count);
+        if (spherical != null) {
+            putSpherical(floats, spherical, count);
+        }
+
+        arrays.limit(arraysBytes);
+
+        snapshot.pendulumCount = count;
+        snapshot.elapsedSecs = wave.getElapsedSeconds();
+        return snapshot;
+    }
+
+    /**
+     * Writes the given snapshot to the given file. Can be called on any thread.<br>
+     * The bytes are written and synced to a temporary file first, which then replaces the file with an atomic rename,
+     * so a crash midway never leaves a partially written checkpoint behind
+     * */
+    public static void write(@NotNull Snapshot snapshot, @NotNull Path path) throws IOException {
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, snapshot.header.duplicate());
+            writeFully(channel, snapshot.arrays.duplicate());
+            channel.force(false);
+        }
+
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException exc) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes the state of the given wave to the given file, replacing it if it exists
+     * */
+    public static void save(@NotNull PendulumWave wave, @NotNull Path path) throws IOException {
+        write(capture(wave, null), path);
+    }
+
+    /**
+     * Reads the header of the given checkpoint file, without restoring it
+     * */
+    @NotNull
+    public static Info readInfo(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            checkHeader(header, path);
+
+            final int count = header.getInt();
+            header.position(header.position() + Integer.BYTES + (9 * Float.BYTES));       // custom lengths count, parameters
+            final double elapsedSecs = header.getDouble();
+            final boolean paused = header.get() != 0;
+            return new Info(count, elapsedSecs, paused);
+        }
+    }
+
+    private static void checkHeader(@NotNull ByteBuffer header, @NotNull Path path) throws IOException {
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a pendulum wave checkpoint: " + path);
+        }
+
+        final int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported pendulum wave checkpoint version: " + version);
+        }
+    }
+
+    /**
+     * Restores the state of the given wave from a file written by {@link #save(PendulumWave, Path)}
+     * */
+    public static void load(@NotNull PendulumWave wave, @NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+
+            checkHeader(header, path);
+
+            final int count = header.getInt();
+            final int customCount = header.getInt();
+            if (count < 1 || customCount < -1) {
+                throw new IOException("Corrupt pendulum wave checkpoint: " + count + " pendulums, " + customCount + " custom lengths");
+            }
+
+            final float gravity = header.getFloat();
+            final float drag = header.getFloat();
+            final float mass = header.getFloat();
+            final float startAngle = header.getFloat();
+            final float internalWavePeriod = header.getFloat();
+            final float minOscillations = header.getFloat();
+            final float oscillationsStep = header.getFloat();
+            final float speed = header.getFloat();
+            final float azimuthalVelocityRatio = header.getFloat();
+            final double elapsedSecs = header.getDouble();
+            final boolean paused = header.get() != 0;
+            final boolean started = header.get() != 0;
+            final int flags = header.get();
+            final boolean spherical = (flags & FLAG_SPHERICAL) != 0;
+
+            float[] customLengths = null;
+            if (customCount >= 0) {
+                if (channel.size() - channel.position() < (long) customCount * Float.BYTES) {
+                    throw new EOFException("Pendulum wave checkpoint is truncated");
+                }
+
+                final ByteBuffer buf = ByteBuffer.allocate(customCount * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, buf);
+                customLengths = new float[customCount];
+                buf.asFloatBuffer().get(customLengths);
+            }
+
+            // Read into a heap buffer rather than mapping the file: a mapping stays open until it is garbage collected, which blocks replacing the file on some platforms
+            final long arraysBytes = (long) arraysPerPendulum(spherical) * count * Float.BYTES;
+            if (arraysBytes > Integer.MAX_VALUE || channel.size() - channel.position() < arraysBytes) {
+                throw new EOFException("Pendulum wave checkpoint is truncated");
+            }
+
+            final ByteBuffer arrays = ByteBuffer.allocate((int) arraysBytes).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, arrays);
+
+            wave.onStateRestoreStarted();
+            try {
+                // Parameters
+                wave.setGravity(gravity, false)
+                        .setDrag(drag, false)
+                        .setPendulumMass(mass, false)
+                        .setPendulumStartAngle(startAngle, false)
+                        .setInternalWavePeriod(internalWavePeriod, false)
+                        .setMinOscillationsInWavePeriod(minOscillations, false)
+                        .setOscillationsStepPerPendulum(oscillationsStep, false)
+                        .setCustomPendulumLengths(customLengths, false)
+                        .setExactPeriodLengths((flags & FLAG_EXACT_PERIOD_LENGTHS) != 0, false)
+                        .setAzimuthalVelocityRatio(azimuthalVelocityRatio, false)
+                        .setPendulumCount(count, false)
+                        .setSpherical(spherical, false);
+                wave.setSpeed(speed);
+
+                // Per-pendulum state, in bulk
+                final PendulumStateStore store = wave.stateStore();
+                final FloatBuffer floats = arrays.asFloatBuffer();
+                wave.onLengthsRestoreStarted();
+                store.readLengths(floats, count);
+                floats.get(store.angles, 0, count)
+                        .get(store.angVels, 0, count)
+                        .get(store.angAccs, 0, count);
+
+                wave.onStateRestored(elapsedSecs, started);
+                if (spherical) {
+                    // Overwrites the spherical state derived from the planar one
+                    getSpherical(floats, wave.stateStore().spherical, count);
+                }
+
+                wave.setPause(paused);
+            } catch (RuntimeException exc) {
+                wave.onStateRestoreFailed();
+                throw exc;
+            }
+        }
+    }
+
+}
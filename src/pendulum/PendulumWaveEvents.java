@@ -0,0 +1,185 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Event bus of a {@link PendulumWave}, with any number of {@link PendulumWave.Listener subscribers}, each declaring an interest mask of event types.<br>
+ * <br>
+ * Each event type keeps its own copy-on-write array of subscribers, so dispatch is a plain indexed loop without iterators or locks, and subscribing
+ * from another thread never disturbs a dispatch in progress. The union of all interest masks is pushed down to the state store of the pendulums,
+ * which skip per-pendulum callbacks of types nobody subscribed to, so those cost nothing.
+ * */
+public final class PendulumWaveEvents {
+
+    /* Event types, combined into interest masks */
+    public static final int ANGLE = 1;
+    public static final int HIGHLIGHT = 1 << 1;
+    public static final int LENGTH = 1 << 2;
+    public static final int COUNT = 1 << 3;
+    public static final int SPEED = 1 << 4;
+    public static final int PAUSE = 1 << 5;
+
+    /**
+     * One {@link PendulumWaveFrame bulk event} per update, instead of per-pendulum callbacks
+     * */
+    public static final int FRAME = 1 << 6;
+
+    public static final int NONE = 0;
+    public static final int ALL = ANGLE | HIGHLIGHT | LENGTH | COUNT | SPEED | PAUSE | FRAME;
+
+    private static final PendulumWave.Listener[] EMPTY = new PendulumWave.Listener[0];
+
+    // Store of the pendulums of the wave, which receives the per-pendulum part of the interest mask
+    @NotNull
+    private final PendulumStateStore store;
+
+    // Subscribers per event type. Replaced, never modified, on every change
+    private volatile PendulumWave.Listener[] angle = EMPTY, highlight = EMPTY, length = EMPTY, count = EMPTY, speed = EMPTY, pause = EMPTY, frame = EMPTY;
+
+    // Union of the interest masks of all subscribers
+    private volatile int mMask;
+
+    PendulumWaveEvents(@NotNull PendulumStateStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return event types for which pendulums must call their listener, given the union of interest masks
+     * */
+    private static int pendulumMask(int mask) {
+        int pendulumMask = mask & (ANGLE | HIGHLIGHT | LENGTH);
+        if ((mask & FRAME) != 0) {
+            pendulumMask |= HIGHLIGHT;       // flips are collected into the frame
+        }
+
+        return pendulumMask;
+    }
+
+    @NotNull
+    private static PendulumWave.Listener[] with(PendulumWave.Listener @NotNull[] listeners, @NotNull PendulumWave.Listener listener, boolean add) {
+        final int index = Arrays.asList(listeners).indexOf(listener);
+        if (add == (index != -1))
+            return listeners;
+
+        if (add) {
+            final PendulumWave.Listener[] result = Arrays.copyOf(listeners, listeners.length + 1);
+            result[listeners.length] = listener;
+            return result;
+        }
+
+        if (listeners.length == 1)
+            return EMPTY;
+
+        final PendulumWave.Listener[] result = new PendulumWave.Listener[listeners.length - 1];
+        System.arraycopy(listeners, 0, result, 0, index);
+        System.arraycopy(listeners, index + 1, result, index, listeners.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Subscribes the given listener to the given event types, replacing its previous interest mask if already subscribed
+     *
+     * @param interestMask a combination of {@link #ANGLE}, {@link #HIGHLIGHT}, {@link #LENGTH}, {@link #COUNT}, {@link #SPEED}, {@link #PAUSE}
+     *                     and {@link #FRAME}, or {@link #NONE} to unsubscribe
+     * */
+    public synchronized PendulumWaveEvents subscribe(@NotNull PendulumWave.Listener listener, int interestMask) {
+        if ((interestMask & ~ALL) != 0) {
+            throw new IllegalArgumentException("Unknown event types in interest mask: " + Integer.toBinaryString(interestMask));
+        }
+
+        angle = with(angle, listener, (interestMask & ANGLE) != 0);
+        highlight = with(highlight, listener, (interestMask & HIGHLIGHT) != 0);
+        length = with(length, listener, (interestMask & LENGTH) != 0);
+        count = with(count, listener, (interestMask & COUNT) != 0);
+        speed = with(speed, listener, (interestMask & SPEED) != 0);
+        pause = with(pause, listener, (interestMask & PAUSE) != 0);
+        frame = with(frame, listener, (interestMask & FRAME) != 0);
+
+        final int mask = (angle.length > 0? ANGLE: 0)
+                | (highlight.length > 0? HIGHLIGHT: 0)
+                | (length.length > 0? LENGTH: 0)
+                | (count.length > 0? COUNT: 0)
+                | (speed.length > 0? SPEED: 0)
+                | (pause.length > 0? PAUSE: 0)
+                | (frame.length > 0? FRAME: 0);
+
+        if (mMask != mask) {
+            mMask = mask;
+            store.eventMask = pendulumMask(mask);
+        }
+
+        return this;
+    }
+
+    public PendulumWaveEvents unsubscribe(@NotNull PendulumWave.Listener listener) {
+        return subscribe(listener, NONE);
+    }
+
+    /**
+     * @return union of the interest masks of all subscribers
+     * */
+    public int interestMask() {
+        return mMask;
+    }
+
+    /**
+     * @return whether any subscriber is interested in any of the given event types
+     * */
+    public boolean hasSubscribers(int eventTypes) {
+        return (mMask & eventTypes) != 0;
+    }
+
+    /* Dispatch, on the thread that updates the wave ............................................... */
+
+    void dispatchAngleChanged(@NotNull Pendulum p, float prevAngle, float newAngle) {
+        final PendulumWave.Listener[] listeners = angle;
+        for (int i=0; i < listeners.length; i++) {
+            listeners[i].onPendulumAngleChanged(p, prevAngle, newAngle);
+        }
+    }
+
+    void dispatchHighlightChanged(@NotNull Pendulum p, boolean highlighted) {
+        final PendulumWave.Listener[] listeners = highlight;
+        for (int i=0; i < listeners.length; i++) {
+            listeners[i].onPendulumHighlightChanged(p, highlighted);
+        }
+    }
+
+    void dispatchLengthChanged(@NotNull Pendulum p, float prevLength, float newLength) {
+        final PendulumWave.Listener[] listeners = length;
+        for (int i=0; i < listeners.length; i++) {
+            listeners[i].onPendulumLengthChanged(p, prevLength, newLength);
+        }
+    }
+
+    void dispatchCountChanged(@NotNull PendulumWave wave, int prevCount, int newCount) {
+        final PendulumWave.Listener[] listeners = count;
+        for (int i=0; i < listeners.length; i++) {
+            listeners[i].onPendulumCountChanged(wave, prevCount, newCount);
+        }
+    }
+
+    void dispatchSpeedChanged(@NotNull PendulumWave wave, float prevSpeed, float newSpeed) {
+        final PendulumWave.Listener[] listeners = speed;
+        for (int i=0; i < listeners.length; i++) {
+            listeners[i].onSpeedChanged(wave, prevSpeed, newSpeed);
+        }
+    }
+
+    void dispatchPausedChanged(@NotNull PendulumWave wave, boolean paused) {
+        final PendulumWave.Listener[] listeners = pause;
+        for (int i=0; i < listeners.length; i++) {
+            listeners[i].onIsPausedChanged(wave, paused);
+        }
+    }
+
+    void dispatchFrame(@NotNull PendulumWave wave, @NotNull PendulumWaveFrame f) {
+        final PendulumWave.Listener[] listeners = frame;
+        for (int i=0; i < listeners.length; i++) {
+            listeners[i].onPendulumWaveFrame(wave, f);
+        }
+    }
+
+}
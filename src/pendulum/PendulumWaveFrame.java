@@ -0,0 +1,205 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Everything that changed in a {@link PendulumWave} during one update, delivered as a single bulk event to the
+ * {@link PendulumWave.Listener#onPendulumWaveFrame(PendulumWave, PendulumWaveFrame) frame subscribers} of its {@link PendulumWaveEvents event bus}:
+ * <ul>
+ *     <li>indices of the pendulums whose highlight flipped, with the new highlight state</li>
+ *     <li>zero crossings of the angle, with the crossing time interpolated within the physics step</li>
+ *     <li>the range of indices whose angles changed, with the state version after the update</li>
+ * </ul>
+ * A consumer (ex. sound, recorder, network streamer) reads these in one sweep instead of rebuilding them from per-pendulum callbacks.<br>
+ * <br>
+ * The same instance and its primitive buffers are reused for every frame, so it is only valid during the callback. Copy what is needed later.
+ * */
+public final class PendulumWaveFrame {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double startSecs, endSecs;
+    private int steps;
+
+    // Highlight flips
+    private int flipCount;
+    private int[] flipIndices = new int[INITIAL_CAPACITY];
+    private boolean[] flipStates = new boolean[INITIAL_CAPACITY];
+
+    // Zero crossings
+    private int crossingCount;
+    private int[] crossingIndices = new int[INITIAL_CAPACITY];
+    private double[] crossingTimes = new double[INITIAL_CAPACITY];
+
+    // Angles changed in [angleFrom, angleTo)
+    private int angleFrom, angleTo;
+    private long angleVersion;
+
+    // Angles before the current step
+    private float[] prevAngles = new float[0];
+
+    PendulumWaveFrame() {
+    }
+
+    /* Collection, by the wave ..................................................................... */
+
+    void begin(double elapsedSecs) {
+        startSecs = endSecs = elapsedSecs;
+        steps = 0;
+        flipCount = 0;
+        crossingCount = 0;
+        angleFrom = angleTo = 0;
+    }
+
+    void beforeStep(@NotNull PendulumStateStore store, int count) {
+        if (prevAngles.length < count) {
+            prevAngles = new float[Math.max(count, prevAngles.length + (prevAngles.length >> 1))];
+        }
+
+        System.arraycopy(store.angles, 0, prevAngles, 0, count);
+    }
+
+    /**
+     * Records the zero crossings of the step that just moved the given pendulums from {@code stepStartSecs} by {@code dt}
+     * */
+    void afterStep(@NotNull PendulumStateStore store, int count, double stepStartSecs, float dt) {
+        final float[] prev = prevAngles, angles = store.angles;
+        for (int i=0; i < count; i++) {
+            final float a0 = prev[i], a1 = angles[i];
+            if ((a0 < 0 && a1 >= 0) || (a0 > 0 && a1 <= 0)) {
+                addCrossing(i, stepStartSecs + (dt * (double) (a0 / (a0 - a1))));
+            }
+        }
+
+        if (count > 0) {
+            angleTo = Math.max(angleTo, count);
+        }
+
+        steps++;
+    }
+
+    private void addCrossing(int index, double time) {
+        if (crossingCount == crossingIndices.length) {
+            final int capacity = crossingCount << 1;
+            crossingIndices = Arrays.copyOf(crossingIndices, capacity);
+            crossingTimes = Arrays.copyOf(crossingTimes, capacity);
+        }
+
+        crossingIndices[crossingCount] = index;
+        crossingTimes[crossingCount++] = time;
+    }
+
+    void addHighlightFlip(int index, boolean highlighted) {
+        if (flipCount == flipIndices.length) {
+            final int capacity = flipCount << 1;
+            flipIndices = Arrays.copyOf(flipIndices, capacity);
+            flipStates = Arrays.copyOf(flipStates, capacity);
+        }
+
+        flipIndices[flipCount] = index;
+        flipStates[flipCount++] = highlighted;
+    }
+
+    void end(double elapsedSecs, long stateVersion, int count) {
+        endSecs = elapsedSecs;
+        angleVersion = stateVersion;
+        angleTo = Math.min(angleTo, count);
+        if (steps == 0 && endSecs != startSecs) {
+            angleTo = count;        // moved without per-step collection, ex. rewound to start
+        }
+    }
+
+    /* Queries, during the callback ................................................................ */
+
+    /**
+     * @return elapsed simulation time (in s) before this update
+     * */
+    public double startSeconds() {
+        return startSecs;
+    }
+
+    /**
+     * @return elapsed simulation time (in s) after this update
+     * */
+    public double endSeconds() {
+        return endSecs;
+    }
+
+    /**
+     * @return number of physics steps in this update
+     * */
+    public int steps() {
+        return steps;
+    }
+
+    public int highlightFlipCount() {
+        return flipCount;
+    }
+
+    /**
+     * @param k in range [0, {@link #highlightFlipCount()})
+     * @return index of the pendulum of the k<sup>th</sup> highlight flip
+     * */
+    public int highlightFlipIndex(int k) {
+        return flipIndices[k];
+    }
+
+    /**
+     * @param k in range [0, {@link #highlightFlipCount()})
+     * @return whether the pendulum of the k<sup>th</sup> highlight flip became highlighted
+     * */
+    public boolean highlightFlipState(int k) {
+        return flipStates[k];
+    }
+
+    /**
+     * @return number of angle zero crossings in this update, in order of step
+     * */
+    public int crossingCount() {
+        return crossingCount;
+    }
+
+    /**
+     * @param k in range [0, {@link #crossingCount()})
+     * @return index of the pendulum of the k<sup>th</sup> zero crossing
+     * */
+    public int crossingIndex(int k) {
+        return crossingIndices[k];
+    }
+
+    /**
+     * @param k in range [0, {@link #crossingCount()})
+     * @return elapsed simulation time (in s) of the k<sup>th</sup> zero crossing, interpolated within its step
+     * */
+    public double crossingTime(int k) {
+        return crossingTimes[k];
+    }
+
+    /**
+     * @return first index (inclusive) of the pendulums whose angles changed
+     * */
+    public int angleRangeFrom() {
+        return angleFrom;
+    }
+
+    /**
+     * @return last index (exclusive) of the pendulums whose angles changed. Equal to {@link #angleRangeFrom()} if none changed
+     * */
+    public int angleRangeTo() {
+        return angleTo;
+    }
+
+    public boolean hasAngleChanges() {
+        return angleTo > angleFrom;
+    }
+
+    /**
+     * @return state version of the wave after this update. Consumers can skip a frame whose version they have already seen
+     * */
+    public long angleVersion() {
+        return angleVersion;
+    }
+
+}
@@ -0,0 +1,522 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the state of a {@link PendulumWave} after every update as a {@link Flow.Publisher reactive stream} of {@link FrameSnapshot frame snapshots},
+ * for pipelines on other threads, ex. file recorders, network streamers and analytics (see {@link PendulumWave#framePublisher()}).<br>
+ * <br>
+ * The thread that updates the wave never waits for a subscriber: it copies the state once into a pooled snapshot shared by all subscribers,
+ * and hands it to a small per-subscriber buffer. Each subscriber is signalled on the {@link #setExecutor(Executor) executor}, never on the wave thread,
+ * and only as many snapshots as it {@link Flow.Subscription#request(long) requested}. When a subscriber falls behind, its buffer overflows by its
+ * {@link OverflowPolicy}, so it skips frames instead of stalling the physics. Gaps in {@link FrameSnapshot#sequence()} tell how many were skipped.<br>
+ * <br>
+ * A snapshot goes back to the pool once every subscriber it was delivered to returns from {@link Flow.Subscriber#onNext(Object) onNext},
+ * so it is only valid during that call, unless {@link FrameSnapshot#retain() retained}.
+ * */
+public final class PendulumWaveFramePublisher implements Flow.Publisher<PendulumWaveFramePublisher.FrameSnapshot> {
+
+    /**
+     * What a subscriber buffer does with a new frame when full
+     * */
+    public enum OverflowPolicy {
+
+        /**
+         * Keep only the latest undelivered frame, replacing any older one. For consumers that only need the current state, ex. live streamers
+         * */
+        CONFLATE,
+
+        /**
+         * Keep up to the buffer capacity of the latest frames, dropping the oldest one. For consumers that can absorb short bursts, ex. recorders
+         * */
+        DROP_OLDEST
+    }
+
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.CONFLATE;
+
+    /**
+     * Default buffer capacity of {@link OverflowPolicy#DROP_OLDEST} subscribers, in frames
+     * */
+    public static final int DEFAULT_BUFFER_CAPACITY = 16;
+
+    // Most idle snapshots kept for reuse
+    private static final int MAX_POOL_SIZE = 64;
+
+    /**
+     * A copy of the state of a wave after one update. Arrays may be longer than {@link #pendulumCount()}
+     * */
+    public static final class FrameSnapshot {
+
+        @NotNull
+        private final PendulumWaveFramePublisher publisher;
+        private final AtomicInteger refs = new AtomicInteger();
+
+        private long sequence;
+        private int count;
+        private double elapsedSecs;
+        private long stateVersion, lengthsVersion = -1;
+        private float speed;
+        private boolean paused;
+        private float[] angles = new float[0], angVels = new float[0], lengths = new float[0];
+
+        private FrameSnapshot(@NotNull PendulumWaveFramePublisher publisher) {
+            this.publisher = publisher;
+        }
+
+        /**
+         * @return number of this frame, incremented by 1 for every published frame. A gap means frames were dropped for this subscriber
+         * */
+        public long sequence() {
+            return sequence;
+        }
+
+        public int pendulumCount() {
+            return count;
+        }
+
+        public double elapsedSeconds() {
+            return elapsedSecs;
+        }
+
+        public long stateVersion() {
+            return stateVersion;
+        }
+
+        public float speed() {
+            return speed;
+        }
+
+        public boolean isPaused() {
+            return paused;
+        }
+
+        /**
+         * @return angles (in radians) of the first {@link #pendulumCount()} pendulums
+         * */
+        public float @NotNull[] angles() {
+            return angles;
+        }
+
+        /**
+         * @return angular velocities (in rad/s) of the first {@link #pendulumCount()} pendulums
+         * */
+        public float @NotNull[] angularVelocities() {
+            return angVels;
+        }
+
+        /**
+         * @return lengths (in m) of the first {@link #pendulumCount()} pendulums
+         * */
+        public float @NotNull[] lengths() {
+            return lengths;
+        }
+
+        /**
+         * Keeps this snapshot out of the pool beyond {@link Flow.Subscriber#onNext(Object) onNext}, until a matching {@link #release()}
+         * */
+        public FrameSnapshot retain() {
+            refs.incrementAndGet();
+            return this;
+        }
+
+        /**
+         * Releases a {@link #retain() retained} snapshot. It must not be used afterwards
+         * */
+        public void release() {
+            final int r = refs.decrementAndGet();
+            if (r == 0) {
+                publisher.recycle(this);
+            } else if (r < 0) {
+                throw new IllegalStateException("Frame snapshot released more times than retained");
+            }
+        }
+    }
+
+
+    private static final Subscription[] EMPTY = new Subscription[0];
+
+    @NotNull
+    private volatile Executor mExecutor = ForkJoinPool.commonPool();
+
+    // Replaced, never modified, on every change
+    private volatile Subscription[] mSubscriptions = EMPTY;
+    private boolean mClosed;        // guarded by this
+
+    // Idle snapshots, guarded by itself
+    private final FrameSnapshot[] mPool = new FrameSnapshot[MAX_POOL_SIZE];
+    private int mPoolSize;
+
+    // Writer state, on the wave thread
+    private long mSequence;
+    private int mLastCount = -1;
+    private long mLastStateVersion, mLastLengthsVersion;
+    private double mLastElapsedSecs;
+    private float mLastSpeed;
+    private boolean mLastPaused;
+
+    PendulumWaveFramePublisher() {
+    }
+
+    @NotNull
+    public Executor getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * @param executor executor on which subscribers are signalled, for subscriptions made from now on. Default: {@link ForkJoinPool#commonPool()}.
+     *                 Subscribers that block in onNext, ex. on file or network I/O, should get one of their own so they do not hold up the common pool
+     * */
+    public PendulumWaveFramePublisher setExecutor(@NotNull Executor executor) {
+        mExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Subscribes with the {@link #DEFAULT_OVERFLOW_POLICY default overflow policy}
+     * */
+    @Override
+    public void subscribe(@NotNull Flow.Subscriber<? super FrameSnapshot> subscriber) {
+        subscribe(subscriber, DEFAULT_OVERFLOW_POLICY, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param policy what to do with new frames when the subscriber falls behind
+     * @param bufferCapacity most undelivered frames kept for the subscriber with {@link OverflowPolicy#DROP_OLDEST}. Ignored with
+     *                       {@link OverflowPolicy#CONFLATE}, which keeps only one
+     * */
+    public void subscribe(@NotNull Flow.Subscriber<? super FrameSnapshot> subscriber, @NotNull OverflowPolicy policy, int bufferCapacity) {
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException("Buffer capacity must be >= 1, given: " + bufferCapacity);
+        }
+
+        final Subscription s = new Subscription(this, subscriber, policy == OverflowPolicy.CONFLATE? 1: bufferCapacity, mExecutor);
+        subscriber.onSubscribe(s);
+
+        synchronized (this) {
+            if (!mClosed) {
+                final Subscription[] subs = mSubscriptions;
+                final Subscription[] result = new Subscription[subs.length + 1];
+                System.arraycopy(subs, 0, result, 0, subs.length);
+                result[subs.length] = s;
+                mSubscriptions = result;
+                return;
+            }
+        }
+
+        s.complete();
+    }
+
+    private synchronized void remove(@NotNull Subscription s) {
+        final Subscription[] subs = mSubscriptions;
+        int index = -1;
+        for (int i=0; i < subs.length; i++) {
+            if (subs[i] == s) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1)
+            return;
+
+        if (subs.length == 1) {
+            mSubscriptions = EMPTY;
+            return;
+        }
+
+        final Subscription[] result = new Subscription[subs.length - 1];
+        System.arraycopy(subs, 0, result, 0, index);
+        System.arraycopy(subs, index + 1, result, index, subs.length - index - 1);
+        mSubscriptions = result;
+    }
+
+    public boolean hasSubscribers() {
+        return mSubscriptions.length > 0;
+    }
+
+    public int subscriberCount() {
+        return mSubscriptions.length;
+    }
+
+    /**
+     * Completes all subscribers once they have received their buffered frames. Later subscribers complete immediately
+     * */
+    public void close() {
+        final Subscription[] subs;
+        synchronized (this) {
+            if (mClosed)
+                return;
+
+            mClosed = true;
+            subs = mSubscriptions;
+            mSubscriptions = EMPTY;
+        }
+
+        for (Subscription s: subs) {
+            s.complete();
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return mClosed;
+    }
+
+    /* Pool ....................................................................................... */
+
+    @NotNull
+    private FrameSnapshot obtain() {
+        synchronized (mPool) {
+            if (mPoolSize > 0) {
+                final FrameSnapshot f = mPool[--mPoolSize];
+                mPool[mPoolSize] = null;
+                return f;
+            }
+        }
+
+        return new FrameSnapshot(this);
+    }
+
+    private void recycle(@NotNull FrameSnapshot f) {
+        synchronized (mPool) {
+            if (mPoolSize < mPool.length) {
+                mPool[mPoolSize++] = f;
+            }
+        }
+    }
+
+    /* Publication, by the wave ..................................................................... */
+
+    /**
+     * Publishes the current state of the wave to all subscribers, unless nothing changed. Must be called on the thread that updates the wave
+     * */
+    void publish(@NotNull PendulumWave wave) {
+        final Subscription[] subs = mSubscriptions;
+        if (subs.length == 0)
+            return;
+
+        final PendulumStateStore store = wave.stateStore();
+        final int count = wave.pendulumCount();
+        final double elapsed = wave.getElapsedSeconds();
+        final float speed = wave.getSpeed();
+        final boolean paused = wave.isPaused();
+
+        if (count == mLastCount && store.stateVersion == mLastStateVersion && store.lengthsVersion == mLastLengthsVersion
+                && elapsed == mLastElapsedSecs && speed == mLastSpeed && paused == mLastPaused)
+            return;     // nothing changed
+
+        final FrameSnapshot f = obtain();
+        if (f.angles.length < count) {
+            final int capacity = Math.max(count, f.angles.length + (f.angles.length >> 1));
+            f.angles = new float[capacity];
+            f.angVels = new float[capacity];
+            f.lengths = new float[capacity];
+            f.lengthsVersion = -1;
+        }
+
+        System.arraycopy(store.angles, 0, f.angles, 0, count);
+        System.arraycopy(store.angVels, 0, f.angVels, 0, count);
+        if (f.lengthsVersion != store.lengthsVersion || f.count != count) {
+            store.copyLengths(0, count, f.lengths, 0);       // pooled buffers keep lengths that did not change
+        }
+
+        f.sequence = ++mSequence;
+        f.count = count;
+        f.elapsedSecs = elapsed;
+        f.stateVersion = store.stateVersion;
+        f.lengthsVersion = store.lengthsVersion;
+        f.speed = speed;
+        f.paused = paused;
+
+        mLastCount = count;
+        mLastStateVersion = store.stateVersion;
+        mLastLengthsVersion = store.lengthsVersion;
+        mLastElapsedSecs = elapsed;
+        mLastSpeed = speed;
+        mLastPaused = paused;
+
+        f.refs.set(subs.length);
+        for (Subscription s: subs) {
+            s.offer(f);
+        }
+    }
+
+
+    /**
+     * Subscription of one subscriber: a bounded ring of undelivered frames, filled by the wave thread and drained on the executor,
+     * one drain at a time so that signals never overlap
+     * */
+    private static final class Subscription implements Flow.Subscription, Runnable {
+
+        @NotNull
+        private final PendulumWaveFramePublisher publisher;
+        @NotNull
+        private final Flow.Subscriber<? super FrameSnapshot> subscriber;
+        @NotNull
+        private final Executor executor;
+
+        // Undelivered frames, guarded by this
+        private final FrameSnapshot[] ring;
+        private int head, size;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled, completing;
+        private volatile Throwable error;
+
+        Subscription(@NotNull PendulumWaveFramePublisher publisher, @NotNull Flow.Subscriber<? super FrameSnapshot> subscriber, int capacity, @NotNull Executor executor) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+            this.executor = executor;
+            ring = new FrameSnapshot[capacity];
+        }
+
+        void offer(@NotNull FrameSnapshot f) {
+            FrameSnapshot evicted = null;
+            synchronized (this) {
+                if (cancelled) {
+                    evicted = f;
+                } else {
+                    if (size == ring.length) {
+                        evicted = ring[head];       // drop the oldest
+                        ring[head] = null;
+                        head = (head + 1) % ring.length;
+                        size--;
+                    }
+
+                    ring[(head + size) % ring.length] = f;
+                    size++;
+                }
+            }
+
+            if (evicted != null) {
+                evicted.release();
+            }
+
+            schedule();
+        }
+
+        private synchronized FrameSnapshot poll() {
+            if (size == 0)
+                return null;
+
+            final FrameSnapshot f = ring[head];
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+            return f;
+        }
+
+        private void clear() {
+            FrameSnapshot f;
+            while ((f = poll()) != null) {
+                f.release();
+            }
+        }
+
+        void complete() {
+            completing = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested frames must be > 0, given: " + n);
+            } else {
+                demand.getAndUpdate(d -> d + n < 0? Long.MAX_VALUE: d + n);     // saturate on overflow
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            publisher.remove(this);
+            schedule();     // releases buffered frames
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException exc) {
+                    cancelled = true;
+                    publisher.remove(this);
+                    clear();
+                }
+            }
+        }
+
+        /**
+         * Drains buffered frames up to the demand
+         * */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    clear();
+                    return;     // terminal: wip stays non-zero, so nothing is scheduled again
+                }
+
+                final Throwable err = error;
+                if (err != null) {
+                    terminate();
+                    subscriber.onError(err);
+                    return;
+                }
+
+                final long d = demand.get();
+                long emitted = 0;
+                while (emitted != d && !cancelled) {
+                    final FrameSnapshot f = poll();
+                    if (f == null)
+                        break;
+
+                    try {
+                        subscriber.onNext(f);
+                    } catch (Throwable t) {
+                        f.release();
+                        terminate();
+                        subscriber.onError(t);
+                        return;
+                    }
+
+                    f.release();
+                    emitted++;
+                }
+
+                if (emitted > 0 && d != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+
+                if (completing && !cancelled && isEmpty()) {
+                    terminate();
+                    subscriber.onComplete();
+                    return;
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void terminate() {
+            cancelled = true;
+            publisher.remove(this);
+            clear();
+        }
+    }
+
+}
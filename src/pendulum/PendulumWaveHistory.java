@@ -0,0 +1,157 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A bounded ring buffer of {@link PendulumWave} state checkpoints, recorded at a fixed interval of simulation time.<br>
+ * <br>
+ * The Velocity Verlet integrator is time-reversible only without drag. With drag, the wave seeks back by restoring the latest checkpoint
+ * before the target time and stepping forward from there, so only one state per interval has to be stored instead of every frame.
+ * */
+final class PendulumWaveHistory {
+
+    public static final int DEFAULT_CAPACITY = 240;
+    public static final double DEFAULT_INTERVAL_SECS = 0.5;
+
+    private final int capacity;
+    private final double intervalSecs;
+
+    // Simulation time (in s) of each checkpoint
+    private final double[] times;
+
+    // Angles and angular velocities of each checkpoint. Reused across records
+    private final float[][] angles, angVels;
+
+    // index of the oldest checkpoint, and the number of checkpoints
+    private int head, size;
+    private int pendulumCount = -1;
+
+    PendulumWaveHistory(int capacity, double intervalSecs) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("History capacity must be >= 1, given: " + capacity);
+        }
+
+        if (intervalSecs <= 0) {
+            throw new IllegalArgumentException("History interval must be > 0, given: " + intervalSecs);
+        }
+
+        this.capacity = capacity;
+        this.intervalSecs = intervalSecs;
+        times = new double[capacity];
+        angles = new float[capacity][];
+        angVels = new float[capacity][];
+    }
+
+    PendulumWaveHistory() {
+        this(DEFAULT_CAPACITY, DEFAULT_INTERVAL_SECS);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public double intervalSecs() {
+        return intervalSecs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return time (in s) covered by the history, from the oldest checkpoint to the newest
+     * */
+    public double spanSecs() {
+        return size == 0? 0: timeAt(size - 1) - timeAt(0);
+    }
+
+    private int slot(int index) {
+        return (head + index) % capacity;
+    }
+
+    /**
+     * @param index index of the checkpoint, 0 being the oldest
+     * */
+    public double timeAt(int index) {
+        return times[slot(index)];
+    }
+
+    public void clear() {
+        head = size = 0;
+    }
+
+    /**
+     * Records the current state of the given wave if at least one interval has passed since the newest checkpoint
+     * */
+    public void recordIfDue(@NotNull PendulumWave wave, double timeSecs) {
+        final int count = wave.pendulumCount();
+        if (count != pendulumCount) {
+            clear();
+            pendulumCount = count;
+        }
+
+        if (size > 0 && timeSecs < timeAt(size - 1) + intervalSecs)
+            return;
+
+        final int slot;
+        if (size < capacity) {
+            slot = slot(size++);
+        } else {
+            slot = head;        // overwrite the oldest
+            head = (head + 1) % capacity;
+        }
+
+        if (angles[slot] == null || angles[slot].length != count) {
+            angles[slot] = new float[count];
+            angVels[slot] = new float[count];
+        }
+
+        wave.copyAngles(angles[slot], 0, count);
+        wave.copyAngularVelocities(angVels[slot], 0, count);
+
+        times[slot] = timeSecs;
+    }
+
+    /**
+     * @return index of the newest checkpoint at or before the given time, or {@code -1} if there is none
+     * */
+    public int latestAtOrBefore(double timeSecs) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (timeAt(i) <= timeSecs)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Restores the checkpoint at the given index into the pendulums of the given wave
+     *
+     * @return time (in s) of the restored checkpoint
+     * */
+    public double restore(int index, @NotNull PendulumWave wave) {
+        final int slot = slot(index);
+        final float[] a = angles[slot], w = angVels[slot];
+        final int count = wave.pendulumCount();
+
+        for (int i=0; i < count; i++) {
+            wave.pendulumAt(i).restoreState(wave, a[i], w[i]);
+        }
+
+        return times[slot];
+    }
+
+    /**
+     * Discards all checkpoints newer than the given time. Called when the simulation moves backwards
+     * */
+    public void discardAfter(double timeSecs) {
+        while (size > 0 && timeAt(size - 1) > timeSecs) {
+            size--;
+        }
+    }
+
+}
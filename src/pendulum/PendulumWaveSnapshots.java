@@ -0,0 +1,208 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Lock-free consistent snapshots of a {@link PendulumWave} for readers on any thread, ex. metrics exporters, recorders and network streamers.<br>
+ * <br>
+ * The wave is not thread-safe, so its thread (the writer) copies the state into a published buffer after every update, guarded by a
+ * <strong>seqlock</strong>: the sequence number is odd while the buffer is being written and is incremented again after. A reader copies the
+ * buffer into its own {@link Snapshot} and retries if the sequence was odd or changed meanwhile, so it never observes a half-updated step.
+ * The writer never waits for readers; it only pays for an array copy, and nothing at all when the state did not change.
+ * */
+public final class PendulumWaveSnapshots {
+
+    /**
+     * A consistent copy of the state of a wave. Arrays may be longer than {@link #pendulumCount()}
+     * */
+    public static final class Snapshot {
+
+        private long sequence;
+        private int count;
+        private double elapsedSecs;
+        private long stateVersion;
+        private float gravity, drag, mass, startAngle, speed;
+        private boolean paused;
+        private float[] angles = new float[0], angVels = new float[0], lengths = new float[0];
+
+        public long sequence() {
+            return sequence;
+        }
+
+        public int pendulumCount() {
+            return count;
+        }
+
+        public double elapsedSeconds() {
+            return elapsedSecs;
+        }
+
+        public long stateVersion() {
+            return stateVersion;
+        }
+
+        public float gravity() {
+            return gravity;
+        }
+
+        public float drag() {
+            return drag;
+        }
+
+        public float pendulumMass() {
+            return mass;
+        }
+
+        public float pendulumStartAngle() {
+            return startAngle;
+        }
+
+        public float speed() {
+            return speed;
+        }
+
+        public boolean isPaused() {
+            return paused;
+        }
+
+        /**
+         * @return angles (in radians) of the first {@link #pendulumCount()} pendulums
+         * */
+        public float @NotNull[] angles() {
+            return angles;
+        }
+
+        /**
+         * @return angular velocities (in rad/s) of the first {@link #pendulumCount()} pendulums
+         * */
+        public float @NotNull[] angularVelocities() {
+            return angVels;
+        }
+
+        /**
+         * @return lengths (in m) of the first {@link #pendulumCount()} pendulums
+         * */
+        public float @NotNull[] lengths() {
+            return lengths;
+        }
+    }
+
+
+    // Odd while the writer is updating the published fields
+    private volatile long seq;
+
+    // Published fields, written only by the writer between sequence increments
+    private int pCount;
+    private double pElapsedSecs;
+    private long pStateVersion, pLengthsVersion = -1;
+    private float pGravity, pDrag, pMass, pStartAngle, pSpeed;
+    private boolean pPaused;
+    private float[] pAngles = new float[0], pAngVels = new float[0], pLengths = new float[0];
+
+    PendulumWaveSnapshots() {
+    }
+
+    /**
+     * Publishes the current state of the wave. Must be called on the thread that updates the wave
+     * */
+    void publish(@NotNull PendulumWave wave) {
+        final PendulumStateStore store = wave.stateStore();
+        final int count = wave.pendulumCount();
+        final double elapsed = wave.getElapsedSeconds();
+
+        if (count == pCount && store.stateVersion == pStateVersion && store.lengthsVersion == pLengthsVersion && elapsed == pElapsedSecs
+                && wave.gravity() == pGravity && wave.drag() == pDrag && wave.getPendulumMass() == pMass && wave.getPendulumStartAngle() == pStartAngle
+                && wave.getSpeed() == pSpeed && wave.isPaused() == pPaused)
+            return;     // nothing changed
+
+        final long s = seq;
+        seq = s + 1;
+        VarHandle.storeStoreFence();        // no field write may become visible before the odd sequence
+
+        if (pAngles.length < count) {
+            final int capacity = Math.max(count, pAngles.length + (pAngles.length >> 1));
+            pAngles = new float[capacity];
+            pAngVels = new float[capacity];
+            pLengths = new float[capacity];
+        }
+
+        System.arraycopy(store.angles, 0, pAngles, 0, count);
+        System.arraycopy(store.angVels, 0, pAngVels, 0, count);
+        if (store.lengthsVersion != pLengthsVersion || count != pCount) {
+            store.copyLengths(0, count, pLengths, 0);
+        }
+
+        pCount = count;
+        pElapsedSecs = elapsed;
+        pStateVersion = store.stateVersion;
+        pLengthsVersion = store.lengthsVersion;
+        pGravity = wave.gravity();
+        pDrag = wave.drag();
+        pMass = wave.getPendulumMass();
+        pStartAngle = wave.getPendulumStartAngle();
+        pSpeed = wave.getSpeed();
+        pPaused = wave.isPaused();
+
+        seq = s + 2;        // volatile write: releases all of the above
+    }
+
+    /**
+     * @return sequence number of the latest publication. Even, and incremented by 2 on every publication
+     * */
+    public long sequence() {
+        return seq & ~1L;
+    }
+
+    /**
+     * Takes a consistent copy of the latest published state. Can be called on any thread, and never blocks the writer.
+     *
+     * @param reuse a snapshot to overwrite, or {@code null} to create a new one. Its arrays are reused when large enough
+     * */
+    @NotNull
+    public Snapshot read(@Nullable Snapshot reuse) {
+        final Snapshot out = reuse != null? reuse: new Snapshot();
+
+        while (true) {
+            final long s1 = seq;
+            if ((s1 & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            final int count = pCount;
+            final float[] angles = pAngles, angVels = pAngVels, lengths = pLengths;
+            if (count > angles.length || count > angVels.length || count > lengths.length) {
+                continue;       // arrays replaced meanwhile
+            }
+
+            if (out.angles.length < count) {
+                out.angles = new float[count];
+                out.angVels = new float[count];
+                out.lengths = new float[count];
+            }
+
+            System.arraycopy(angles, 0, out.angles, 0, count);
+            System.arraycopy(angVels, 0, out.angVels, 0, count);
+            System.arraycopy(lengths, 0, out.lengths, 0, count);
+            out.count = count;
+            out.elapsedSecs = pElapsedSecs;
+            out.stateVersion = pStateVersion;
+            out.gravity = pGravity;
+            out.drag = pDrag;
+            out.mass = pMass;
+            out.startAngle = pStartAngle;
+            out.speed = pSpeed;
+            out.paused = pPaused;
+
+            VarHandle.loadLoadFence();      // all reads above complete before re-reading the sequence
+            if (seq == s1) {
+                out.sequence = s1;
+                return out;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,468 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming spatial spectrum of a {@link PendulumWave}: the FFT of the horizontal bob displacements <strong>sin(theta_i)</strong> across the
+ * pendulum index, and the dominant wavenumbers over time.<br>
+ * <br>
+ * {@link #onFrame(PendulumWave)} must be called on the thread that updates the wave. Every Nth frame, it copies the angles into a preallocated
+ * buffer and hands them to a worker thread, unless the previous analysis is still running. The worker computes an in-place radix-2 FFT
+ * (zero padded to a power of 2) in preallocated arrays, and appends the dominant peaks, the spectral entropy and a classified {@link Pattern}
+ * to a fixed-capacity history of primitive arrays. Nothing is allocated per analysis, except when the pendulum count grows.<br>
+ * <br>
+ * Wavenumbers are in cycles across the whole row of pendulums: 0 -> all aligned, count / 2 -> neighbours on opposite sides.
+ * */
+public class PendulumWaveSpectrum {
+
+    public static final int DEFAULT_FRAME_INTERVAL = 2;
+    public static final int DEFAULT_HISTORY_CAPACITY = 1 << 14;
+
+    /**
+     * Number of dominant peaks tracked per analysis
+     * */
+    public static final int PEAKS = 3;
+
+    // Fraction of the power in the dominant peak, below which the wave is considered disordered
+    private static final float DOMINANT_POWER_FRACTION = 0.4f;
+
+    // Largest number of groups classified as a k-group pattern
+    private static final int MAX_GROUPS = 6;
+
+    public enum Pattern {
+        NONE("-"),
+        ALIGNED("Aligned"),
+        TRAVELLING_WAVE("Travelling wave"),
+        SPLIT("Half split"),
+        GROUPS("Groups"),
+        DISORDERED("Disordered");
+
+        @NotNull
+        public final String label;
+
+        Pattern(@NotNull String label) {
+            this.label = label;
+        }
+
+        private static final Pattern[] VALUES = values();
+    }
+
+
+    private volatile int frameInterval;
+    private boolean mEnabled = true;
+    private int mFrameCounter;
+
+    @NotNull
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        final Thread t = new Thread(r, "PendulumWave-Spectrum");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    @NotNull
+    private final Runnable mAnalyzeTask = this::analyze;
+    private volatile boolean mBusy;
+
+    // Input, written by the wave thread while the worker is idle
+    private float[] mInput = new float[0];
+    private int mInputCount;
+    private double mInputTime;
+
+    // FFT buffers, used only by the worker
+    private double[] mRe = new double[0], mIm = new double[0];
+    private double[] mCos = new double[0], mSin = new double[0];
+    private int[] mBitReverse = new int[0];
+    private double[] mPower = new double[0];
+
+    // History ring, written by the worker. Entry i is at index (i % capacity)
+    private final int capacity;
+    private final double[] hTime;
+    private final int[] hCount;
+    private final float[] hWavenumber;          // PEAKS per entry
+    private final float[] hPowerFraction;       // PEAKS per entry
+    private final float[] hEntropy;
+    private final byte[] hPattern;
+    private final byte[] hGroups;
+    private volatile long mWritten;
+
+    public PendulumWaveSpectrum(int frameInterval, int historyCapacity) {
+        this.frameInterval = checkFrameInterval(frameInterval);
+
+        if (historyCapacity < 1) {
+            throw new IllegalArgumentException("History capacity must be >= 1, given: " + historyCapacity);
+        }
+
+        capacity = historyCapacity;
+        hTime = new double[capacity];
+        hCount = new int[capacity];
+        hWavenumber = new float[capacity * PEAKS];
+        hPowerFraction = new float[capacity * PEAKS];
+        hEntropy = new float[capacity];
+        hPattern = new byte[capacity];
+        hGroups = new byte[capacity];
+    }
+
+    public PendulumWaveSpectrum() {
+        this(DEFAULT_FRAME_INTERVAL, DEFAULT_HISTORY_CAPACITY);
+    }
+
+    public int getFrameInterval() {
+        return frameInterval;
+    }
+
+    /**
+     * @param frameInterval analyze every Nth frame. Must be >= 1
+     * */
+    public PendulumWaveSpectrum setFrameInterval(int frameInterval) {
+        this.frameInterval = checkFrameInterval(frameInterval);
+        return this;
+    }
+
+    private static int checkFrameInterval(int frameInterval) {
+        if (frameInterval < 1) {
+            throw new IllegalArgumentException("Frame interval must be >= 1, given: " + frameInterval);
+        }
+
+        return frameInterval;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public PendulumWaveSpectrum setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Hands the current displacements to the worker if an analysis is due and the worker is idle.
+     * Must be called on the thread that updates the wave, ex. once per frame
+     * */
+    public void onFrame(@NotNull PendulumWave wave) {
+        if (!mEnabled || ++mFrameCounter < frameInterval || mBusy)
+            return;
+
+        mFrameCounter = 0;
+
+        final int count = wave.pendulumCount();
+        if (count < 2)
+            return;
+
+        if (mInput.length < count) {
+            mInput = new float[count];
+        }
+
+        wave.copyAngles(mInput, 0, count);
+        mInputCount = count;
+        mInputTime = wave.getElapsedSeconds();
+
+        mBusy = true;           // publishes the input to the worker
+        executor.execute(mAnalyzeTask);
+    }
+
+    /* Worker ................................................................................. */
+
+    private void ensureFftSize(int size) {
+        if (mRe.length == size)
+            return;
+
+        mRe = new double[size];
+        mIm = new double[size];
+        mPower = new double[(size / 2) + 1];
+        mCos = new double[size / 2];
+        mSin = new double[size / 2];
+        mBitReverse = new int[size];
+
+        for (int i=0; i < size / 2; i++) {
+            mCos[i] = Math.cos(2 * Math.PI * i / size);
+            mSin[i] = -Math.sin(2 * Math.PI * i / size);
+        }
+
+        final int bits = Integer.numberOfTrailingZeros(size);
+        for (int i=0; i < size; i++) {
+            mBitReverse[i] = bits == 0? 0: Integer.reverse(i) >>> (Integer.SIZE - bits);
+        }
+    }
+
+    /**
+     * In-place iterative radix-2 FFT of {@link #mRe}, {@link #mIm}
+     * */
+    private void fft() {
+        final double[] re = mRe, im = mIm, cos = mCos, sin = mSin;
+        final int[] rev = mBitReverse;
+        final int n = re.length;
+
+        for (int i=0; i < n; i++) {
+            final int j = rev[i];
+            if (j > i) {
+                final double tr = re[i], ti = im[i];
+                re[i] = re[j];
+                im[i] = im[j];
+                re[j] = tr;
+                im[j] = ti;
+            }
+        }
+
+        for (int len=2; len <= n; len <<= 1) {
+            final int half = len >> 1, stride = n / len;
+            for (int start=0; start < n; start += len) {
+                for (int k=0; k < half; k++) {
+                    final double wr = cos[k * stride], wi = sin[k * stride];
+                    final int a = start + k, b = a + half;
+                    final double xr = (re[b] * wr) - (im[b] * wi);
+                    final double xi = (re[b] * wi) + (im[b] * wr);
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+
+    private void analyze() {
+        try {
+            final int count = mInputCount;
+            final int size = Integer.highestOneBit(Math.max(count - 1, 1)) << 1;
+            ensureFftSize(size);
+
+            final float[] input = mInput;
+            final double[] re = mRe, im = mIm;
+            for (int i=0; i < size; i++) {
+                re[i] = i < count? Math.sin(input[i]): 0;
+                im[i] = 0;
+            }
+
+            fft();
+
+            // One-sided power spectrum
+            final double[] power = mPower;
+            final int bins = power.length;
+            double total = 0;
+            for (int k=0; k < bins; k++) {
+                power[k] = (re[k] * re[k]) + (im[k] * im[k]);
+                total += power[k];
+            }
+
+            final long entry = mWritten;
+            final int slot = (int) (entry % capacity);
+            hTime[slot] = mInputTime;
+            hCount[slot] = count;
+
+            // Normalized spectral entropy in [0, 1]
+            double entropy = 0;
+            if (total > 0) {
+                for (int k=0; k < bins; k++) {
+                    final double p = power[k] / total;
+                    if (p > 0) {
+                        entropy -= p * Math.log(p);
+                    }
+                }
+
+                entropy /= Math.log(bins);
+            }
+
+            hEntropy[slot] = (float) entropy;
+
+            // Dominant local maxima, with the power of each peak summed over its neighbouring bins (leakage from zero padding)
+            for (int p=0; p < PEAKS; p++) {
+                int best = -1;
+                double bestPower = 0;
+
+                for (int k=0; k < bins; k++) {
+                    final double pk = power[k];
+                    if (pk > bestPower && (k == 0 || pk >= power[k - 1]) && (k == bins - 1 || pk >= power[k + 1])) {
+                        best = k;
+                        bestPower = pk;
+                    }
+                }
+
+                final int at = (slot * PEAKS) + p;
+                if (best == -1 || total <= 0) {
+                    hWavenumber[at] = Float.NaN;
+                    hPowerFraction[at] = 0;
+                    continue;
+                }
+
+                final double peakPower = power[best] + (best > 0? power[best - 1]: 0) + (best < bins - 1? power[best + 1]: 0);
+                hWavenumber[at] = (float) (best * (double) count / size);
+                hPowerFraction[at] = (float) Math.min(peakPower / total, 1);
+
+                // Exclude this peak from the next search
+                power[best] = 0;
+                if (best > 0) power[best - 1] = 0;
+                if (best < bins - 1) power[best + 1] = 0;
+            }
+
+            classify(slot, count);
+            mWritten = entry + 1;        // publishes the entry
+        } finally {
+            mBusy = false;
+        }
+    }
+
+    private void classify(int slot, int count) {
+        final float k = hWavenumber[slot * PEAKS];
+        final float fraction = hPowerFraction[slot * PEAKS];
+        Pattern pattern;
+        int groups = 0;
+
+        if (Float.isNaN(k)) {
+            pattern = Pattern.NONE;
+        } else if (fraction < DOMINANT_POWER_FRACTION) {
+            pattern = Pattern.DISORDERED;
+        } else {
+            // Cycles per pendulum, close to p / q for a q-group pattern
+            final double nu = k / count;
+            final double tolerance = 1.5 / count;
+            pattern = Pattern.TRAVELLING_WAVE;
+
+            if (nu < tolerance) {
+                pattern = Pattern.ALIGNED;
+                groups = 1;
+            } else {
+                for (int q=2; q <= MAX_GROUPS && q <= count; q++) {
+                    final double nearest = Math.rint(nu * q) / q;
+                    if (nearest > 0 && Math.abs(nu - nearest) < tolerance) {
+                        pattern = q == 2? Pattern.SPLIT: Pattern.GROUPS;
+                        groups = q;
+                        break;
+                    }
+                }
+            }
+        }
+
+        hPattern[slot] = (byte) pattern.ordinal();
+        hGroups[slot] = (byte) groups;
+    }
+
+    /* Queries ................................................................................. */
+
+    /**
+     * @return number of analyses made so far. Only the last {@link #historyCapacity()} of them are retained
+     * */
+    public long analysisCount() {
+        return mWritten;
+    }
+
+    public int historyCapacity() {
+        return capacity;
+    }
+
+    private int latestSlot() {
+        final long written = mWritten;
+        return written == 0? -1: (int) ((written - 1) % capacity);
+    }
+
+    /**
+     * @return pattern classified by the latest analysis
+     * */
+    @NotNull
+    public Pattern latestPattern() {
+        final int slot = latestSlot();
+        return slot == -1? Pattern.NONE: Pattern.VALUES[hPattern[slot]];
+    }
+
+    /**
+     * @return number of groups of the latest {@link Pattern#GROUPS} / {@link Pattern#SPLIT} pattern, 1 if aligned, otherwise 0
+     * */
+    public int latestGroups() {
+        final int slot = latestSlot();
+        return slot == -1? 0: hGroups[slot];
+    }
+
+    /**
+     * @param peak index of the peak, 0 for the dominant one
+     * @return wavenumber (in cycles across the row of pendulums) of the given peak in the latest analysis, or NaN
+     * */
+    public float latestWavenumber(int peak) {
+        final int slot = latestSlot();
+        return slot == -1? Float.NaN: hWavenumber[(slot * PEAKS) + peak];
+    }
+
+    /**
+     * @param peak index of the peak, 0 for the dominant one
+     * @return fraction of the total power in the given peak in the latest analysis
+     * */
+    public float latestPowerFraction(int peak) {
+        final int slot = latestSlot();
+        return slot == -1? 0: hPowerFraction[(slot * PEAKS) + peak];
+    }
+
+    /**
+     * @return normalized spectral entropy of the latest analysis, in range [0, 1]. 0 -> a single wavenumber, 1 -> white noise
+     * */
+    public float latestEntropy() {
+        final int slot = latestSlot();
+        return slot == -1? 0: hEntropy[slot];
+    }
+
+    /**
+     * @return a short description of the latest analysis for display, ex. in the HUD
+     * */
+    @NotNull
+    public String latestSummary() {
+        final Pattern pattern = latestPattern();
+        if (pattern == Pattern.NONE)
+            return pattern.label;
+
+        final String name = pattern == Pattern.GROUPS? latestGroups() + " " + pattern.label.toLowerCase(Locale.ROOT): pattern.label;
+        return String.format(Locale.ROOT, "%s  k=%.1f (%.0f%%)", name, latestWavenumber(0), latestPowerFraction(0) * 100);
+    }
+
+    /**
+     * Writes the retained history as CSV: time, pendulum count, pattern, groups, entropy, then the wavenumber and power fraction of each peak.
+     * Entries being written concurrently may be skipped
+     *
+     * @return number of entries written
+     * */
+    public int exportCsv(@NotNull Path path) throws IOException {
+        final long written = mWritten;
+        final long first = Math.max(written - capacity, 0);
+
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            w.write("time,count,pattern,groups,entropy");
+            for (int p=0; p < PEAKS; p++) {
+                w.write(",k" + (p + 1) + ",power" + (p + 1));
+            }
+
+            w.newLine();
+
+            for (long e=first; e < written; e++) {
+                final int slot = (int) (e % capacity);
+                w.write(String.format(Locale.ROOT, "%.4f,%d,%s,%d,%.4f", hTime[slot], hCount[slot], Pattern.VALUES[hPattern[slot]].name(), hGroups[slot], hEntropy[slot]));
+                for (int p=0; p < PEAKS; p++) {
+                    w.write(String.format(Locale.ROOT, ",%.3f,%.4f", hWavenumber[(slot * PEAKS) + p], hPowerFraction[(slot * PEAKS) + p]));
+                }
+
+                w.newLine();
+            }
+        }
+
+        return (int) (written - first);
+    }
+
+    /**
+     * Waits for a pending analysis to finish, and stops the worker thread
+     * */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package pendulum;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Streaming per-pendulum statistics of a {@link PendulumWave}, with constant memory per pendulum: peak amplitude of each half-cycle,
+ * mechanical energy, measured period, and damping ratio, both as measured and as implied by the drag coefficient.<br>
+ * <br>
+ * {@link #onStep(PendulumWave)} is called by the wave after every physics step (see {@link PendulumWave#setStats(PendulumWaveStats)}). It compares
+ * the new state of each pendulum with the previous one, all held in primitive arrays:
+ * <ul>
+ *     <li>a turning point (angular velocity changes sign) ends a half-cycle, and its |angle| is the peak amplitude</li>
+ *     <li>the ratio of successive peaks gives the logarithmic decrement per half-cycle <strong>d</strong>, and the damping ratio
+ *     <strong>zeta = d / sqrt(pi<sup>2</sup> + d<sup>2</sup>)</strong></li>
+ *     <li>upward zero crossings, interpolated linearly within the step, delimit full periods</li>
+ * </ul>
+ * Periods and decrements are averaged with Welford's running mean and variance. Nothing is allocated per step.<br>
+ * <br>
+ * The statistics restart whenever the simulation time moves backwards (rewind, reset) or the pendulum count changes.
+ * */
+public class PendulumWaveStats {
+
+    private int count;
+    private double mLastTime = Double.NaN;
+
+    // State at the previous step
+    private float[] prevAngle = new float[0], prevAngVel = new float[0];
+
+    // Half-cycles
+    private int[] halfCycles = new int[0];
+    private float[] lastPeak = new float[0];
+
+    // Log decrement per half-cycle: Welford running mean and sum of squared deviations
+    private int[] decrementN = new int[0];
+    private double[] decrementMean = new double[0], decrementM2 = new double[0];
+
+    // Periods
+    private double[] lastUpCrossing = new double[0];
+    private int[] periodN = new int[0];
+    private double[] periodMean = new double[0], periodM2 = new double[0];
+    private float[] lastPeriod = new float[0];
+
+    // Energy at the first step, in J
+    private float[] initialEnergy = new float[0];
+
+    private void allocate(int count) {
+        this.count = count;
+        prevAngle = new float[count];
+        prevAngVel = new float[count];
+        halfCycles = new int[count];
+        lastPeak = new float[count];
+        decrementN = new int[count];
+        decrementMean = new double[count];
+        decrementM2 = new double[count];
+        lastUpCrossing = new double[count];
+        periodN = new int[count];
+        periodMean = new double[count];
+        periodM2 = new double[count];
+        lastPeriod = new float[count];
+        initialEnergy = new float[count];
+    }
+
+    /**
+     * Discards all statistics. They restart from the next step
+     * */
+    public void reset() {
+        mLastTime = Double.NaN;
+    }
+
+    private void restart(@NotNull PendulumWave wave, double time) {
+        final int n = wave.pendulumCount();
+        if (n != count || prevAngle.length < n) {
+            allocate(n);
+        }
+
+        final PendulumStateStore s = wave.stateStore();
+        for (int i=0; i < n; i++) {
+            prevAngle[i] = s.angles[i];
+            prevAngVel[i] = s.angVels[i];
+            halfCycles[i] = 0;
+            lastPeak[i] = Float.NaN;
+            decrementN[i] = 0;
+            decrementMean[i] = decrementM2[i] = 0;
+            lastUpCrossing[i] = Double.NaN;
+            periodN[i] = 0;
+            periodMean[i] = periodM2[i] = 0;
+            lastPeriod[i] = Float.NaN;
+            initialEnergy[i] = energy(wave, i);
+        }
+
+        mLastTime = time;
+    }
+
+    /**
+     * Updates the statistics with the current state of the wave. Called by the wave after every step
+     * */
+    void onStep(@NotNull PendulumWave wave) {
+        final double time = wave.getElapsedSeconds();
+        if (Double.isNaN(mLastTime) || time <= mLastTime || wave.pendulumCount() != count) {
+            restart(wave, time);
+            return;
+        }
+
+        final double prevTime = mLastTime;
+        final float dt = (float) (time - prevTime);
+        final PendulumStateStore s = wave.stateStore();
+        final float[] angles = s.angles, angVels = s.angVels;
+
+        for (int i=0; i < count; i++) {
+            final float a0 = prevAngle[i], a1 = angles[i];
+            final float v0 = prevAngVel[i], v1 = angVels[i];
+
+            // Turning point: end of a half-cycle
+            if ((v0 > 0 && v1 <= 0) || (v0 < 0 && v1 >= 0)) {
+                // Velocity is close to linear within a step: integrate it from v0 to 0 at the interpolated turning time
+                final float turnFraction = v0 / (v0 - v1);
+                final float peak = Math.abs(a0 + (0.5f * v0 * turnFraction * dt));
+                final float prevPeak = lastPeak[i];
+                if (prevPeak > 0 && peak > 0) {
+                    final double d = Math.log(prevPeak / peak);
+                    final int n = ++decrementN[i];
+                    final double delta = d - decrementMean[i];
+                    decrementMean[i] += delta / n;
+                    decrementM2[i] += delta * (d - decrementMean[i]);
+                }
+
+                lastPeak[i] = peak;
+                halfCycles[i]++;
+            }
+
+            // Upward zero crossing, interpolated within the step
+            if (a0 < 0 && a1 >= 0) {
+                final double t = prevTime + ((time - prevTime) * (-a0 / (a1 - a0)));
+                final double prevCrossing = lastUpCrossing[i];
+                if (!Double.isNaN(prevCrossing)) {
+                    final double period = t - prevCrossing;
+                    final int n = ++periodN[i];
+                    final double delta = period - periodMean[i];
+                    periodMean[i] += delta / n;
+                    periodM2[i] += delta * (period - periodMean[i]);
+                    lastPeriod[i] = (float) period;
+                }
+
+                lastUpCrossing[i] = t;
+            }
+
+            prevAngle[i] = a1;
+            prevAngVel[i] = v1;
+        }
+
+        mLastTime = time;
+    }
+
+    /* Queries ................................................................................. */
+
+    public int pendulumCount() {
+        return count;
+    }
+
+    private static float energy(@NotNull PendulumWave wave, int i) {
+        final Pendulum p = wave.pendulumAt(i);
+        final float len = p.getLength(), angVel = p.getAngularVelocity();
+        return p.getMass() * ((wave.gravity() * len * (1 - (float) Math.cos(p.getAngle()))) + (0.5f * len * len * angVel * angVel));
+    }
+
+    /**
+     * @return current mechanical energy (in J) of the given pendulum: m g l (1 - cos(theta)) + m l<sup>2</sup> w<sup>2</sup> / 2
+     * */
+    public float energy(@NotNull PendulumWave wave, int i, boolean relative) {
+        final float e = energy(wave, i);
+        return relative? e / initialEnergy[i]: e;
+    }
+
+    /**
+     * @return energy of the given pendulum when the statistics (re)started, in J
+     * */
+    public float initialEnergy(int i) {
+        return initialEnergy[i];
+    }
+
+    /**
+     * @return number of half-cycles (turning points) of the given pendulum
+     * */
+    public int halfCycles(int i) {
+        return halfCycles[i];
+    }
+
+    /**
+     * @return peak amplitude (in radians) of the last half-cycle of the given pendulum, or NaN if none yet
+     * */
+    public float lastPeakAmplitude(int i) {
+        return lastPeak[i];
+    }
+
+    /**
+     * @return last measured period (in s) of the given pendulum, or NaN if none yet
+     * */
+    public float lastPeriod(int i) {
+        return lastPeriod[i];
+    }
+
+    /**
+     * @return mean measured period (in s) of the given pendulum, or NaN if none yet
+     * */
+    public double meanPeriod(int i) {
+        return periodN[i] > 0? periodMean[i]: Double.NaN;
+    }
+
+    /**
+     * @return standard deviation of the measured periods (in s) of the given pendulum, or NaN with less than 2 periods
+     * */
+    public double periodStdDev(int i) {
+        return periodN[i] > 1? Math.sqrt(periodM2[i] / (periodN[i] - 1)): Double.NaN;
+    }
+
+    /**
+     * @return mean logarithmic decrement of the peak amplitude per half-cycle of the given pendulum, or NaN if none yet
+     * */
+    public double meanDecrement(int i) {
+        return decrementN[i] > 0? decrementMean[i]: Double.NaN;
+    }
+
+    /**
+     * @return damping ratio of the given pendulum measured from the decay of its peaks, or NaN if none yet. Negative when driven (negative drag)
+     * */
+    public double measuredDampingRatio(int i) {
+        final double d = meanDecrement(i);
+        return d / Math.sqrt((Math.PI * Math.PI) + (d * d));
+    }
+
+    /**
+     * @return damping ratio of the given pendulum implied by the drag coefficient and its mass, for small swings:
+     * <strong>zeta = b / (2 m w0)</strong>, <strong>w0 = sqrt(g / l)</strong>
+     * */
+    public static double expectedDampingRatio(@NotNull PendulumWave wave, int i) {
+        final Pendulum p = wave.pendulumAt(i);
+        final double w0 = Math.sqrt(wave.gravity() / p.getLength());
+        return wave.drag() / (2 * p.getMass() * w0);
+    }
+
+    /**
+     * @return mean of the {@link #measuredDampingRatio(int) measured damping ratios} of all pendulums that completed a half-cycle, or NaN if none
+     * */
+    public double averageMeasuredDampingRatio() {
+        double sum = 0;
+        int n = 0;
+        for (int i=0; i < count; i++) {
+            if (decrementN[i] > 0) {
+                sum += measuredDampingRatio(i);
+                n++;
+            }
+        }
+
+        return n > 0? sum / n: Double.NaN;
+    }
+
+    /**
+     * @return mean of the {@link #expectedDampingRatio(PendulumWave, int) damping ratios implied by drag} of all pendulums
+     * */
+    public static double averageExpectedDampingRatio(@NotNull PendulumWave wave) {
+        final int n = wave.pendulumCount();
+        double sum = 0;
+        for (int i=0; i < n; i++) {
+            sum += expectedDampingRatio(wave, i);
+        }
+
+        return n > 0? sum / n: Double.NaN;
+    }
+
+}
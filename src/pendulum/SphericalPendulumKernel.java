@@ -0,0 +1,201 @@
+package pendulum;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays integrator for spherical (two-axis) pendulums.<br>
+ * <br>
+ * The two state angles of each pendulum, polar angle <i>theta</i> off the vertical and azimuth <i>phi</i>, are held as the unit direction
+ * <strong>u = (sin(theta) cos(phi), cos(theta), sin(theta) sin(phi))</strong> of the chord (y pointing down) and its rate of change <strong>w = du/dt</strong>.
+ * Unlike the angles themselves, this has no singularity when the pendulum passes under its pivot.<br>
+ * <br>
+ * Equation of motion: <strong>du'/dt = (g/l)(y - (y.u) u) - |w|<sup>2</sup> u - (b/m) w</strong>, integrated with Velocity Verlet, after which u is
+ * renormalized and w is projected onto the tangent plane of the sphere. The update is a plain loop over primitive arrays without calls or branches,
+ * which the JIT can unroll and vectorize.
+ * */
+final class SphericalPendulumKernel {
+
+    // Unit direction of each chord
+    float[] ux, uy, uz;
+
+    // Rate of change of the direction, in s-1
+    float[] wx, wy, wz;
+
+    // Acceleration of the direction at the current state, in s-2. Cached for the Velocity Verlet integrator
+    float[] ax, ay, az;
+
+    SphericalPendulumKernel(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        ux = new float[capacity];
+        uy = new float[capacity];
+        uz = new float[capacity];
+        wx = new float[capacity];
+        wy = new float[capacity];
+        wz = new float[capacity];
+        ax = new float[capacity];
+        ay = new float[capacity];
+        az = new float[capacity];
+    }
+
+    int capacity() {
+        return ux.length;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= ux.length)
+            return;
+
+        final int newCapacity = Math.max(capacity, ux.length + (ux.length >> 1));
+        ux = Arrays.copyOf(ux, newCapacity);
+        uy = Arrays.copyOf(uy, newCapacity);
+        uz = Arrays.copyOf(uz, newCapacity);
+        wx = Arrays.copyOf(wx, newCapacity);
+        wy = Arrays.copyOf(wy, newCapacity);
+        wz = Arrays.copyOf(wz, newCapacity);
+        ax = Arrays.copyOf(ax, newCapacity);
+        ay = Arrays.copyOf(ay, newCapacity);
+        az = Arrays.copyOf(az, newCapacity);
+    }
+
+    /**
+     * Releases the pendulums in range [from, to) from rest in the XY plane at the given polar angle, with an optional azimuthal velocity
+     *
+     * @param azimuthalVelocityRatio initial azimuthal velocity, as a fraction of the velocity of the conical orbit at the start angle.
+     *                               0 -> planar swing, 1 -> circular (conical) orbit, in between -> elliptical orbits
+     * */
+    void reset(int from, int to, float[] lengths, float startAngle, float startAngVel, float azimuthalVelocityRatio, float gravity, float dragPerMass) {
+        ensureCapacity(to);
+
+        final float sin = (float) Math.sin(startAngle), cos = (float) Math.cos(startAngle);
+        for (int i=from; i < to; i++) {
+            ux[i] = sin;
+            uy[i] = cos;
+            uz[i] = 0;
+
+            // Conical pendulum: phi' = sqrt(g / (l cos(theta)))
+            final float conicalRate = cos > 1e-4f? (float) Math.sqrt(gravity / (lengths[i] * cos)): 0;
+            wx[i] = startAngVel * cos;
+            wy[i] = -startAngVel * sin;
+            wz[i] = azimuthalVelocityRatio * conicalRate * sin;
+        }
+
+        updateAcceleration(from, to, lengths, gravity, dragPerMass);
+    }
+
+    /**
+     * Sets the pendulums in range [from, to) to the given planar state in the XY plane, without azimuthal velocity
+     * */
+    void setFromPlanar(int from, int to, float[] angles, float[] angVels, float[] lengths, float gravity, float dragPerMass) {
+        ensureCapacity(to);
+
+        for (int i=from; i < to; i++) {
+            final float sin = (float) Math.sin(angles[i]), cos = (float) Math.cos(angles[i]);
+            ux[i] = sin;
+            uy[i] = cos;
+            uz[i] = 0;
+            wx[i] = angVels[i] * cos;
+            wy[i] = -angVels[i] * sin;
+            wz[i] = 0;
+        }
+
+        updateAcceleration(from, to, lengths, gravity, dragPerMass);
+    }
+
+    private void updateAcceleration(int from, int to, float[] lengths, float gravity, float dragPerMass) {
+        for (int i=from; i < to; i++) {
+            final float x = ux[i], y = uy[i], z = uz[i];
+            final float vx = wx[i], vy = wy[i], vz = wz[i];
+            final float gl = gravity / lengths[i];
+            final float w2 = (vx * vx) + (vy * vy) + (vz * vz);
+
+            ax[i] = (-gl * y * x) - (w2 * x) - (dragPerMass * vx);
+            ay[i] = (gl * (1 - y * y)) - (w2 * y) - (dragPerMass * vy);
+            az[i] = (-gl * y * z) - (w2 * z) - (dragPerMass * vz);
+        }
+    }
+
+    /**
+     * Steps the pendulums in range [from, to) by the given time step. Without drag, the scheme is symmetric so a negative time step retraces the trajectory
+     * */
+    void step(int from, int to, float[] lengths, float gravity, float dragPerMass, float dt) {
+        final float halfDt = 0.5f * dt, halfDt2 = 0.5f * dt * dt;
+
+        for (int i=from; i < to; i++) {
+            final float ax0 = ax[i], ay0 = ay[i], az0 = az[i];
+            float vx = wx[i], vy = wy[i], vz = wz[i];
+
+            // Position, renormalized onto the unit sphere
+            float x = ux[i] + (vx * dt) + (ax0 * halfDt2);
+            float y = uy[i] + (vy * dt) + (ay0 * halfDt2);
+            float z = uz[i] + (vz * dt) + (az0 * halfDt2);
+            final float invNorm = (float) (1 / Math.sqrt((x * x) + (y * y) + (z * z)));
+            x *= invNorm;
+            y *= invNorm;
+            z *= invNorm;
+
+            // Acceleration at the new position, with the predicted velocity for the velocity dependent terms
+            final float px = vx + (ax0 * dt), py = vy + (ay0 * dt), pz = vz + (az0 * dt);
+            final float gl = gravity / lengths[i];
+            final float p2 = (px * px) + (py * py) + (pz * pz);
+            final float ax1 = (-gl * y * x) - (p2 * x) - (dragPerMass * px);
+            final float ay1 = (gl * (1 - y * y)) - (p2 * y) - (dragPerMass * py);
+            final float az1 = (-gl * y * z) - (p2 * z) - (dragPerMass * pz);
+
+            vx += (ax0 + ax1) * halfDt;
+            vy += (ay0 + ay1) * halfDt;
+            vz += (az0 + az1) * halfDt;
+
+            // Project the velocity onto the tangent plane
+            final float radial = (vx * x) + (vy * y) + (vz * z);
+            vx -= radial * x;
+            vy -= radial * y;
+            vz -= radial * z;
+
+            ux[i] = x;
+            uy[i] = y;
+            uz[i] = z;
+            wx[i] = vx;
+            wy[i] = vy;
+            wz[i] = vz;
+
+            final float w2 = (vx * vx) + (vy * vy) + (vz * vz);
+            ax[i] = (-gl * y * x) - (w2 * x) - (dragPerMass * vx);
+            ay[i] = (gl * (1 - y * y)) - (w2 * y) - (dragPerMass * vy);
+            az[i] = (-gl * y * z) - (w2 * z) - (dragPerMass * vz);
+        }
+    }
+
+    /**
+     * @return angle (in radians) of the chord projected onto the XY plane, which equals the planar angle for a planar swing
+     * */
+    float projectedAngle(int i) {
+        return (float) Math.atan2(ux[i], uy[i]);
+    }
+
+    /**
+     * @return rate of change (in rad/s) of the {@link #projectedAngle(int) projected angle}
+     * */
+    float projectedAngularVelocity(int i) {
+        final float x = ux[i], y = uy[i];
+        final float r2 = (x * x) + (y * y);
+        return r2 > 1e-12f? ((y * wx[i]) - (x * wy[i])) / r2: 0;
+    }
+
+    /**
+     * @return polar angle (in radians) of the chord off the vertical
+     * */
+    float polarAngle(int i) {
+        return (float) Math.acos(Math.max(-1, Math.min(1, uy[i])));
+    }
+
+    /**
+     * @return azimuth (in radians) of the chord around the vertical, measured from the X axis towards the Z axis
+     * */
+    float azimuth(int i) {
+        return (float) Math.atan2(uz[i], ux[i]);
+    }
+
+}
@@ -0,0 +1,118 @@
+package test;
+
+import main.PendulumWaveP2D;
+import processing.core.PGraphics;
+import util.VirtualClock;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that a steady-state frame of {@link PendulumWaveP2D} allocates nothing: stepping, projecting and drawing the pendulums, and the HUD.<br>
+ * Frames are drawn headless into a {@link NullGraphics}, which collects geometry in the buffers of {@link PGraphics} without rasterizing, so only
+ * allocations of the frame path itself are counted. Time comes from a {@link VirtualClock}, advanced by one frame at a time.<br>
+ * <br>
+ * Run with {@code -Djava.awt.headless=true}. Exits with status 1 if any frame allocates after warm up
+ * */
+public class FrameAllocationTest {
+
+    private static final int PENDULUM_COUNT = 64;
+    private static final int WARMUP_FRAMES = 10_000;
+    private static final int MEASURED_FRAMES = 1_000;
+    private static final double FRAME_SECS = 1 / 60.0;
+
+    /**
+     * A renderer that draws nothing. Shapes restart the vertex buffer, and matrix operations are ignored
+     * */
+    private static final class NullGraphics extends PGraphics {
+
+        @Override
+        public void beginShape(int kind) {
+            shape = kind;
+            vertexCount = 0;
+        }
+
+        @Override
+        public void pushMatrix() {
+        }
+
+        @Override
+        public void popMatrix() {
+        }
+
+        @Override
+        public void resetMatrix() {
+        }
+
+        @Override
+        public void translate(float x, float y) {
+        }
+
+        @Override
+        public void translate(float x, float y, float z) {
+        }
+
+        @Override
+        public void rotate(float angle) {
+        }
+
+        @Override
+        public void scale(float s) {
+        }
+
+        @Override
+        public void applyMatrix(float n00, float n01, float n02, float n10, float n11, float n12) {
+        }
+    }
+
+    public static void main(String[] args) {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Thread allocated memory is not supported by this JVM");
+            System.exit(2);
+        }
+
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final VirtualClock clock = new VirtualClock();
+        final PendulumWaveP2D ui = new PendulumWaveP2D(PENDULUM_COUNT);
+        ui.setSoundEnabled(false);
+        ui.getPendulumWave().setClock(clock);
+
+        final PGraphics g = new NullGraphics();
+        g.setParent(ui);
+        g.setPrimary(false);
+        g.setSize(1280, 720);
+        ui.g = g;
+        ui.width = g.width;
+        ui.height = g.height;
+
+        g.beginDraw();
+        for (int i=0; i < WARMUP_FRAMES; i++) {
+            clock.advanceSeconds(FRAME_SECS);
+            ui.draw();
+        }
+
+        long maxFrameBytes = 0;
+        final long start = threads.getCurrentThreadAllocatedBytes();
+
+        for (int i=0; i < MEASURED_FRAMES; i++) {
+            clock.advanceSeconds(FRAME_SECS);
+
+            final long before = threads.getCurrentThreadAllocatedBytes();
+            ui.draw();
+            maxFrameBytes = Math.max(maxFrameBytes, threads.getCurrentThreadAllocatedBytes() - before);
+        }
+
+        final long total = threads.getCurrentThreadAllocatedBytes() - start;
+        g.endDraw();
+
+        System.out.printf("%d frames of %d pendulums: %d bytes allocated (max %d per frame)%n", MEASURED_FRAMES, PENDULUM_COUNT, total, maxFrameBytes);
+        if (maxFrameBytes != 0) {
+            System.err.println("FAILED: steady-state frames must not allocate");
+            System.exit(1);
+        }
+
+        System.out.println("PASSED");
+        System.exit(0);
+    }
+}
@@ -0,0 +1,67 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A clock that runs at a constant multiple of a source clock. Changing the scale does not make the time jump
+ * */
+public class ScaledClock implements SimulationClock {
+
+    @NotNull
+    private final SimulationClock source;
+    private double scale;
+
+    // reading of the source and of this clock when the scale was last changed
+    private long sourceAnchorNs;
+    private long anchorNs;
+
+    public ScaledClock(@NotNull SimulationClock source, double scale) {
+        this.source = source;
+        this.scale = checkScale(scale);
+        sourceAnchorNs = anchorNs = source.nanoTime();
+    }
+
+    public ScaledClock(double scale) {
+        this(REAL_TIME, scale);
+    }
+
+    private static double checkScale(double scale) {
+        if (!(scale >= 0)) {
+            throw new IllegalArgumentException("Clock scale must be >= 0, given: " + scale);
+        }
+
+        return scale;
+    }
+
+    @NotNull
+    public SimulationClock getSource() {
+        return source;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @param scale rate of this clock relative to the source. Must be >= 0
+     * */
+    public synchronized ScaledClock setScale(double scale) {
+        checkScale(scale);
+
+        final long sourceNow = source.nanoTime();
+        anchorNs = anchorNs + (long) ((sourceNow - sourceAnchorNs) * this.scale);
+        sourceAnchorNs = sourceNow;
+        this.scale = scale;
+        return this;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return anchorNs + (long) ((source.nanoTime() - sourceAnchorNs) * scale);
+    }
+
+    @Override
+    public String toString() {
+        return "ScaledClock[scale=" + scale + ", source=" + source + "]";
+    }
+}
@@ -0,0 +1,38 @@
+package util;
+
+/**
+ * A monotonic source of time for the simulation.<br>
+ * <br>
+ * {@link #REAL_TIME} follows the wall clock. A {@link ScaledClock} runs faster or slower than its source,
+ * and a {@link VirtualClock} only moves when advanced manually, which allows headless runs as fast as the CPU allows and deterministic stepping.
+ * */
+public interface SimulationClock {
+
+    /**
+     * Wall clock time, backed by {@link System#nanoTime()}
+     * */
+    SimulationClock REAL_TIME = new SimulationClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return "RealTimeClock";
+        }
+    };
+
+    /**
+     * @return current time in nanoseconds. Only differences between two readings are meaningful
+     * */
+    long nanoTime();
+
+    /**
+     * @return current time in milliseconds. Only differences between two readings are meaningful
+     * */
+    default long millis() {
+        return nanoTime() / 1_000_000L;
+    }
+
+}
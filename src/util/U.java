@@ -27,11 +27,21 @@ public class U {
     @NotNull
     public static final Dimension SCREEN_RESOLUTION_SCALED;
 
+    /**
+     * Screen resolution assumed in headless environments, where there is no screen
+     * */
+    private static final Dimension SCREEN_RESOLUTION_HEADLESS = new Dimension(1920, 1080);
+
     static {
-        final DisplayMode displayMode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+        if (GraphicsEnvironment.isHeadless()) {
+            SCREEN_RESOLUTION_NATIVE = SCREEN_RESOLUTION_HEADLESS;
+            SCREEN_RESOLUTION_SCALED = SCREEN_RESOLUTION_HEADLESS;
+        } else {
+            final DisplayMode displayMode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
 
-        SCREEN_RESOLUTION_NATIVE = new Dimension(displayMode.getWidth(), displayMode.getHeight());
-        SCREEN_RESOLUTION_SCALED = Toolkit.getDefaultToolkit().getScreenSize();
+            SCREEN_RESOLUTION_NATIVE = new Dimension(displayMode.getWidth(), displayMode.getHeight());
+            SCREEN_RESOLUTION_SCALED = Toolkit.getDefaultToolkit().getScreenSize();
+        }
     }
 
     @NotNull
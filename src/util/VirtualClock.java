@@ -0,0 +1,46 @@
+package util;
+
+/**
+ * A clock that only moves when advanced manually
+ * */
+public class VirtualClock implements SimulationClock {
+
+    private volatile long nowNs;
+
+    public VirtualClock(long startNs) {
+        nowNs = startNs;
+    }
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    @Override
+    public long nanoTime() {
+        return nowNs;
+    }
+
+    /**
+     * @param deltaNs time to advance by, in nanoseconds. Must be >= 0
+     * */
+    public synchronized VirtualClock advanceNanos(long deltaNs) {
+        if (deltaNs < 0) {
+            throw new IllegalArgumentException("Clock can only be advanced forward, given: " + deltaNs + " ns");
+        }
+
+        nowNs += deltaNs;
+        return this;
+    }
+
+    /**
+     * @param deltaSecs time to advance by, in seconds. Must be >= 0
+     * */
+    public VirtualClock advanceSeconds(double deltaSecs) {
+        return advanceNanos(Math.round(deltaSecs * 1e9));
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualClock[" + nowNs + " ns]";
+    }
+}